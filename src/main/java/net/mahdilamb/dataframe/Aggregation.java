@@ -0,0 +1,66 @@
+package net.mahdilamb.dataframe;
+
+/**
+ * Aggregations of the values in each group of a grouped dataframe. Missing values (NaN or null) are skipped
+ */
+public enum Aggregation {
+    /**
+     * The number of values that are not missing
+     */
+    COUNT,
+    /**
+     * The sum of the values of a numeric column
+     */
+    SUM,
+    /**
+     * The mean of the values of a numeric column
+     */
+    MEAN,
+    /**
+     * The minimum value of a numeric or string column
+     */
+    MIN,
+    /**
+     * The maximum value of a numeric or string column
+     */
+    MAX,
+    /**
+     * The sample variance of the values of a numeric column
+     */
+    VAR,
+    /**
+     * The sample standard deviation of the values of a numeric column
+     */
+    STD,
+    /**
+     * The first value that is not missing
+     */
+    FIRST,
+    /**
+     * The last value that is not missing
+     */
+    LAST,
+    /**
+     * The number of distinct values that are not missing
+     */
+    NUNIQUE;
+
+    /**
+     * @param type the type of a column
+     * @return whether the aggregation can be applied to a column of the type
+     */
+    public boolean supports(final DataType type) {
+        switch (this) {
+            case SUM:
+            case MEAN:
+            case VAR:
+            case STD:
+                return type == DataType.DOUBLE || type == DataType.LONG;
+            case MIN:
+            case MAX:
+                return type != DataType.BOOLEAN;
+            default:
+                return true;
+        }
+    }
+}
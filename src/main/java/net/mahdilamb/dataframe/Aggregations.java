@@ -0,0 +1,453 @@
+package net.mahdilamb.dataframe;
+
+import net.mahdilamb.stats.MathUtils;
+
+/**
+ * Aggregation kernels for numeric series. NaN and null values are skipped.
+ * <p>
+ * Series that are backed by primitive arrays, and views of them, are aggregated by looping over the arrays directly.
+ * Other series are first copied to an array.
+ */
+final class Aggregations {
+    private Aggregations() {
+
+    }
+
+    /**
+     * The values of a double series, as an array and the indices into it
+     */
+    static final class Doubles {
+        final double[] data;
+        /**
+         * The indices of the elements in the data, or {@code null} if the elements are contiguous
+         */
+        final int[] rows;
+        final int from;
+        final int to;
+        /**
+         * Whether the first element is repeated for every position
+         */
+        final boolean broadcast;
+
+        Doubles(double[] data, int[] rows, int from, int to) {
+            this.data = data;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.broadcast = to - from == 1;
+        }
+
+        /**
+         * @param value the value
+         * @return a single value that is repeated for every position
+         */
+        static Doubles of(double value) {
+            return new Doubles(new double[]{value}, null, 0, 1);
+        }
+
+        /**
+         * @param position the position in the series
+         * @return the value at the position
+         */
+        double get(int position) {
+            final int i = from + (broadcast ? 0 : position);
+            return rows == null ? data[i] : data[rows[i]];
+        }
+
+        static Doubles of(DoubleSeries series) {
+            if (series instanceof SeriesImpl.OfDoubleArray) {
+                final SeriesImpl.OfDoubleArray s = (SeriesImpl.OfDoubleArray) series;
+                return new Doubles(s.data, null, s.start, s.end);
+            }
+            if (series instanceof SeriesImpl.DoubleSeriesView && ((SeriesImpl.DoubleSeriesView) series).dataSeries instanceof SeriesImpl.OfDoubleArray) {
+                final SeriesImpl.DoubleSeriesView s = (SeriesImpl.DoubleSeriesView) series;
+                return new Doubles(((SeriesImpl.OfDoubleArray) s.dataSeries).data, s.rows, 0, s.numRows);
+            }
+            return new Doubles(series.toArray(new double[series.size()]), null, 0, series.size());
+        }
+    }
+
+    /**
+     * The values of a long series, as an array with a null bitmap and the indices into it
+     */
+    static final class Longs {
+        final long[] data;
+        /**
+         * The packed bits of the null values, or {@code null} if there are none
+         */
+        final long[] nulls;
+        /**
+         * The indices of the elements in the data, or {@code null} if the elements are contiguous
+         */
+        final int[] rows;
+        final int from;
+        final int to;
+        /**
+         * Whether the first element is repeated for every position
+         */
+        final boolean broadcast;
+
+        Longs(long[] data, long[] nulls, int[] rows, int from, int to) {
+            this.data = data;
+            this.nulls = nulls;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.broadcast = to - from == 1;
+        }
+
+        /**
+         * @param value the value
+         * @return a single value that is repeated for every position
+         */
+        static Longs of(long value) {
+            return new Longs(new long[]{value}, null, null, 0, 1);
+        }
+
+        /**
+         * @param position the position in the series
+         * @return the value at the position. Null values are zero
+         */
+        long get(int position) {
+            final int i = from + (broadcast ? 0 : position);
+            return rows == null ? data[i] : data[rows[i]];
+        }
+
+        /**
+         * @param position the position in the series
+         * @return whether the value at the position is null
+         */
+        boolean isNullAt(int position) {
+            if (nulls == null) {
+                return false;
+            }
+            final int i = from + (broadcast ? 0 : position);
+            return Bits.get(nulls, rows == null ? i : rows[i]);
+        }
+
+        static Longs of(LongSeries series) {
+            final Series<Long> source;
+            final int[] rows;
+            final int from, to;
+            if (series instanceof SeriesImpl.LongSeriesView) {
+                final SeriesImpl.LongSeriesView s = (SeriesImpl.LongSeriesView) series;
+                source = s.dataSeries;
+                rows = s.rows;
+                from = 0;
+                to = s.numRows;
+            } else {
+                source = series;
+                rows = null;
+                from = series instanceof SeriesImpl ? ((SeriesImpl<?>) series).start : 0;
+                to = series instanceof SeriesImpl ? ((SeriesImpl<?>) series).end : 0;
+            }
+            if (source instanceof SeriesImpl.OfNonNaNLongArray) {
+                return new Longs(((SeriesImpl.OfNonNaNLongArray) source).data, null, rows, from, to);
+            }
+            if (source instanceof SeriesImpl.OfLongArray) {
+                return new Longs(((SeriesImpl.OfLongArray) source).data, ((SeriesImpl.OfLongArray) source).nulls, rows, from, to);
+            }
+            final long[] data = new long[series.size()];
+            long[] nulls = null;
+            for (int i = 0; i < data.length; ++i) {
+                if (series.isNaN(i)) {
+                    if (nulls == null) {
+                        nulls = new long[Bits.words(data.length)];
+                    }
+                    Bits.set(nulls, i);
+                } else {
+                    data[i] = series.getLong(i);
+                }
+            }
+            return new Longs(data, nulls, null, 0, data.length);
+        }
+
+        boolean isNull(int index) {
+            return nulls != null && Bits.get(nulls, index);
+        }
+    }
+
+    /**
+     * @param series      the series
+     * @param compensated whether to use compensated summation
+     * @return the sum of the values in the series
+     */
+    static double sum(final DoubleSeries series, boolean compensated) {
+        final Doubles d = Doubles.of(series);
+        return compensated ? compensatedSum(d) : sum(d);
+    }
+
+    private static double sum(final Doubles d) {
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        double sum = 0;
+        if (rows == null) {
+            for (int i = d.from; i < d.to; ++i) {
+                sum += data[i];
+            }
+        } else {
+            for (int i = d.from; i < d.to; ++i) {
+                sum += data[rows[i]];
+            }
+        }
+        if (sum == sum) {
+            return sum;
+        }
+        //a NaN was encountered
+        sum = 0;
+        if (rows == null) {
+            for (int i = d.from; i < d.to; ++i) {
+                final double v = data[i];
+                sum += v == v ? v : 0;
+            }
+        } else {
+            for (int i = d.from; i < d.to; ++i) {
+                final double v = data[rows[i]];
+                sum += v == v ? v : 0;
+            }
+        }
+        return sum;
+    }
+
+    private static double compensatedSum(final Doubles d) {
+        if (d.rows == null && d.from == 0 && d.to == d.data.length && d.to > 0) {
+            final double sum = MathUtils.neumaierSum(d.data);
+            if (sum == sum) {
+                return sum;
+            }
+        }
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        double sum = 0, c = 0;
+        for (int i = d.from; i < d.to; ++i) {
+            final double v = data[rows == null ? i : rows[i]];
+            if (v != v) {
+                continue;
+            }
+            final double t = sum + v;
+            if (Math.abs(sum) >= Math.abs(v)) {
+                c += (sum - t) + v;
+            } else {
+                c += (v - t) + sum;
+            }
+            sum = t;
+        }
+        return sum + c;
+    }
+
+    /**
+     * @param series the series
+     * @return the number of values in the series that are not NaN
+     */
+    static int count(final DoubleSeries series) {
+        return count(Doubles.of(series));
+    }
+
+    private static int count(final Doubles d) {
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        int count = 0;
+        if (rows == null) {
+            for (int i = d.from; i < d.to; ++i) {
+                count += data[i] == data[i] ? 1 : 0;
+            }
+        } else {
+            for (int i = d.from; i < d.to; ++i) {
+                final double v = data[rows[i]];
+                count += v == v ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param series the series
+     * @return the mean of the values in the series, or NaN if there are none
+     */
+    static double mean(final DoubleSeries series) {
+        final Doubles d = Doubles.of(series);
+        return sum(d) / count(d);
+    }
+
+    /**
+     * @param series the series
+     * @return the minimum of the values in the series, or NaN if there are none
+     */
+    static double min(final DoubleSeries series) {
+        final Doubles d = Doubles.of(series);
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        double min = Double.POSITIVE_INFINITY;
+        if (rows == null) {
+            for (int i = d.from; i < d.to; ++i) {
+                min = data[i] < min ? data[i] : min;
+            }
+        } else {
+            for (int i = d.from; i < d.to; ++i) {
+                final double v = data[rows[i]];
+                min = v < min ? v : min;
+            }
+        }
+        return min == Double.POSITIVE_INFINITY && count(d) == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @param series the series
+     * @return the maximum of the values in the series, or NaN if there are none
+     */
+    static double max(final DoubleSeries series) {
+        final Doubles d = Doubles.of(series);
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        double max = Double.NEGATIVE_INFINITY;
+        if (rows == null) {
+            for (int i = d.from; i < d.to; ++i) {
+                max = data[i] > max ? data[i] : max;
+            }
+        } else {
+            for (int i = d.from; i < d.to; ++i) {
+                final double v = data[rows[i]];
+                max = v > max ? v : max;
+            }
+        }
+        return max == Double.NEGATIVE_INFINITY && count(d) == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Calculate the sample variance using two passes over the values
+     *
+     * @param series the series
+     * @return the sample variance of the values in the series, or NaN if there are fewer than two
+     */
+    static double variance(final DoubleSeries series) {
+        final Doubles d = Doubles.of(series);
+        final int count = count(d);
+        if (count < 2) {
+            return Double.NaN;
+        }
+        final double mean = sum(d) / count;
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        double sum = 0;
+        for (int i = d.from; i < d.to; ++i) {
+            final double v = data[rows == null ? i : rows[i]] - mean;
+            sum += v == v ? v * v : 0;
+        }
+        return sum / (count - 1);
+    }
+
+    /**
+     * @param series the series
+     * @return the sum of the values in the series, accumulated as a long
+     */
+    static long sum(final LongSeries series) {
+        return sum(Longs.of(series));
+    }
+
+    private static long sum(final Longs l) {
+        final long[] data = l.data;
+        final int[] rows = l.rows;
+        long sum = 0;
+        //null values are stored as zero (see SeriesImpl.OfLongArray)
+        if (rows == null) {
+            for (int i = l.from; i < l.to; ++i) {
+                sum += data[i];
+            }
+        } else {
+            for (int i = l.from; i < l.to; ++i) {
+                sum += data[rows[i]];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param series the series
+     * @return the number of values in the series that are not null
+     */
+    static int count(final LongSeries series) {
+        return count(Longs.of(series));
+    }
+
+    private static int count(final Longs l) {
+        if (l.nulls == null) {
+            return l.to - l.from;
+        }
+        int count = 0;
+        for (int i = l.from; i < l.to; ++i) {
+            count += l.isNull(l.rows == null ? i : l.rows[i]) ? 0 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * @param series the series
+     * @return the mean of the values in the series, or NaN if there are none
+     */
+    static double mean(final LongSeries series) {
+        final Longs l = Longs.of(series);
+        return sum(l) / (double) count(l);
+    }
+
+    /**
+     * @param series the series
+     * @param max    whether to find the maximum, rather than the minimum
+     * @return the minimum or maximum value, or {@code null} if there are no values
+     */
+    static Long extreme(final LongSeries series, boolean max) {
+        final Longs l = Longs.of(series);
+        final long[] data = l.data;
+        final int[] rows = l.rows;
+        long out = max ? Long.MIN_VALUE : Long.MAX_VALUE;
+        if (l.nulls == null) {
+            if (l.from == l.to) {
+                return null;
+            }
+            if (rows == null) {
+                for (int i = l.from; i < l.to; ++i) {
+                    out = max ? Math.max(out, data[i]) : Math.min(out, data[i]);
+                }
+            } else {
+                for (int i = l.from; i < l.to; ++i) {
+                    out = max ? Math.max(out, data[rows[i]]) : Math.min(out, data[rows[i]]);
+                }
+            }
+            return out;
+        }
+        boolean any = false;
+        for (int i = l.from; i < l.to; ++i) {
+            final int row = rows == null ? i : rows[i];
+            if (!l.isNull(row)) {
+                out = max ? Math.max(out, data[row]) : Math.min(out, data[row]);
+                any = true;
+            }
+        }
+        return any ? out : null;
+    }
+
+    /**
+     * Calculate the sample variance using two passes over the values
+     *
+     * @param series the series
+     * @return the sample variance of the values in the series, or NaN if there are fewer than two
+     */
+    static double variance(final LongSeries series) {
+        final Longs l = Longs.of(series);
+        final int count = count(l);
+        if (count < 2) {
+            return Double.NaN;
+        }
+        final double mean = sum(l) / (double) count;
+        final long[] data = l.data;
+        final int[] rows = l.rows;
+        double sum = 0;
+        for (int i = l.from; i < l.to; ++i) {
+            final int row = rows == null ? i : rows[i];
+            if (!l.isNull(row)) {
+                final double v = data[row] - mean;
+                sum += v * v;
+            }
+        }
+        return sum / (count - 1);
+    }
+}
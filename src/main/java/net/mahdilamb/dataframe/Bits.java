@@ -0,0 +1,77 @@
+package net.mahdilamb.dataframe;
+
+/**
+ * Utility methods for bit sets packed into arrays of longs, with 64 bits per word
+ */
+final class Bits {
+    private Bits() {
+
+    }
+
+    /**
+     * @param bits the number of bits
+     * @return the number of words required to hold the bits
+     */
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * @param words the packed bits
+     * @param index the index of the bit
+     * @return whether the bit is set. Bits beyond the end of the array are not set
+     */
+    static boolean get(long[] words, int index) {
+        final int word = index >>> 6;
+        return word < words.length && (words[word] & (1L << index)) != 0;
+    }
+
+    /**
+     * Set a bit
+     *
+     * @param words the packed bits
+     * @param index the index of the bit
+     */
+    static void set(long[] words, int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Set or clear a bit
+     *
+     * @param words the packed bits
+     * @param index the index of the bit
+     * @param value whether the bit is set
+     */
+    static void put(long[] words, int index, boolean value) {
+        final long mask = 1L << index;
+        if (value) {
+            words[index >>> 6] |= mask;
+        } else {
+            words[index >>> 6] &= ~mask;
+        }
+    }
+
+    /**
+     * @param bits the number of bits
+     * @return the mask of the bits that are used in the last word
+     */
+    static long tailMask(int bits) {
+        return -1L >>> -bits;
+    }
+
+    /**
+     * @param words the packed bits
+     * @param from  the first word
+     * @param to    the end word (exclusive)
+     * @return whether none of the words have bits set
+     */
+    static boolean isEmpty(long[] words, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (words[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -31,12 +31,12 @@ public interface BooleanSeries extends Series<Boolean>, SeriesWithFunctionalOper
 
             @Override
             public boolean nextBoolean() {
-                return i < size();
+                return getBoolean(i++);
             }
 
             @Override
             public boolean hasNext() {
-                return getBoolean(i++);
+                return i < size();
             }
         };
     }
@@ -61,14 +61,90 @@ public interface BooleanSeries extends Series<Boolean>, SeriesWithFunctionalOper
      * @return if all the elements are true
      */
     default boolean all() {
-        return reduce((a, b) -> a & b, a -> !a);
+        for (int i = 0; i < size(); ++i) {
+            if (!getBoolean(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * @return if any of the elements are true
      */
     default boolean any() {
-        return reduce((a, b) -> a | b, a -> a);
+        for (int i = 0; i < size(); ++i) {
+            if (getBoolean(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of elements that are true
+     */
+    default int countTrue() {
+        int count = 0;
+        for (int i = 0; i < size(); ++i) {
+            if (getBoolean(i)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the indices of the elements that are true, in ascending order
+     */
+    default int[] indices() {
+        final int[] indices = new int[countTrue()];
+        for (int i = 0, j = 0; j < indices.length; ++i) {
+            if (getBoolean(i)) {
+                indices[j++] = i;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Element-wise logical and
+     *
+     * @param other the other series
+     * @return a new series that is true where both series are true
+     * @throws IllegalArgumentException if the series are not the same size
+     */
+    default BooleanSeries and(BooleanSeries other) {
+        return SeriesImpl.OfBooleanArray.combine(this, other, (a, b) -> a & b);
+    }
+
+    /**
+     * Element-wise logical or
+     *
+     * @param other the other series
+     * @return a new series that is true where either series is true
+     * @throws IllegalArgumentException if the series are not the same size
+     */
+    default BooleanSeries or(BooleanSeries other) {
+        return SeriesImpl.OfBooleanArray.combine(this, other, (a, b) -> a | b);
+    }
+
+    /**
+     * Element-wise logical exclusive or
+     *
+     * @param other the other series
+     * @return a new series that is true where exactly one of the series is true
+     * @throws IllegalArgumentException if the series are not the same size
+     */
+    default BooleanSeries xor(BooleanSeries other) {
+        return SeriesImpl.OfBooleanArray.combine(this, other, (a, b) -> a ^ b);
+    }
+
+    /**
+     * @return a new series with each element negated
+     */
+    default BooleanSeries not() {
+        return SeriesImpl.OfBooleanArray.combine(this, this, (a, b) -> ~a);
     }
 
 }
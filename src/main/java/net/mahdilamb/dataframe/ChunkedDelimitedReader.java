@@ -0,0 +1,176 @@
+package net.mahdilamb.dataframe;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the records of a delimited file in parallel.
+ * <p>
+ * The file is split into byte ranges which start after a line break. Each range is tokenized on a
+ * {@link ForkJoinPool} into its own set of {@link SeriesBuilder}s, and the builders are then concatenated in the order
+ * of the ranges, promoting the builders of each column to a common type.
+ * <p>
+ * A line break may be inside a quoted field, in which case the range that starts after it does not start at a record.
+ * This is detected once all the ranges have been read: a range is only accepted if its first record starts where the
+ * records of the previous range end. Otherwise, the range is read again from the correct position.
+ */
+final class ChunkedDelimitedReader {
+    /**
+     * The minimum number of bytes in a chunk
+     */
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    /**
+     * The number of chunks per thread, used so that threads that finish early can pick up more work
+     */
+    static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The records that start in a range of the file
+     */
+    private static final class Chunk {
+        final SeriesBuilder[] builders;
+        /**
+         * The offset of the first record in the chunk
+         */
+        final long first;
+        /**
+         * The offset after the last record in the chunk
+         */
+        final long stop;
+
+        Chunk(SeriesBuilder[] builders, long first, long stop) {
+            this.builders = builders;
+            this.first = first;
+            this.stop = stop;
+        }
+    }
+
+    private final DataFrameImporter.FromFile importer;
+
+    ChunkedDelimitedReader(final DataFrameImporter.FromFile importer) {
+        this.importer = importer;
+    }
+
+    /**
+     * @param importer the importer
+     * @return whether the source of the importer can be read in ranges
+     */
+    static boolean supports(final DataFrameImporter.FromFile importer) {
+        return DelimitedTokenizer.isAsciiCompatible(importer.charset);
+    }
+
+    /**
+     * Read the records from an offset until the end of the file
+     *
+     * @param start       the offset of the first record to read
+     * @param head        the builders containing the records before the offset. These may be modified
+     * @param parallelism the number of threads to use
+     * @return the builders of each column
+     * @throws IOException if the file could not be read
+     */
+    SeriesBuilder[] read(long start, SeriesBuilder[] head, int parallelism) throws IOException {
+        final long[] boundaries = split(start, parallelism);
+        final int numChunks = boundaries.length - 1;
+        final List<Callable<Chunk>> tasks = new ArrayList<>(numChunks);
+        for (int i = 0; i < numChunks; ++i) {
+            final long from = boundaries[i], to = boundaries[i + 1];
+            tasks.add(() -> readChunk(from, to));
+        }
+        final Chunk[] chunks = new Chunk[numChunks];
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final List<Future<Chunk>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < numChunks; ++i) {
+                chunks[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        //the first chunk starts at a record, as the offset is from the end of a record
+        long stop = chunks[0].stop;
+        for (int i = 1; i < numChunks; ++i) {
+            if (chunks[i].first != stop) {
+                //the chunk did not start at a record
+                chunks[i] = readChunk(stop, Math.max(stop, boundaries[i + 1]));
+            }
+            stop = chunks[i].stop;
+        }
+        final SeriesBuilder[] out = new SeriesBuilder[head.length];
+        final SeriesBuilder[] fragments = new SeriesBuilder[numChunks + 1];
+        for (int j = 0; j < head.length; ++j) {
+            fragments[0] = head[j];
+            for (int i = 0; i < numChunks; ++i) {
+                fragments[i + 1] = chunks[i].builders[j];
+                chunks[i].builders[j] = null;
+            }
+            out[j] = SeriesBuilder.concat(fragments);
+            head[j] = null;
+        }
+        return out;
+    }
+
+    /**
+     * Split the file into ranges that start after a line break
+     *
+     * @param start       the offset of the start of the first range
+     * @param parallelism the number of threads
+     * @return the boundaries of the ranges
+     * @throws IOException if the file could not be read
+     */
+    private long[] split(long start, int parallelism) throws IOException {
+        try (final FileChannel channel = FileChannel.open(importer.source.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long length = Math.max(0, size - start);
+            final int numChunks = (int) Math.max(1, Math.min((long) parallelism * CHUNKS_PER_THREAD, length / MIN_CHUNK_SIZE));
+            final long[] boundaries = new long[numChunks + 1];
+            boundaries[0] = start;
+            for (int i = 1; i < numChunks; ++i) {
+                boundaries[i] = DelimitedTokenizer.nextLineStart(channel, Math.max(boundaries[i - 1], start + length * i / numChunks));
+            }
+            boundaries[numChunks] = Math.max(size, start);
+            return boundaries;
+        }
+    }
+
+    private Chunk readChunk(long from, long to) throws IOException {
+        final int numColumns = importer.numColumns;
+        final int[] columns = importer.columns;
+        final SeriesBuilder[] builders = new SeriesBuilder[numColumns];
+        final int capacity = (int) Math.min(SeriesBuilder.INITIAL_CAPACITY, Math.max(1, to - from));
+        for (int i = 0; i < numColumns; ++i) {
+            builders[i] = SeriesBuilder.of(importer.types[i], importer.fixedTypes[i], capacity);
+        }
+        try (final DelimitedTokenizer tokenizer = new DelimitedTokenizer(importer.source, importer.separator, importer.quoteCharacter, importer.charset, from, to)) {
+            final RowFilter filter = importer.createRowFilter();
+            long first = -1;
+            while (tokenizer.nextRecord()) {
+                if (first == -1) {
+                    first = tokenizer.recordStart();
+                }
+                if (filter != null && !filter.test(tokenizer, columns)) {
+                    continue;
+                }
+                for (int i = 0; i < numColumns; ++i) {
+                    builders[i] = builders[i].add(tokenizer.get(columns[i]));
+                }
+            }
+            final long stop = tokenizer.position();
+            return new Chunk(builders, first == -1 ? stop : first, stop);
+        }
+    }
+}
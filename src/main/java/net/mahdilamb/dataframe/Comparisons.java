@@ -0,0 +1,204 @@
+package net.mahdilamb.dataframe;
+
+/**
+ * Comparisons of the values of a column with a constant, specialized for the type of the backing array.
+ * <p>
+ * Each word of the result is computed by a loop over 64 consecutive values without branches, with the operator chosen
+ * once per word, so the loops can be unrolled by the JIT. Values of views are gathered into a buffer a word at a time
+ * and compared with the same loops. Words with no candidate rows are skipped. Comparisons with missing values (null or
+ * NaN) are always {@code false}.
+ */
+final class Comparisons {
+    private Comparisons() {
+
+    }
+
+    /**
+     * @param values     the values
+     * @param comparison the comparison
+     * @param value      the constant
+     * @param candidates the packed mask of the rows to compare, or {@code null} to compare all the rows
+     * @return the packed result of comparing each value with the constant. Bits of rows that are not candidates may
+     * hold any value
+     */
+    static long[] compare(final Aggregations.Doubles values, final ElementWise.Comparison comparison, final double value, final long[] candidates) {
+        final int size = values.to - values.from;
+        final long[] words = new long[Bits.words(size)];
+        if (Double.isNaN(value)) {
+            return words;
+        }
+        final double[] data = values.data;
+        final double[] buffer = values.rows == null && !values.broadcast ? null : new double[64];
+        for (int w = 0, i = 0; i < size; ++w, i += 64) {
+            if (candidates != null && candidates[w] == 0) {
+                continue;
+            }
+            final int n = Math.min(64, size - i);
+            if (buffer == null) {
+                words[w] = word(data, values.from + i, n, comparison, value);
+            } else {
+                for (int j = 0; j < n; ++j) {
+                    buffer[j] = values.get(i + j);
+                }
+                words[w] = word(buffer, 0, n, comparison, value);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @param values     the values
+     * @param comparison the comparison
+     * @param value      the constant
+     * @param candidates the packed mask of the rows to compare, or {@code null} to compare all the rows
+     * @return the packed result of comparing each value with the constant. Bits of rows that are not candidates may
+     * hold any value
+     */
+    static long[] compare(final Aggregations.Longs values, final ElementWise.Comparison comparison, final long value, final long[] candidates) {
+        final int size = values.to - values.from;
+        final long[] words = new long[Bits.words(size)];
+        final long[] data = values.data;
+        final long[] buffer = values.rows == null && !values.broadcast ? null : new long[64];
+        for (int w = 0, i = 0; i < size; ++w, i += 64) {
+            if (candidates != null && candidates[w] == 0) {
+                continue;
+            }
+            final int n = Math.min(64, size - i);
+            if (buffer == null) {
+                words[w] = word(data, values.from + i, n, comparison, value);
+            } else {
+                for (int j = 0; j < n; ++j) {
+                    buffer[j] = values.get(i + j);
+                }
+                words[w] = word(buffer, 0, n, comparison, value);
+            }
+        }
+        clearNulls(values, words, size);
+        return words;
+    }
+
+    /**
+     * @param values     the values
+     * @param comparison the comparison
+     * @param value      the constant
+     * @param candidates the packed mask of the rows to compare, or {@code null} to compare all the rows
+     * @return the packed result of comparing each value, converted to a double, with the constant. Bits of rows that
+     * are not candidates may hold any value
+     */
+    static long[] compare(final Aggregations.Longs values, final ElementWise.Comparison comparison, final double value, final long[] candidates) {
+        final int size = values.to - values.from;
+        final long[] words = new long[Bits.words(size)];
+        if (Double.isNaN(value)) {
+            return words;
+        }
+        final double[] buffer = new double[64];
+        for (int w = 0, i = 0; i < size; ++w, i += 64) {
+            if (candidates != null && candidates[w] == 0) {
+                continue;
+            }
+            final int n = Math.min(64, size - i);
+            for (int j = 0; j < n; ++j) {
+                buffer[j] = values.get(i + j);
+            }
+            words[w] = word(buffer, 0, n, comparison, value);
+        }
+        clearNulls(values, words, size);
+        return words;
+    }
+
+    private static void clearNulls(final Aggregations.Longs values, final long[] words, int size) {
+        if (values.nulls == null) {
+            return;
+        }
+        if (values.rows == null && values.from == 0 && !values.broadcast) {
+            for (int w = 0; w < words.length && w < values.nulls.length; ++w) {
+                words[w] &= ~values.nulls[w];
+            }
+            return;
+        }
+        for (int i = 0; i < size; ++i) {
+            if (values.isNullAt(i)) {
+                words[i >>> 6] &= ~(1L << i);
+            }
+        }
+    }
+
+    private static long word(final double[] data, int offset, int n, final ElementWise.Comparison comparison, final double value) {
+        long word = 0;
+        switch (comparison) {
+            case LESS_THAN:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] < value ? 1L : 0L) << j;
+                }
+                break;
+            case LESS_THAN_OR_EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] <= value ? 1L : 0L) << j;
+                }
+                break;
+            case GREATER_THAN:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] > value ? 1L : 0L) << j;
+                }
+                break;
+            case GREATER_THAN_OR_EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] >= value ? 1L : 0L) << j;
+                }
+                break;
+            case EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] == value ? 1L : 0L) << j;
+                }
+                break;
+            case NOT_EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    final double x = data[offset + j];
+                    word |= (x != value && x == x ? 1L : 0L) << j;
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+        return word;
+    }
+
+    private static long word(final long[] data, int offset, int n, final ElementWise.Comparison comparison, final long value) {
+        long word = 0;
+        switch (comparison) {
+            case LESS_THAN:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] < value ? 1L : 0L) << j;
+                }
+                break;
+            case LESS_THAN_OR_EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] <= value ? 1L : 0L) << j;
+                }
+                break;
+            case GREATER_THAN:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] > value ? 1L : 0L) << j;
+                }
+                break;
+            case GREATER_THAN_OR_EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] >= value ? 1L : 0L) << j;
+                }
+                break;
+            case EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] == value ? 1L : 0L) << j;
+                }
+                break;
+            case NOT_EQUAL:
+                for (int j = 0; j < n; ++j) {
+                    word |= (data[offset + j] != value ? 1L : 0L) << j;
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+        return word;
+    }
+}
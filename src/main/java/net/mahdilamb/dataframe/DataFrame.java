@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PrimitiveIterator;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 
 /**
@@ -266,13 +268,53 @@ public interface DataFrame extends Iterable<Series<Comparable<Object>>> {
     <S extends Comparable<S>> DataFrame filter(String series, Predicate<S> test);
 
     /**
-     * Perform a single query against a column e.g {@code column_name == 'find'}.
+     * Filter the data frame based on the values in one of its series, tested as primitive doubles
+     *
+     * @param series the name of the series
+     * @param test   the test to apply
+     * @return a view of this dataframe
+     */
+    DataFrame filterDouble(String series, DoublePredicate test);
+
+    /**
+     * Filter the data frame based on the values in one of its series, tested as primitive longs. Null values do not
+     * pass the test
+     *
+     * @param series the name of the series
+     * @param test   the test to apply
+     * @return a view of this dataframe
+     */
+    DataFrame filterLong(String series, LongPredicate test);
+
+    /**
+     * Query the rows of the dataframe e.g {@code column_name == 'find'}.
+     * <p>
+     * Comparisons ({@code == != < <= > >=}) may be combined with {@code and}, {@code or}, {@code not} and parentheses,
+     * and may compare arithmetic ({@code + - * / **}) of numeric columns. A value may also be tested with
+     * {@code in [a, b, ...]} and {@code between a and b}, e.g. {@code (x - y) / z > 2 and label in ['a', 'b']}.
+     * Column names that are not single words may be quoted with backticks. String columns may be matched against a
+     * regular expression with {@code matches}, e.g. {@code label matches 'a.*'}.
+     * <p>
+     * The query is parsed and compiled once for dataframes with the same columns, and is evaluated to a single mask of
+     * the rows. The conditions of an {@code and} are evaluated cheapest and most selective first, with each condition
+     * only evaluated for the rows that passed the conditions before it. Conditions should therefore be combined in a
+     * single query rather than by chaining queries.
      *
      * @param query the query
      * @return a dataframe that is the subset as specified by the query
      */
     DataFrame query(final String query);
 
+    /**
+     * Evaluate a query and describe how it was evaluated. Each step shows the condition, its estimated cost and
+     * selectivity, the number of rows before and after it, and the time it took
+     *
+     * @param query the query
+     * @return the description of the evaluation of the query
+     * @see #query(String)
+     */
+    String explain(final String query);
+
     /**
      * Sort the data frame by a column
      *
@@ -312,12 +354,14 @@ public interface DataFrame extends Iterable<Series<Comparable<Object>>> {
     }
 
     /**
-     * Group the data frame by a column
+     * Group the data frame by one or more columns. Rows are in the same group if they have the same value in each of
+     * the columns
      *
-     * @param name the name of the column
-     * @return a view of this dataframe
+     * @param names the names of the columns
+     * @return the groups of this dataframe, which may be iterated over as views or aggregated
+     * @throws IllegalArgumentException if no columns are given or a column cannot be found
      */
-    Iterable<DataFrame> groupBy(final String name);
+    GroupedDataFrame groupBy(final String... names);
 
     /**
      * Get the series at the specified index
@@ -465,7 +509,7 @@ public interface DataFrame extends Iterable<Series<Comparable<Object>>> {
      * @see DataFrameImporter
      */
     static DataFrameImporter importer(final File source, char separator, char quoteCharacter, Charset charset) {
-        return new DataFrameImporter.FromFile(source, separator, quoteCharacter, charset, true);
+        return new DataFrameImporter.FromFile(source, separator, quoteCharacter, charset);
     }
 
     /**
@@ -497,7 +541,7 @@ public interface DataFrame extends Iterable<Series<Comparable<Object>>> {
      * @return a dataframe from the file
      */
     static DataFrame from(final File source, char separator, char quoteCharacter, Charset charset) {
-        return new DataFrameImporter.FromFile(source, separator, quoteCharacter, charset, false).build();
+        return new DataFrameImporter.FromFile(source, separator, quoteCharacter, charset).build();
     }
 
     /**
@@ -1,18 +1,15 @@
 package net.mahdilamb.dataframe;
 
 
-import net.mahdilamb.dataframe.utils.GroupBy;
 import net.mahdilamb.dataframe.utils.IteratorUtils;
 import net.mahdilamb.dataframe.utils.StringParseException;
 import net.mahdilamb.dataframe.utils.StringUtils;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.DoublePredicate;
 import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
@@ -182,6 +179,10 @@ abstract class DataFrameImpl implements DataFrame {
         int firstCell = 0;
         int lastCell = -1;
         int[] subRows;
+        /**
+         * The name of the series that the rows of this view are sorted by, if any
+         */
+        String sortedBy;
 
         DataFrameView(DataFrame dataFrame, int[] cols) {
             super(dataFrame.getName());
@@ -340,24 +341,29 @@ abstract class DataFrameImpl implements DataFrame {
         }
     }
 
-    static final class DataFrameGroupBy implements Iterable<DataFrame> {
+    static final class DataFrameGroupBy implements GroupedDataFrame {
 
-        private final GroupBy<?> groupBy;
         private final DataFrame dataFrame;
-        private final String grouping;
+        private final Series<?>[] keys;
+        private int parallelism = 1;
+        boolean sorted = false;
+        private volatile Grouping groupBy;
 
         Group[] groups;
 
         int[] getIndices(int index) {
-            final int[] indices = new int[groupBy.getGroup(index).size()];
-            for (int i = 0; i < indices.length; ++i) {
-                indices[i] = groupBy.getGroup(index).get(i);
-            }
-            return indices;
+            return grouping().rows(index);
         }
 
         static String formatName(DataFrameGroupBy groupBy, int index) {
-            return String.format("%s {%s: \"%s\"}", groupBy.dataFrame.getName(), groupBy.grouping, groupBy.groupBy.getGroup(index).get());
+            final StringBuilder name = new StringBuilder(groupBy.dataFrame.getName()).append(" {");
+            for (final Series<?> key : groupBy.keys) {
+                if (key != groupBy.keys[0]) {
+                    name.append(", ");
+                }
+                name.append(String.format("%s: \"%s\"", key.getName(), key.get(groupBy.grouping().firstRows[index])));
+            }
+            return name.append('}').toString();
         }
 
         static final class Group extends DataFrameImpl {
@@ -418,15 +424,88 @@ abstract class DataFrameImpl implements DataFrame {
             }
         }
 
-        public DataFrameGroupBy(DataFrame dataFrame, final String grouping, final GroupBy<?> groupBy) {
-            this.groupBy = groupBy;
+        public DataFrameGroupBy(DataFrame dataFrame, final Series<?>... keys) {
             this.dataFrame = dataFrame;
-            this.grouping = grouping;
+            this.keys = keys;
+        }
+
+        /**
+         * @return the groups of the rows, which are computed on first use
+         */
+        Grouping grouping() {
+            if (groupBy == null) {
+                synchronized (this) {
+                    if (groupBy == null) {
+                        groupBy = Grouping.of(keys, sorted, parallelism);
+                    }
+                }
+            }
+            return groupBy;
+        }
+
+        @Override
+        public GroupedDataFrame setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be at least 1");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        @Override
+        public GroupedDataFrame setSorted() {
+            sorted = true;
+            return this;
+        }
+
+        @Override
+        public int numGroups() {
+            return grouping().numGroups;
+        }
+
+        @Override
+        public DataFrame agg(String[] columns, Aggregation... aggregations) {
+            final Series<?>[] series = new Series<?>[columns.length];
+            for (int i = 0; i < columns.length; ++i) {
+                series[i] = dataFrame.get(columns[i]);
+                if (series[i] == null) {
+                    throw new IllegalArgumentException("Could not find column by name " + columns[i]);
+                }
+            }
+            return GroupedAggregations.aggregate(formatName(), keys, grouping(), series, aggregations, parallelism);
+        }
+
+        @Override
+        public DataFrame agg(Aggregation... aggregations) {
+            final List<String> columns = new ArrayList<>(dataFrame.numSeries());
+            next:
+            for (final Series<?> series : dataFrame) {
+                for (final Series<?> key : keys) {
+                    if (series.getName().equals(key.getName())) {
+                        continue next;
+                    }
+                }
+                for (final Aggregation aggregation : aggregations) {
+                    if (!aggregation.supports(series.getType())) {
+                        continue next;
+                    }
+                }
+                columns.add(series.getName());
+            }
+            return agg(columns.toArray(new String[0]), aggregations);
+        }
+
+        private String formatName() {
+            final StringJoiner names = new StringJoiner(", ");
+            for (final Series<?> key : keys) {
+                names.add(key.getName());
+            }
+            return String.format("%s grouped by %s", dataFrame.getName(), names);
         }
 
         private Group getGroup(int index) {
             if (groups == null) {
-                groups = new Group[groupBy.numGroups()];
+                groups = new Group[grouping().numGroups];
             }
             if (groups[index] == null) {
                 groups[index] = new Group(this, index);
@@ -442,7 +521,7 @@ abstract class DataFrameImpl implements DataFrame {
 
                 @Override
                 public boolean hasNext() {
-                    return i < groupBy.numGroups();
+                    return i < grouping().numGroups;
                 }
 
                 @Override
@@ -466,14 +545,13 @@ abstract class DataFrameImpl implements DataFrame {
          * @param name   the name of the dataframe
          * @param series the array of series
          */
-        @SuppressWarnings("unchecked")
-        <S extends Comparable<S>, T extends Series<? extends S>> OfArray(final String name, final T[] series) {
+        OfArray(final String name, final Series<?>[] series) {
             super(name);
-            this.series = new Series[series.length];
+            this.series = new Series<?>[series.length];
             int size = -1;
             int i = 0;
-            for (T s : series) {
-                this.series[i++] = s.getClass() == SeriesImpl.SeriesView.class ? ((SeriesImpl.SeriesView<S>) s).dataSeries : s;
+            for (Series<?> s : series) {
+                this.series[i++] = s.getClass() == SeriesImpl.SeriesView.class ? ((SeriesImpl.SeriesView<?>) s).dataSeries : s;
                 if (size == -1) {
                     size = s.size();
                     continue;
@@ -533,103 +611,60 @@ abstract class DataFrameImpl implements DataFrame {
         private final Series<?>[] series;
         private HashMap<String, Series<Comparable<Object>>> seriesMap;
 
+        /**
+         * Create a data frame from a file in a single pass. The types of the columns are inferred from a bounded
+         * number of records at the start of the file (if not already set by the importer), those records are then
+         * added to the columns and the remainder of the file is streamed into the same columns. If the importer is
+         * parallel, the remainder of the file is read in chunks
+         *
+         * @param importer the importer
+         */
         FromFile(DataFrameImporter.FromFile importer) {
-            this(importer.source, importer.separator, importer.quoteCharacter, importer.charset, importer.putativeHeader, importer.types, importer.hasColumnNames, importer.numColumns, (importer.hasColumnNames ? -1 : 0) + importer.numLines);
-        }
-
-        FromFile(File name, char separator, char quoteCharacter, Charset charset, String[] columnNames, DataType[] types, boolean hasColumnNames, int numColumns, int numRows) {
-            super(name.getName());
-            this.series = new Series[numColumns];
-            boolean getColumnNames = columnNames == null && hasColumnNames;
-            for (int i = 0; i < numColumns; ++i) {
-                final String columnName = columnNames == null ? (hasColumnNames ? (EMPTY_COLUMN_PREFIX + i) : null) : columnNames[i] == null ? EMPTY_COLUMN_PREFIX + i : columnNames[i];
-                switch (types[i]) {
-                    case LONG:
-                        series[i] = new SeriesImpl.OfLongArray(columnName, new Long[numRows]);
-                        break;
-                    case DOUBLE:
-                        series[i] = new SeriesImpl.OfDoubleArray(columnName, new double[numRows]);
-                        break;
-                    case BOOLEAN:
-                        series[i] = new SeriesImpl.OfBooleanArray(columnName, new boolean[numRows]);
-                        break;
-                    case STRING:
-                        series[i] = new SeriesImpl.OfStringArray(columnName, new String[numRows]);
-                        break;
-                    default:
-                        throw new UnsupportedOperationException();
+            super(importer.getName());
+            SeriesBuilder[] builders = null;
+            try (final DelimitedTokenizer tokenizer = importer.open()) {
+                final List<String[]> prefix = importer.inspect(tokenizer);
+                final int numColumns = importer.numColumns;
+                final int[] columns = importer.columns;
+                builders = new SeriesBuilder[numColumns];
+                for (int i = 0; i < numColumns; ++i) {
+                    builders[i] = SeriesBuilder.of(importer.types[i], importer.fixedTypes[i], SeriesBuilder.INITIAL_CAPACITY);
                 }
-            }
-
-            try (FileInputStream inputStream = new FileInputStream(name); Scanner scanner = new Scanner(inputStream, charset.name())) {
-                final String colNames = scanner.nextLine();
-
-                if (hasColumnNames) {
-                    if (getColumnNames) {
-                        int h = 0, o = 0;
-                        while (h < colNames.length()) {
-                            int currentO = o;
-                            h = StringUtils.iterateLine(colNames, h, separator, quoteCharacter, str -> ((SeriesImpl<?>) series[currentO]).name = str);
-                            ++o;
-                        }
-                    }
+                final RowFilter filter = importer.createRowFilter();
+                if (!importer.hasColumnNames && (filter == null || filter.test(importer.putativeHeader))) {
+                    add(builders, importer.putativeHeader);
                 }
-                int rowCount = 0;
-                while (scanner.hasNextLine()) {
-                    final String line = scanner.nextLine();
-                    int h = 0, o = 0;
-                    while (h < line.length()) {
-                        int currentO = o;
-                        int row = rowCount;
-                        h = StringUtils.iterateLine(line, h, separator, quoteCharacter, str -> {
-                            switch (types[currentO]) {
-                                case LONG:
-                                    final SeriesImpl.OfLongArray s = (SeriesImpl.OfLongArray) series[currentO];
-                                    if (DataType.LONG.matches(str)) {
-                                        s.data[row] = DataType.toLong(str);
-                                    }
-                                    break;
-                                case DOUBLE:
-                                    ((SeriesImpl.OfDoubleArray) series[currentO]).data[row] = DataType.toDouble(str);
-                                    break;
-                                case BOOLEAN:
-                                    ((SeriesImpl.OfBooleanArray) series[currentO]).data[row] = DataType.toBoolean(str);
-                                    break;
-                                case STRING:
-                                    ((SeriesImpl.OfStringArray) series[currentO]).data[row] = str;
-                                    break;
-                                default:
-                                    throw new UnsupportedOperationException();
-                            }
-                        });
-                        ++o;
+                for (final String[] record : prefix) {
+                    if (filter == null || filter.test(record)) {
+                        add(builders, record);
                     }
-                    ++rowCount;
                 }
-                //update the size
-                for (int i = 0; i < numColumns; ++i) {
-
-                    switch (types[i]) {
-                        case LONG:
-                            ((SeriesImpl.OfLongArray) series[i]).end = rowCount;
-                            break;
-                        case DOUBLE:
-                            ((SeriesImpl.OfDoubleArray) series[i]).end = rowCount;
-                            break;
-                        case BOOLEAN:
-                            ((SeriesImpl.OfBooleanArray) series[i]).end = rowCount;
-                            break;
-                        case STRING:
-                            ((SeriesImpl.OfStringArray) series[i]).end = rowCount;
-                            break;
-                        default:
-                            throw new UnsupportedOperationException();
+                if (importer.parallelism > 1 && ChunkedDelimitedReader.supports(importer)) {
+                    builders = new ChunkedDelimitedReader(importer).read(tokenizer.position(), builders, importer.parallelism);
+                } else {
+                    while (tokenizer.nextRecord()) {
+                        if (filter != null && !filter.test(tokenizer, columns)) {
+                            continue;
+                        }
+                        for (int i = 0; i < numColumns; ++i) {
+                            builders[i] = builders[i].add(tokenizer.get(columns[i]));
+                        }
                     }
                 }
-
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            final String[] names = importer.getColumnNames();
+            this.series = new Series[builders == null ? 0 : builders.length];
+            for (int i = 0; i < series.length; ++i) {
+                series[i] = builders[i].build(names[i]);
+            }
+        }
+
+        private static void add(final SeriesBuilder[] builders, final String[] record) {
+            for (int i = 0; i < builders.length; ++i) {
+                builders[i] = builders[i].add(record[i]);
+            }
         }
 
         @Override
@@ -798,135 +833,21 @@ abstract class DataFrameImpl implements DataFrame {
 
     @Override
     public DataFrame filter(BooleanSeries filter) {
-        final int[] ids = new int[filter.size()];
-        int size = 0;
-        for (int i = 0; i < filter.size(); ++i) {
-            if (filter.get(i)) {
-                ids[size++] = get(0).getID(i);
-            }
+        final int[] ids = filter.indices();
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = get(0).getID(ids[i]);
         }
-        return new DataFrameView(this, ids, size);
-    }
-
-    static boolean isComparator(final char c) {
-        return c == '<' || c == '>' || c == '=' || c == '!';
+        return new DataFrameView(this, ids, ids.length);
     }
 
     @Override
     public DataFrame query(String query) {
-        int nameStart = 0;
-        int nameEnd = -1;
-        int opStart = 0;
-        int opEnd = -1;
-        int valStart = 0;
-        int valEnd = -1;
-        int i = 0;
-        while (true) {
-            char c = query.charAt(i);
-            if (c != ' ') {
-                if (isComparator(c)) {
-                    opStart = i;
-                    opEnd = isComparator(query.charAt(i + 1)) ? i + 2 : i + 1;
-                    i = opEnd;
-                    continue;
-                } else if (c == '`') {
-                    if (nameEnd != -1) {
-                        throw new IllegalArgumentException();
-                    }
-                    nameStart = i + 1;
-                    nameEnd = nameStart;
-                    while (query.charAt(nameEnd) != '`') {
-                        nameEnd++;
-
-                    }
-                    i = nameEnd;
-                } else {
-                    if (nameEnd != -1) {
-                        valStart = i;
-                        valEnd = valStart;
-                        while (query.charAt(valEnd) != ' ' && !isComparator(query.charAt(valEnd))) {
-                            valEnd++;
-                            if (valEnd == query.length()) {
-                                break;
-                            }
-                        }
-                        i = query.length();
-                    } else {
-                        nameStart = i;
-                        nameEnd = nameStart;
-                        while (query.charAt(nameEnd) != ' ' && !isComparator(query.charAt(nameEnd))) {
-                            nameEnd++;
-                        }
-                        i = nameEnd - 1;
-
-                    }
-                }
-            }
-            ++i;
-
-            if (i >= query.length()) {
-                final Series<?> series = get(query.substring(nameStart, nameEnd));
-                if (series == null) {
-                    throw new StringParseException(query, nameStart);
-                }
-                switch (series.getType()) {
-                    case STRING:
-                        return filter(series.getName(), (Predicate<String>) query0(query, opStart, opEnd, valStart + 1, valEnd - 1, it -> it));
-                    case BOOLEAN:
-                        return filter(series.getName(), (Predicate<Boolean>) query0(query, opStart, opEnd, valStart, valEnd, DataType::toBoolean));
-                    case LONG:
-                        if (!DataType.LONG.matches(query, valStart, valEnd)) {
-                            return filter(series.asDouble().mapToBool(query0(query, opStart, opEnd, valStart, valEnd, DataType::toDouble)));
-                        }
-                        return filter(series.getName(), (Predicate<Long>) query0(query, opStart, opEnd, valStart, valEnd, DataType::toLong));
-                    case DOUBLE:
-                        return filter(series.getName(), (Predicate<Double>) query0(query, opStart, opEnd, valStart, valEnd, DataType::toDouble));
-                    default:
-                        throw new UnsupportedOperationException();
-                }
-            }
-        }
+        return filter(Query.evaluate(query, this));
     }
 
-    @SuppressWarnings("unchecked")
-    static <U extends Comparable<U>> Predicate<U> query0(String query, int opStart, int opEnd, int valStart, int valEnd, Function<String, ? extends U> valueConverter) {
-        final String value = query.substring(valStart, valEnd);
-        int len = opEnd - opStart;
-        if (len == 2 && query.charAt(opEnd - 1) != '=') {
-            throw new IllegalArgumentException();
-        }
-        final U val = valueConverter.apply(value);
-        switch (query.charAt(opStart)) {
-            case '<':
-            case '>':
-                if (len == 2) {
-                    if (query.charAt(opStart) == '<') {
-                        return it -> it.compareTo(val) <= 0;
-                    } else {
-                        return it -> it.compareTo(val) >= 0;
-                    }
-                } else if (len == 1) {
-                    if (query.charAt(opStart) == '<') {
-                        return it -> it.compareTo(val) < 0;
-                    } else {
-                        return it -> it.compareTo(val) > 0;
-                    }
-                } else {
-                    throw new IllegalArgumentException();
-                }
-            case '=':
-            case '!':
-                if (len != 2) {
-                    throw new IllegalArgumentException();
-                }
-                if (query.charAt(opStart) == '=') {
-                    return it -> it.equals(val);
-                } else {
-                    return it -> !it.equals(val);
-                }
-            default:
-                throw new UnsupportedOperationException();
-        }
+    @Override
+    public String explain(String query) {
+        return Planner.explain(query, this);
     }
 
     @Override
@@ -950,6 +871,24 @@ abstract class DataFrameImpl implements DataFrame {
         }
     }
 
+    @Override
+    public DataFrame filterDouble(String series, DoublePredicate test) {
+        final Series<?> s = get(series);
+        if (s == null) {
+            throw new IllegalArgumentException("Could not find");
+        }
+        return filter(s.asDouble().mapDoubleToBool(test));
+    }
+
+    @Override
+    public DataFrame filterLong(String series, LongPredicate test) {
+        final Series<?> s = get(series);
+        if (s == null) {
+            throw new IllegalArgumentException("Could not find");
+        }
+        return filter(s.asLong().mapLongToBool(test));
+    }
+
     static int[] range(int start, int end) {
         return range(new int[end - start], start, end);
     }
@@ -998,12 +937,16 @@ abstract class DataFrameImpl implements DataFrame {
             numIds = ids.length;
         }
         series.sortArgs(ids, numIds, ascending);
+        final DataFrameView sorted;
         if (getClass() == DataFrameView.class) {
-            return new DataFrameView(DataFrameView.extract(this), ((DataFrameView) this).cols, ((DataFrameView) this).numCols, ids, numIds);
+            sorted = new DataFrameView(DataFrameView.extract(this), ((DataFrameView) this).cols, ((DataFrameView) this).numCols, ids, numIds);
         } else if (getClass() == DataFrameGroupBy.Group.class) {
-            return new DataFrameView(DataFrameView.extract(this), ids, numIds);
+            sorted = new DataFrameView(DataFrameView.extract(this), ids, numIds);
+        } else {
+            sorted = new DataFrameView(getSource(), ids, numIds);
         }
-        return new DataFrameView(getSource(), ids, numIds);
+        sorted.sortedBy = series.getName();
+        return sorted;
     }
 
     @Override
@@ -1018,8 +961,20 @@ abstract class DataFrameImpl implements DataFrame {
 
 
     @Override
-    public Iterable<DataFrame> groupBy(String name) {
-        return new DataFrameGroupBy(this, get(name).getName(), new GroupBy<>(get(name)));
+    public GroupedDataFrame groupBy(String... names) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException("At least one column must be specified");
+        }
+        final Series<?>[] keys = new Series<?>[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            keys[i] = get(names[i]);
+            if (keys[i] == null) {
+                throw new IllegalArgumentException("Could not find column by name " + names[i]);
+            }
+        }
+        final DataFrameGroupBy groupBy = new DataFrameGroupBy(this, keys);
+        groupBy.sorted = names.length == 1 && getClass() == DataFrameView.class && names[0].equals(((DataFrameView) this).sortedBy);
+        return groupBy;
     }
 
     @Override
@@ -1,14 +1,19 @@
 package net.mahdilamb.dataframe;
 
-import net.mahdilamb.dataframe.utils.StringUtils;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
-import java.util.Scanner;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import static net.mahdilamb.dataframe.DataType.STRING;
 
@@ -17,6 +22,16 @@ import static net.mahdilamb.dataframe.DataType.STRING;
  * Builder for importing data from a file or strong.
  */
 public abstract class DataFrameImporter {
+    /**
+     * An iterator over batches of rows that holds the source open until it is exhausted or closed
+     */
+    public interface Batches extends Iterator<DataFrame>, AutoCloseable {
+        /**
+         * Close the source. This is called automatically once the last batch has been read
+         */
+        @Override
+        void close();
+    }
 
     /**
      * @return a temporary dataframe with the top n rows.
@@ -31,15 +46,31 @@ public abstract class DataFrameImporter {
      */
     public abstract DataFrame build();
 
+    /**
+     * Read the rows in batches, so that sources larger than the available memory can be processed. Each batch has
+     * the same columns and types, which are the types that have been set or inferred when this is called. As the
+     * types are not promoted while reading, values that do not fit the type of their column are stored as the null
+     * value of the type. Use {@link #setSchema(String[], DataType...)} if the types are known.
+     *
+     * @param batchSize    the maximum number of rows in each batch
+     * @param reuseBuffers whether the arrays of a batch may be reused for the next batch. If true, a batch may only
+     *                     be used until the next call to {@link Iterator#hasNext()} or {@link Iterator#next()}
+     * @return an iterator of the batches, which should be closed if it is not read to the end
+     * @throws UncheckedIOException if the source could not be read
+     */
+    public abstract Batches batches(int batchSize, boolean reuseBuffers);
+
     /**
      * Set a column type
      *
-     * @param index the index of the column
+     * @param index the index of the column. If columns have been selected, this is the index within the selection
      * @param type  the type of the column
      * @return this importer
      */
     public DataFrameImporter setType(int index, DataType type) {
+        prepare();
         types[index] = Objects.requireNonNull(type);
+        fixedTypes[index] = true;
         return clear();
     }
 
@@ -51,20 +82,178 @@ public abstract class DataFrameImporter {
      */
     public DataFrameImporter setHasColumnNames(boolean hasColumnNames) {
         this.hasColumnNames = hasColumnNames;
+        this.columnNamesSet = true;
         return clear();
     }
 
+    /**
+     * Set the names and types of all the columns in the file. The types are not inferred from the file, and values
+     * that cannot be converted to the type of their column are stored as the null value of the type.
+     * <p>
+     * Unless set using {@link #setHasColumnNames(boolean)}, the first line of the file is treated as column names if
+     * it matches the names, or it does not match the types.
+     *
+     * @param names the names of the columns
+     * @param types the types of the columns
+     * @return this data frame importer
+     * @throws IllegalArgumentException if the number of names and types differ
+     */
+    public DataFrameImporter setSchema(final String[] names, final DataType... types) {
+        if (names.length != types.length) {
+            throw new IllegalArgumentException("The number of names and types must be the same");
+        }
+        for (final DataType type : types) {
+            Objects.requireNonNull(type);
+        }
+        this.names = names.clone();
+        this.schemaTypes = types.clone();
+        this.types = null;
+        return reset();
+    }
+
+    /**
+     * Only import some of the columns. The other columns are not converted or stored, and their types are not
+     * inferred. This resets any types set using {@link #setType(int, DataType)}
+     *
+     * @param names the names of the columns to import, in the order that they should appear in the data frame. The
+     *              names are matched against the schema, if set, or the first line of the file
+     * @return this data frame importer
+     * @throws IllegalArgumentException if a name is repeated. If a name is not in the file, an exception is thrown
+     *                                  when the file is read
+     */
+    public DataFrameImporter select(final String... names) {
+        if (new HashSet<>(Arrays.asList(names)).size() != names.length) {
+            throw new IllegalArgumentException("Columns may only be selected once");
+        }
+        this.selectedNames = names.clone();
+        this.selectedIndices = null;
+        this.types = null;
+        return reset();
+    }
+
+    /**
+     * Only import some of the columns. The other columns are not converted or stored, and their types are not
+     * inferred. This resets any types set using {@link #setType(int, DataType)}
+     *
+     * @param indices the indices of the columns in the file, in the order that they should appear in the data frame
+     * @return this data frame importer
+     * @throws IllegalArgumentException if an index is negative or repeated. If an index is not in the file, an
+     *                                  exception is thrown when the file is read
+     */
+    public DataFrameImporter select(final int... indices) {
+        final BitSet seen = new BitSet();
+        for (final int index : indices) {
+            if (index < 0 || seen.get(index)) {
+                throw new IllegalArgumentException("Columns must be non-negative and may only be selected once");
+            }
+            seen.set(index);
+        }
+        this.selectedIndices = indices.clone();
+        this.selectedNames = null;
+        this.types = null;
+        return reset();
+    }
+
+    /**
+     * Only import the rows that match a query, written in the syntax of {@link DataFrame#query(String)}. The query is
+     * evaluated on the fields of its columns as each record is read, so the other fields of rows that do not match are
+     * not converted or stored. The columns do not need to be selected. A row is imported if the query would select it
+     * from the imported data frame, so missing values (empty fields of numeric columns) are never selected by a
+     * comparison. If more than one filter is set, rows must match all of them. This resets any types set using
+     * {@link #setType(int, DataType)}
+     *
+     * @param query the query
+     * @return this data frame importer
+     * @throws net.mahdilamb.dataframe.utils.StringParseException if the query could not be parsed. If a column is not
+     *                                                            in the file, or the types in the query are not valid,
+     *                                                            an exception is thrown when the file is read
+     */
+    public DataFrameImporter filter(final String query) {
+        return addCondition(RowFilter.query(query));
+    }
+
+    /**
+     * Only import the rows where the value of a column matches a test. The test is evaluated on the field of the
+     * column as each record is read, so the other fields of rows that do not match are not converted or stored. The
+     * column does not need to be selected. Rows with an empty field in the column do not match. If more than one
+     * filter is set, rows must match all of them. This resets any types set using {@link #setType(int, DataType)}
+     *
+     * @param column the name of the column
+     * @param test   the test, which receives the value converted to the type of the column (i.e. {@link String},
+     *               {@link Boolean}, {@link Long} or {@link Double}). Use
+     *               {@link #setSchema(String[], DataType...)} if the type of the column needs to be known in advance
+     * @param <S>    the type of the values in the column
+     * @return this data frame importer
+     */
+    public <S extends Comparable<S>> DataFrameImporter filter(final String column, final Predicate<S> test) {
+        return addCondition(RowFilter.of(Objects.requireNonNull(column), Objects.requireNonNull(test)));
+    }
+
+    private DataFrameImporter addCondition(final RowFilter.Condition condition) {
+        conditions.add(condition);
+        this.types = null;
+        return reset();
+    }
+
+    /**
+     * Set the number of records that are used to infer the types of the columns. Half of the records are read
+     * from the start of the file and the remainder are sampled from across the rest of the file. This is used the
+     * next time that the types are inferred, i.e. on the first call to {@link #preview()},
+     * {@link #setType(int, DataType)} or {@link #build()}
+     *
+     * @param rows the number of records
+     * @return this data frame importer
+     * @throws IllegalArgumentException if the number of records is less than 1
+     */
+    public DataFrameImporter setInferenceRows(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("At least one record must be used to infer the types");
+        }
+        this.inferenceRows = rows;
+        return clear();
+    }
+
+    /**
+     * Set the number of threads to use when reading the file. If more than one thread is used, the file is split into
+     * ranges that are read concurrently and then combined in order.
+     *
+     * @param parallelism the number of threads. A value of 1 reads the file on the calling thread
+     * @return this data frame importer
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    public DataFrameImporter setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return clear();
+    }
+
+    /**
+     * Read the file using all the available processors
+     *
+     * @return this data frame importer
+     * @see #setParallelism(int)
+     */
+    public DataFrameImporter setParallel() {
+        return setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
     /**
      * @return the name of the data frame to be created
      */
     protected abstract String getName();
 
     static int TEST_LINES = 20;
-    String[] putativeHeader;
     /**
-     * A selection of the lines that are available for previewing
+     * The default number of records that are used to infer the types of the columns
      */
-    protected String[] previewLines;
+    static int INFERENCE_LINES = 1000;
+    /**
+     * The maximum number of places in the file from which records are sampled to infer the types
+     */
+    static int SAMPLE_BLOCKS = 32;
+    String[] putativeHeader;
 
     char separator;
     Charset charset;
@@ -74,17 +263,60 @@ public abstract class DataFrameImporter {
      * Fields that should be calculated in the initial read
      */
     /**
-     * The number of lines
+     * The number of lines that have been read to infer the types
      */
     protected int numLines;
     /**
-     * The number of columns
+     * The number of columns to import
      */
     protected int numColumns;
     /**
      * The data types
      */
     protected DataType[] types;
+    /**
+     * Whether the data types have been set by the user. Columns with fixed types are not promoted to a wider type
+     * while being read
+     */
+    protected boolean[] fixedTypes;
+    /**
+     * The names of all the columns in the file, if set by the user
+     */
+    protected String[] names;
+    /**
+     * The types of all the columns in the file, if set by the user
+     */
+    DataType[] schemaTypes;
+    /**
+     * The columns to import, if selected by the user
+     */
+    String[] selectedNames;
+    int[] selectedIndices;
+    /**
+     * The number of fields in each record of the file
+     */
+    int numFields;
+    /**
+     * The index in the file of each column that is read. The first {@link #numColumns} are imported, and these are
+     * followed by any columns that are only read to filter the rows
+     */
+    int[] columns;
+    /**
+     * The conditions on the rows to import
+     */
+    final List<RowFilter.Condition> conditions = new ArrayList<>();
+    /**
+     * The names of the columns that are read by the conditions
+     */
+    String[] conditionNames;
+    /**
+     * The index within {@link #columns} of each of {@link #conditionNames}
+     */
+    int[] conditionColumns;
+    /**
+     * The number of records that are used to infer the types
+     */
+    protected int inferenceRows = INFERENCE_LINES;
     /**
      * The current dataframe preview
      */
@@ -94,6 +326,14 @@ public abstract class DataFrameImporter {
      * Fields that should be populated with user input
      */
     protected boolean hasColumnNames;
+    /**
+     * Whether {@link #hasColumnNames} has been set by the user or guessed
+     */
+    protected boolean columnNamesSet;
+    /**
+     * The number of threads to use when reading
+     */
+    protected int parallelism = 1;
 
     private DataFrameImporter() {
 
@@ -104,136 +344,215 @@ public abstract class DataFrameImporter {
         return this;
     }
 
+    /**
+     * Clear any information that has been read from the source
+     *
+     * @return this importer
+     */
+    protected DataFrameImporter reset() {
+        return clear();
+    }
+
+    /**
+     * Read the information that is required to set the types and create a preview, if it has not been read
+     */
+    protected abstract void prepare();
+
     static final class FromFile extends DataFrameImporter {
 
         final File source;
+        /**
+         * The records that have been read to infer the types
+         */
+        List<String[]> prefix;
 
-        FromFile(final File source, char separator, char quoteCharacter, Charset charset, boolean storePreview) {
+        FromFile(final File source, char separator, char quoteCharacter, Charset charset) {
             this.source = source;
             this.separator = separator;
             this.charset = charset;
             this.quoteCharacter = quoteCharacter;
-            numLines = 1;
-            try (FileInputStream inputStream = new FileInputStream(source); Scanner scanner = new Scanner(inputStream, charset.name())) {
-                String line = scanner.nextLine();
-                int[] headerNameLength = new int[20];
-                char quote = 0;
-                int g = 0, k = 1;
-                for (int j = 0; g < line.length(); ++g, ++k) {
-                    char c = line.charAt(g);
-                    if (isSeparator(c) && quote == 0) {
-                        if (j >= headerNameLength.length) {
-                            headerNameLength = Arrays.copyOf(headerNameLength, headerNameLength.length + 20);
-                        }
-                        headerNameLength[j++] = k - 1;
-                        k = 0;
-                        numColumns++;
-                        quote = 0;
-                    } else {
-                        if (isQuote(c)) {
-                            quote = quote != c ? c : 0;
-                        }
-                    }
+        }
+
+        /**
+         * @return a tokenizer of the source file
+         * @throws IOException if the file could not be opened
+         */
+        DelimitedTokenizer open() throws IOException {
+            return new DelimitedTokenizer(source, separator, quoteCharacter, charset);
+        }
+
+        /**
+         * Read the header and the first records of the file. If the types have not yet been set, they will be
+         * inferred from the first records and records sampled from across the file.
+         *
+         * @param tokenizer the tokenizer positioned at the start of the file
+         * @return the records that were read after the header
+         * @throws IOException if the file could not be read
+         */
+        List<String[]> inspect(final DelimitedTokenizer tokenizer) throws IOException {
+            final String[] header;
+            if (tokenizer.nextRecord()) {
+                numFields = names == null ? tokenizer.numFields() : names.length;
+                header = new String[numFields];
+                for (int i = 0; i < numFields; ++i) {
+                    header[i] = tokenizer.getString(i);
                 }
-                if (g == line.length()) {
-                    if (g >= headerNameLength.length) {
-                        headerNameLength = Arrays.copyOf(headerNameLength, headerNameLength.length + 1);
-                    }
-                    headerNameLength[numColumns] = k - 1;
-                    numColumns++;
+            } else {
+                numFields = names == null ? 1 : names.length;
+                header = new String[numFields];
+                Arrays.fill(header, "");
+            }
+            columns = selectColumns(names == null ? header : names);
+            numColumns = columns.length;
+            addConditionColumns(names == null ? header : names);
+            putativeHeader = new String[columns.length];
+            for (int i = 0; i < columns.length; ++i) {
+                putativeHeader[i] = columns[i] < header.length ? header[columns[i]] : "";
+            }
+            final boolean infer = types == null && schemaTypes == null;
+            final int headRows = infer ? Math.max(TEST_LINES, (inferenceRows + 1) / 2) : TEST_LINES;
+            prefix = new ArrayList<>();
+            while (prefix.size() < headRows && tokenizer.nextRecord()) {
+                prefix.add(readRecord(tokenizer));
+            }
+            numLines = 1 + prefix.size();
+            if (infer) {
+                final List<String[]> samples = new ArrayList<>(prefix.subList(0, Math.min(prefix.size(), (inferenceRows + 1) / 2)));
+                if (prefix.size() == headRows) {
+                    sample(tokenizer.position(), inferenceRows - samples.size(), samples);
                 }
-                putativeHeader = new String[numColumns];
-                types = new DataType[numColumns];
-                if (numColumns > 1) {
-                    for (int i = 0, l = 0; i < numColumns; l += headerNameLength[i] + 1, ++i) {
-                        if (headerNameLength[i] == 0) {
-                            putativeHeader[i] = DataFrameImpl.EMPTY_COLUMN_PREFIX + i;
-                        } else {
-                            int s = l, e = l + headerNameLength[i];
-                            if (line.charAt(s) == line.charAt(e - 1) && isQuote(line.charAt(s))) {
-                                ++s;
-                                --e;
-                            }
-                            putativeHeader[i] = line.substring(s, e);
-                        }
-                    }
-                } else {
-                    if (line.length() == 0) {
-                        putativeHeader[0] = DataFrameImpl.EMPTY_COLUMN_PREFIX + "0";
-                    } else {
-                        if (isQuote(line.charAt(0)) && line.charAt(0) == line.charAt(line.length() - 1)) {
-                            putativeHeader[0] = line.substring(1, line.length() - 1);
-                        } else {
-                            putativeHeader[0] = line;
-                        }
-                    }
+                types = inferTypes(samples, columns.length);
+                fixedTypes = new boolean[columns.length];
+            } else if (types == null) {
+                types = new DataType[columns.length];
+                for (int i = 0; i < columns.length; ++i) {
+                    types[i] = schemaTypes[columns[i]];
                 }
+                fixedTypes = new boolean[columns.length];
+                Arrays.fill(fixedTypes, true);
+            }
+            if (!columnNamesSet) {
+                guessHasColumnNames();
+                columnNamesSet = true;
+            }
+            return prefix;
+        }
 
-                int scanCount = 0;
-                final DataType[] seriesTypes = DataType.values();
+        /**
+         * @param names the names of the fields in the file
+         * @return the indices of the fields that should be imported
+         */
+        private int[] selectColumns(final String[] names) {
+            if (selectedIndices != null) {
+                return selectedIndices.clone();
+            }
+            if (selectedNames != null) {
+                final int[] columns = new int[selectedNames.length];
+                for (int i = 0; i < columns.length; ++i) {
+                    columns[i] = Arrays.asList(names).indexOf(selectedNames[i]);
+                    if (columns[i] == -1) {
+                        throw new IllegalArgumentException("Could not find column " + selectedNames[i]);
+                    }
+                }
+                return columns;
+            }
+            final int[] columns = new int[numFields];
+            for (int i = 0; i < numFields; ++i) {
+                columns[i] = i;
+            }
+            return columns;
+        }
 
-                final int[] typeCounts = new int[seriesTypes.length * numColumns];
-                if (storePreview) {
-                    previewLines = new String[TEST_LINES];
+        /**
+         * Find the columns of the conditions, adding those that are not imported to the columns that are read
+         *
+         * @param names the names of the fields in the file
+         */
+        private void addConditionColumns(final String[] names) {
+            final Set<String> read = new LinkedHashSet<>();
+            for (final RowFilter.Condition condition : conditions) {
+                read.addAll(condition.columns(Arrays.asList(names)));
+            }
+            conditionNames = read.toArray(new String[0]);
+            conditionColumns = new int[conditionNames.length];
+            for (int i = 0; i < conditionColumns.length; ++i) {
+                final int field = Arrays.asList(names).indexOf(conditionNames[i]);
+                int position = 0;
+                while (position < columns.length && columns[position] != field) {
+                    ++position;
                 }
-                while (scanner.hasNextLine()) {
-                    line = scanner.nextLine();
-                    if (storePreview && scanCount < TEST_LINES) {
-                        previewLines[scanCount] = line;
-                    }
-                    int h = 0, o = 0;
-                    while (true) {
-                        int currentO = o;
-                        h = StringUtils.iterateLine(line, h, separator, quoteCharacter, str -> updateCounts(currentO, seriesTypes, typeCounts, str));
-                        if (h >= line.length()) {
-                            break;
-                        }
-                        ++o;
-                    }
-                    ++scanCount;
-                    ++numLines;
+                if (position == columns.length) {
+                    columns = Arrays.copyOf(columns, columns.length + 1);
+                    columns[position] = field;
                 }
-                for (int i = 0; i < numColumns; ++i) {
-                    DataType favored = null;
-                    int favoredScored = 0;
-                    for (int j = 0; j < seriesTypes.length; ++j) {
-                        int count = typeCounts[i * seriesTypes.length + j];
-                        DataType t = seriesTypes[j];
-                        if (favored == null || count >= favoredScored) {
-                            if (favored == null || count > favoredScored) {
-                                favored = t;
-                                favoredScored = count;
-                            } else {
-                                if (favored.score < t.score) {
-                                    favored = t;
-                                }
-                            }
+                conditionColumns[i] = position;
+            }
+        }
+
+        /**
+         * @return the filter on the rows, or {@code null} if all rows are imported
+         */
+        RowFilter createRowFilter() {
+            return conditions.isEmpty() ? null : new RowFilter(conditions, conditionNames, conditionColumns, types);
+        }
+
+        /**
+         * Read records from places spread evenly across the file. Records that do not have the expected number of
+         * fields are skipped, as they may have been read from the middle of a quoted field
+         *
+         * @param from  the offset in the file to start sampling from
+         * @param count the number of records to read
+         * @param out   the list to add the records to
+         * @throws IOException if the file could not be read
+         */
+        private void sample(long from, int count, final List<String[]> out) throws IOException {
+            final long size = source.length();
+            if (count <= 0 || from >= size || !DelimitedTokenizer.isAsciiCompatible(charset)) {
+                return;
+            }
+            final int blocks = Math.min(count, SAMPLE_BLOCKS);
+            try (final DelimitedTokenizer sampler = new DelimitedTokenizer(source, separator, quoteCharacter, charset, from, Long.MAX_VALUE, 1 << 16)) {
+                int remaining = count;
+                for (int b = 0; b < blocks; ++b) {
+                    final int rows = remaining / (blocks - b);
+                    remaining -= rows;
+                    sampler.seekLine(from + (size - from) * (2 * b + 1) / (2 * blocks));
+                    for (int r = 0; r < rows && sampler.nextRecord(); ++r) {
+                        if (sampler.numFields() == numFields) {
+                            out.add(readRecord(sampler));
                         }
                     }
-                    types[i] = favored;
-                }
-                guessHasColumnNames();
-                while (scanner.findWithinHorizon(StringUtils.linePattern, 0) != null) {
-                    numLines++;
                 }
+            }
+        }
 
-            } catch (IOException e) {
-                e.printStackTrace();
+        /**
+         * Read the fields of the columns that are read from the current record of the tokenizer as strings
+         *
+         * @param tokenizer the tokenizer
+         * @return the fields. Missing fields are set to an empty string
+         */
+        String[] readRecord(final DelimitedTokenizer tokenizer) {
+            final String[] cells = new String[columns.length];
+            for (int i = 0; i < cells.length; ++i) {
+                cells[i] = tokenizer.getString(columns[i]);
             }
+            return cells;
         }
 
-        private static void updateCounts(int o, DataType[] types, int[] counts, final String str) {
-            for (int b = 0; b < types.length; ++b) {
-                final DataType t = types[b];
-                if (str.length() == 0) {
-                    if (t.supportsNull()) {
-                        counts[o * types.length + b] += 1;
-                    }
-                } else if (t.matches(str)) {
-                    counts[o * types.length + b] += 1;
+        /**
+         * @return the header of the file, if present. Empty names are replaced with a generated name
+         */
+        String[] getColumnNames() {
+            final String[] names = new String[numColumns];
+            for (int i = 0; i < numColumns; ++i) {
+                if (this.names != null) {
+                    names[i] = this.names[columns[i]];
+                } else {
+                    names[i] = !hasColumnNames || putativeHeader[i].length() == 0 ? (DataFrameImpl.EMPTY_COLUMN_PREFIX + columns[i]) : putativeHeader[i];
                 }
             }
-
+            return names;
         }
 
         @Override
@@ -246,45 +565,117 @@ public abstract class DataFrameImporter {
             return new DataFrameImpl.FromFile(this);
         }
 
+        @Override
+        public Batches batches(int batchSize, boolean reuseBuffers) {
+            try {
+                return new DelimitedBatchReader(this, batchSize, reuseBuffers);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         @Override
         protected String getName() {
             return source.getName();
         }
+
+        @Override
+        protected void prepare() {
+            if (prefix == null) {
+                try (final DelimitedTokenizer tokenizer = open()) {
+                    inspect(tokenizer);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        protected DataFrameImporter reset() {
+            prefix = null;
+            return super.reset();
+        }
+
+        @Override
+        protected List<String[]> getPreviewRecords() {
+            prepare();
+            return prefix;
+        }
     }
 
+    private static void updateCounts(int o, DataType[] types, int[] counts, final String str) {
+        final int matches = str.length() == 0 ? 0 : DataType.classify(str, 0, str.length());
+        for (int b = 0; b < types.length; ++b) {
+            final DataType t = types[b];
+            if (str.length() == 0 ? t.supportsNull() : (matches & t.mask()) != 0) {
+                counts[o * types.length + b] += 1;
+            }
+        }
+
+    }
+
+    /**
+     * Infer the types of the columns. The type that can represent the most cells is chosen, and ties are
+     * decided by the score of the type
+     *
+     * @param records    the records to use
+     * @param numColumns the number of columns
+     * @return the inferred types
+     */
+    static DataType[] inferTypes(final Iterable<String[]> records, int numColumns) {
+        final DataType[] seriesTypes = DataType.values();
+        final int[] typeCounts = new int[seriesTypes.length * numColumns];
+        for (final String[] record : records) {
+            for (int o = 0; o < numColumns; ++o) {
+                updateCounts(o, seriesTypes, typeCounts, record[o]);
+            }
+        }
+        final DataType[] types = new DataType[numColumns];
+        for (int i = 0; i < numColumns; ++i) {
+            DataType favored = null;
+            int favoredScored = 0;
+            for (int j = 0; j < seriesTypes.length; ++j) {
+                int count = typeCounts[i * seriesTypes.length + j];
+                DataType t = seriesTypes[j];
+                if (favored == null || count >= favoredScored) {
+                    if (favored == null || count > favoredScored) {
+                        favored = t;
+                        favoredScored = count;
+                    } else {
+                        if (favored.score < t.score) {
+                            favored = t;
+                        }
+                    }
+                }
+            }
+            types[i] = favored;
+        }
+        return types;
+    }
+
+    /**
+     * @return the records that are available for previewing
+     */
+    protected abstract List<String[]> getPreviewRecords();
+
     @SuppressWarnings("unchecked")
     protected <S extends Comparable<S>, T extends Series<? extends S>> void preparePreview() {
         if (currentPreview == null) {
-            int rows = Math.min(TEST_LINES, numLines - 1);
+            final List<String[]> records = getPreviewRecords();
+            final int offset = hasColumnNames ? 0 : 1;
+            final int rows = Math.min(TEST_LINES, records.size() + offset);
 
             final String[][] data = new String[numColumns][rows];
             for (int i = 0; i < numColumns; ++i) {
                 data[i] = new String[rows];
-            }
-            if (hasColumnNames) {
-                for (int i = 0; i < rows; ++i) {
-                    final String line = previewLines[i];
-                    int h = 0, o = 0;
-                    while (h < line.length()) {
-                        int col = o;
-                        int row = i;
-                        h = StringUtils.iterateLine(line, h, separator, quoteCharacter, str -> data[col][row] = str);
-                        ++o;
-                    }
+                if (!hasColumnNames) {
+                    data[i][0] = putativeHeader[i];
                 }
-            } else {
+            }
+            for (int i = offset; i < rows; ++i) {
+                final String[] record = records.get(i - offset);
                 for (int j = 0; j < numColumns; ++j) {
-                    data[j][0] = putativeHeader[j];
-                }
-                for (int i = 1; i < data[0].length; ++i) {
-                    final String line = previewLines[i];
-                    int h = 0, o = 0;
-                    while (h < line.length()) {
-                        int col = o;
-                        int row = i;
-                        h = StringUtils.iterateLine(line, h, separator, quoteCharacter, str -> data[col][row] = str);
-                        ++o;
-                    }
+                    data[j][i] = record[j];
                 }
             }
             final T[] series = (T[]) new Series[numColumns];
@@ -332,6 +723,18 @@ public abstract class DataFrameImporter {
      * Update the {@link #hasColumnNames} method guessing whether there are columnn names
      */
     protected void guessHasColumnNames() {
+        if (names != null) {
+            hasColumnNames = true;
+            for (int i = 0; i < numColumns; ++i) {
+                if (!names[columns[i]].equals(putativeHeader[i])) {
+                    hasColumnNames = false;
+                    break;
+                }
+            }
+            if (hasColumnNames) {
+                return;
+            }
+        }
         hasColumnNames = false;
         for (int i = 0; i < numColumns; ++i) {
             if (types[i] != STRING && !types[i].matches(putativeHeader[i])) {
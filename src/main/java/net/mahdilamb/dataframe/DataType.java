@@ -1,9 +1,8 @@
 package net.mahdilamb.dataframe;
 
+import net.mahdilamb.dataframe.utils.NumberParser;
 import net.mahdilamb.dataframe.utils.StringUtils;
 
-import java.util.regex.Pattern;
-
 
 /**
  * Datatype to be used by dataseries
@@ -16,19 +15,25 @@ public enum DataType {
      * @apiNote Series that contain longs should also contain a {@code #isNaN(int index)} method to test whether it has
      * been zeroed during parse.
      */
-    LONG(10, StringUtils.LONG_PATTERN, false),
+    LONG(10, false),
     /**
      * A 64-bit float. If a value cannot be parsed, it will be {@code NaN}.
      */
-    DOUBLE(9, StringUtils.FLOATING_POINT_PATTERN_WITHOUT_HEX, true),
+    DOUBLE(9, true),
     /**
      * Values are either true or false. If a value cannot be parsed, it will be false.
      */
-    BOOLEAN(8, StringUtils.BOOLEAN_PATTERN, false),
+    BOOLEAN(8, false),
     /**
      * String type
      */
-    STRING(0, Pattern.compile("(?:.*)"), true);
+    STRING(0, true);
+
+    /**
+     * Flag used by {@link #classify(CharSequence, int, int)} for hexadecimal floating point numbers. These can be
+     * converted to a double, but are not matched by {@link #DOUBLE}
+     */
+    static final int HEX_FLOATING_POINT = 1 << 4;
 
     /**
      * Test if a data type is numeric
@@ -47,7 +52,7 @@ public enum DataType {
      * @return whether this string can be cast as the given type
      */
     public boolean matches(String string) {
-        return matcher.matcher(string).matches();
+        return (classify(string, 0, string.length()) & mask) != 0;
     }
 
     /**
@@ -66,7 +71,198 @@ public enum DataType {
      * @return whether the string can be cast to this type
      */
     public boolean matches(String string, int start, int end) {
-        return string != null && matcher.matcher(string).region(start, end).matches();
+        return string != null && (classify(string, start, end) & mask) != 0;
+    }
+
+    /**
+     * @return the flag of this type in the result of {@link #classify(CharSequence, int, int)}
+     */
+    int mask() {
+        return mask;
+    }
+
+    /**
+     * Classify a range of a character sequence in a single scan. The result is equivalent to testing the range
+     * against the patterns in {@link StringUtils} ({@link StringUtils#longPattern} for {@link #LONG},
+     * {@link StringUtils#fpPatternWithoutHex} for {@link #DOUBLE}, {@link StringUtils#boolPattern} for
+     * {@link #BOOLEAN} and any single line for {@link #STRING}).
+     *
+     * @param s     the character sequence
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the {@link #mask() flags} of the types that match the range, combined with
+     * {@link #HEX_FLOATING_POINT} if the range is a hexadecimal floating point number
+     */
+    static int classify(final CharSequence s, int start, int end) {
+        final int length = end - start;
+        if (length == 0) {
+            return STRING.mask;
+        }
+        final char first = s.charAt(start);
+        final int matches;
+        if (length == 1 && (first == '0' || first == '1')) {
+            matches = LONG.mask | DOUBLE.mask | BOOLEAN.mask;
+        } else if ((length == 4 || length == 5) && equalsIgnoreCase(s, start, end, length == 4 ? "true" : "false")) {
+            matches = BOOLEAN.mask;
+        } else {
+            matches = classifyNumber(s, start, end);
+        }
+        if (matches != 0) {
+            //numbers and booleans never contain line terminators
+            return matches | STRING.mask;
+        }
+        for (int i = start; i < end; ++i) {
+            if (isLineTerminator(s.charAt(i))) {
+                return 0;
+            }
+        }
+        return STRING.mask;
+    }
+
+    private static int classifyNumber(final CharSequence s, int start, int end) {
+        int i = start;
+        char c = s.charAt(i);
+        if (c == '+' || c == '-') {
+            if (++i == end) {
+                return 0;
+            }
+            c = s.charAt(i);
+        }
+        if (c == 'N' || c == 'I') {
+            return equals(s, i, end, "NaN") || equals(s, i, end, "Infinity") ? DOUBLE.mask : 0;
+        }
+        if (c == '0' && i + 1 < end && ((c = s.charAt(i + 1)) == 'x' || c == 'X')) {
+            return classifyHex(s, i + 2, end);
+        }
+        final int intStart = i;
+        i = skipDigits(s, i, end);
+        final boolean hasIntDigits = i > intStart;
+        boolean integer = true;
+        if (i < end && s.charAt(i) == '.') {
+            integer = false;
+            final int fracStart = ++i;
+            i = skipDigits(s, i, end);
+            if (!hasIntDigits && i == fracStart) {
+                return 0;
+            }
+        } else if (!hasIntDigits) {
+            return 0;
+        }
+        if (i < end && ((c = s.charAt(i)) == 'e' || c == 'E')) {
+            integer = false;
+            if (++i < end && ((c = s.charAt(i)) == '+' || c == '-')) {
+                ++i;
+            }
+            final int expStart = i;
+            i = skipDigits(s, i, end);
+            if (i == expStart) {
+                return 0;
+            }
+        }
+        if (i == end) {
+            return integer ? (LONG.mask | DOUBLE.mask) : DOUBLE.mask;
+        }
+        if (i + 1 == end) {
+            switch (s.charAt(i)) {
+                case 'f':
+                case 'F':
+                case 'd':
+                case 'D':
+                    return DOUBLE.mask;
+                case 'l':
+                case 'L':
+                    return integer ? LONG.mask : 0;
+                default:
+                    return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static int classifyHex(final CharSequence s, int i, int end) {
+        final int intStart = i;
+        i = skipHexDigits(s, i, end);
+        final boolean hasIntDigits = i > intStart;
+        if (i < end && s.charAt(i) == '.') {
+            final int fracStart = ++i;
+            i = skipHexDigits(s, i, end);
+            if (!hasIntDigits && i == fracStart) {
+                return 0;
+            }
+        } else if (!hasIntDigits) {
+            return 0;
+        }
+        char c;
+        if (i == end || ((c = s.charAt(i)) != 'p' && c != 'P')) {
+            return 0;
+        }
+        if (++i < end && ((c = s.charAt(i)) == '+' || c == '-')) {
+            ++i;
+        }
+        final int expStart = i;
+        i = skipDigits(s, i, end);
+        if (i == expStart) {
+            return 0;
+        }
+        if (i < end && ((c = s.charAt(i)) == 'f' || c == 'F' || c == 'd' || c == 'D')) {
+            ++i;
+        }
+        return i == end ? HEX_FLOATING_POINT : 0;
+    }
+
+    private static int skipDigits(final CharSequence s, int i, int end) {
+        char c;
+        while (i < end && (c = s.charAt(i)) >= '0' && c <= '9') {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int skipHexDigits(final CharSequence s, int i, int end) {
+        char c;
+        while (i < end && (((c = s.charAt(i)) >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static boolean equals(final CharSequence s, int start, int end, final String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if (s.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param s     the character sequence
+     * @param start the start of the range
+     * @param end   the end of the range
+     * @param word  the lower case word
+     * @return whether the range is the word, ignoring the case of ASCII letters
+     */
+    private static boolean equalsIgnoreCase(final CharSequence s, int start, int end, final String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if ((s.charAt(start + i) | 0x20) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param c the character
+     * @return whether the character is not matched by {@code .} in a regular expression
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
     /**
@@ -76,10 +272,10 @@ public enum DataType {
      * @return a double of the string if parsable, or {@code NaN} if not
      */
     public static double toDouble(String value) {
-        if (value != null && value.length() > 0 && StringUtils.FLOATING_POINT_PATTERN.matcher(value).matches()) {
-            return java.lang.Double.parseDouble(value);
+        if (value == null) {
+            return java.lang.Double.NaN;
         }
-        return java.lang.Double.NaN;
+        return NumberParser.parseDouble(value, 0, value.length(), java.lang.Double.NaN);
     }
 
     /**
@@ -129,11 +325,11 @@ public enum DataType {
      * @return the value as a long. Or 0 if not parsable.
      */
     public static long toLong(String value) {
-        if (StringUtils.LONG_PATTERN.matcher(value).matches()) {
+        if (LONG.matches(value)) {
             try {
-                return java.lang.Long.parseLong(value);
+                return NumberParser.parseLong(value);
             } catch (NumberFormatException ignored) {
-
+                //out of range
             }
         }
         return 0;
@@ -215,12 +411,12 @@ public enum DataType {
      * E.g. if all the values in a column could be Long or Double, then the weight decides which is chosen
      */
     protected final int score;
-    private final Pattern matcher;
+    private final int mask;
     private final boolean supportsNull;
 
-    DataType(int score, Pattern matcher, boolean supportsNull) {
+    DataType(int score, boolean supportsNull) {
         this.score = score;
-        this.matcher = matcher;
+        this.mask = 1 << ordinal();
         this.supportsNull = supportsNull;
     }
 
@@ -0,0 +1,132 @@
+package net.mahdilamb.dataframe;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a delimited file as a sequence of data frames, each containing a fixed number of rows.
+ * <p>
+ * The types of the columns are decided before the first batch is read (either set by the user or inferred) and are
+ * not promoted, so that every batch has the same schema. Values that cannot be converted to the type of their column
+ * are stored as the null value of the type.
+ * <p>
+ * The same column builders are used for every batch, so reading the file only requires memory for a single batch.
+ * If buffers are reused, the data frames are backed by the arrays of the builders and are only valid until the next
+ * batch is read. Otherwise, each data frame has its own copy of the values.
+ */
+final class DelimitedBatchReader implements DataFrameImporter.Batches {
+    private final String name;
+    private final String[] names;
+    private final DelimitedTokenizer tokenizer;
+    private final SeriesBuilder[] builders;
+    private final int[] columns;
+    private final RowFilter filter;
+    private final boolean reuseBuffers;
+    private final int batchSize;
+    /**
+     * The records that have already been read by the importer
+     */
+    private final Iterator<String[]> pending;
+    private boolean ready;
+    private boolean closed;
+
+    DelimitedBatchReader(final DataFrameImporter.FromFile importer, int batchSize, boolean reuseBuffers) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.name = importer.getName();
+        this.batchSize = batchSize;
+        this.reuseBuffers = reuseBuffers;
+        this.tokenizer = importer.open();
+        try {
+            final List<String[]> records = new ArrayList<>(importer.inspect(tokenizer));
+            if (!importer.hasColumnNames) {
+                records.add(0, importer.putativeHeader);
+            }
+            this.pending = records.iterator();
+        } catch (IOException e) {
+            tokenizer.close();
+            throw e;
+        }
+        this.names = importer.getColumnNames();
+        this.columns = importer.columns;
+        this.filter = importer.createRowFilter();
+        this.builders = new SeriesBuilder[importer.numColumns];
+        for (int i = 0; i < builders.length; ++i) {
+            builders[i] = SeriesBuilder.of(importer.types[i], true, batchSize);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        for (final SeriesBuilder builder : builders) {
+            builder.clear();
+        }
+        int rows = 0;
+        try {
+            while (rows < batchSize && pending.hasNext()) {
+                final String[] record = pending.next();
+                if (filter != null && !filter.test(record)) {
+                    continue;
+                }
+                for (int i = 0; i < builders.length; ++i) {
+                    builders[i].add(record[i]);
+                }
+                ++rows;
+            }
+            while (rows < batchSize && tokenizer.nextRecord()) {
+                if (filter != null && !filter.test(tokenizer, columns)) {
+                    continue;
+                }
+                for (int i = 0; i < builders.length; ++i) {
+                    builders[i].add(tokenizer.get(columns[i]));
+                }
+                ++rows;
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+        if (rows == 0) {
+            close();
+            return false;
+        }
+        return ready = true;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public DataFrame next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        final Series[] series = new Series[builders.length];
+        for (int i = 0; i < series.length; ++i) {
+            series[i] = reuseBuffers ? builders[i].wrap(names[i]) : builders[i].build(names[i]);
+        }
+        return new DataFrameImpl.OfArray(name, series);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                tokenizer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package net.mahdilamb.dataframe;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Tokenizer for delimited text files (e.g. csv and tsv) that works directly on the bytes of the file.
+ * <p>
+ * Each record is read into a reusable buffer and the boundaries of its fields are stored, so that the fields can be
+ * accessed in any order without creating a string for every cell. Fields are returned as {@link CharSequence} views
+ * into the buffer, which are only valid until the next call to {@link #nextRecord()}.
+ * <p>
+ * Quoted fields may contain separators, line breaks and escaped (doubled) quote characters. Empty lines are skipped.
+ * <p>
+ * A tokenizer may be limited to a byte range of a file, in which case it returns the records that start within the
+ * range (the last record may end beyond the range).
+ *
+ * @implNote the view of a field maps each byte to a character, which is correct for the ASCII characters used by
+ * numbers and booleans. Use {@link Object#toString()} on the view to decode the field using the charset of the file.
+ * Files whose charset does not encode ASCII as single bytes are transcoded to UTF-8 before being tokenized.
+ */
+final class DelimitedTokenizer implements Closeable {
+    /**
+     * The initial size of the byte buffer. The buffer grows if a single record is larger than the buffer
+     */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final int INITIAL_FIELDS = 16;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * A view of a field in the current record
+     */
+    static final class Field implements CharSequence {
+        private final Charset charset;
+        byte[] buffer;
+        int start;
+        int end;
+
+        Field(final Charset charset) {
+            this.charset = charset;
+        }
+
+        Field set(byte[] buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer[start + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, start, end - start, charset);
+        }
+    }
+
+    private final ReadableByteChannel channel;
+    private final Charset charset;
+    private final byte separator;
+    private final byte quote;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    /**
+     * The offset in the file of the first byte in the buffer
+     */
+    private long offset;
+    /**
+     * The offset in the file at which no more records are started
+     */
+    private final long end;
+    /**
+     * The offset in the file of the current record
+     */
+    private long recordStart = -1;
+
+    private int numFields;
+    private int[] starts = new int[INITIAL_FIELDS];
+    private int[] ends = new int[INITIAL_FIELDS];
+    private boolean[] escaped = new boolean[INITIAL_FIELDS];
+    private Field[] views = new Field[INITIAL_FIELDS];
+
+    /**
+     * Create a tokenizer for a file
+     *
+     * @param source         the file
+     * @param separator      the separator character
+     * @param quoteCharacter the quote character
+     * @param charset        the charset of the file
+     * @throws IOException              if the file could not be opened
+     * @throws IllegalArgumentException if the separator or quote character is not an ASCII character
+     */
+    DelimitedTokenizer(final File source, char separator, char quoteCharacter, Charset charset) throws IOException {
+        this(source, separator, quoteCharacter, charset, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a tokenizer for the records that start within a range of a file
+     *
+     * @param source         the file
+     * @param separator      the separator character
+     * @param quoteCharacter the quote character
+     * @param charset        the charset of the file. Must be {@link #isAsciiCompatible(Charset) ASCII compatible} if
+     *                       the range does not start at the beginning of the file
+     * @param start          the offset in the file of the start of the range (inclusive)
+     * @param end            the offset in the file of the end of the range (exclusive)
+     * @throws IOException              if the file could not be opened
+     * @throws IllegalArgumentException if the separator or quote character is not an ASCII character
+     */
+    DelimitedTokenizer(final File source, char separator, char quoteCharacter, Charset charset, long start, long end) throws IOException {
+        this(source, separator, quoteCharacter, charset, start, end, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a tokenizer for the records that start within a range of a file
+     *
+     * @param source         the file
+     * @param separator      the separator character
+     * @param quoteCharacter the quote character
+     * @param charset        the charset of the file
+     * @param start          the offset in the file of the start of the range (inclusive)
+     * @param end            the offset in the file of the end of the range (exclusive)
+     * @param bufferSize     the initial size of the buffer
+     * @throws IOException              if the file could not be opened
+     * @throws IllegalArgumentException if the separator or quote character is not an ASCII character
+     * @see #DelimitedTokenizer(File, char, char, Charset, long, long)
+     */
+    DelimitedTokenizer(final File source, char separator, char quoteCharacter, Charset charset, long start, long end, int bufferSize) throws IOException {
+        this.buffer = new byte[bufferSize];
+        if (separator > 0x7F || quoteCharacter > 0x7F) {
+            throw new IllegalArgumentException("The separator and quote character must be ASCII characters");
+        }
+        this.separator = (byte) separator;
+        this.quote = (byte) quoteCharacter;
+        this.end = end;
+        if (isAsciiCompatible(charset)) {
+            final FileChannel fileChannel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+            fileChannel.position(start);
+            this.channel = fileChannel;
+            this.charset = charset;
+            this.offset = start;
+        } else {
+            if (start != 0) {
+                throw new UnsupportedOperationException("Ranges of files are only supported for ASCII compatible charsets");
+            }
+            final byte[] transcoded = new String(Files.readAllBytes(source.toPath()), charset).getBytes(StandardCharsets.UTF_8);
+            this.channel = Channels.newChannel(new ByteArrayInputStream(transcoded));
+            this.charset = StandardCharsets.UTF_8;
+        }
+        fill();
+        if (start == 0 && limit >= UTF8_BOM.length && Arrays.equals(Arrays.copyOf(buffer, UTF8_BOM.length), UTF8_BOM)) {
+            position = UTF8_BOM.length;
+        }
+    }
+
+    /**
+     * Find the start of the line that follows an offset. This ignores quotes, so the result may be inside a quoted
+     * field
+     *
+     * @param channel the channel of the file
+     * @param from    the offset to search from
+     * @return the offset after the next line break, or the size of the file if there are no more line breaks
+     * @throws IOException if the file could not be read
+     */
+    static long nextLineStart(final FileChannel channel, long from) throws IOException {
+        final ByteBuffer window = ByteBuffer.allocate(1 << 16);
+        while (true) {
+            window.clear();
+            final int read = channel.read(window, from);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; ++i) {
+                final byte b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    return from + i + 1;
+                }
+            }
+            from += read;
+        }
+    }
+
+    /**
+     * Move to the start of the line that follows an offset in the file. As with
+     * {@link #nextLineStart(FileChannel, long)}, the line may start inside a quoted field
+     *
+     * @param offset the offset in the file
+     * @throws IOException                   if the file could not be read
+     * @throws UnsupportedOperationException if the tokenizer is not reading directly from the file
+     */
+    void seekLine(long offset) throws IOException {
+        if (!(channel instanceof FileChannel)) {
+            throw new UnsupportedOperationException("Seeking is only supported for ASCII compatible charsets");
+        }
+        ((FileChannel) channel).position(offset);
+        this.offset = offset;
+        position = 0;
+        limit = 0;
+        numFields = 0;
+        endOfInput = false;
+        while (position < limit || fill()) {
+            final byte b = buffer[position++];
+            if (b == '\n' || b == '\r') {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param charset the charset
+     * @return whether the charset encodes ASCII characters as single bytes and never uses those bytes in the
+     * encoding of other characters
+     */
+    static boolean isAsciiCompatible(final Charset charset) {
+        final String name = charset.name();
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) || name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+    }
+
+    /**
+     * Advance to the next record
+     *
+     * @return whether there was another record
+     * @throws IOException if the file could not be read
+     */
+    boolean nextRecord() throws IOException {
+        while (true) {
+            while (true) {
+                if (position >= limit && !fill()) {
+                    numFields = 0;
+                    return false;
+                }
+                final byte b = buffer[position];
+                if (b != '\n' && b != '\r') {
+                    break;
+                }
+                ++position;
+            }
+            if (offset + position >= end) {
+                numFields = 0;
+                return false;
+            }
+            final int next = parseRecord(position);
+            if (next >= 0) {
+                recordStart = offset + position;
+                position = next;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Parse the record starting at the given position
+     *
+     * @param p the position of the start of the record
+     * @return the position after the end of the record or -1 if more input is required
+     */
+    private int parseRecord(int p) {
+        numFields = 0;
+        final byte[] buf = buffer;
+        final int lim = limit;
+        byte b;
+        while (true) {
+            int start = p, end;
+            boolean esc = false;
+            if (p < lim && buf[p] == quote) {
+                start = ++p;
+                while (true) {
+                    if (p >= lim) {
+                        if (!endOfInput) {
+                            return -1;
+                        }
+                        end = p;
+                        break;
+                    }
+                    if (buf[p] == quote) {
+                        if (p + 1 >= lim && !endOfInput) {
+                            return -1;
+                        }
+                        if (p + 1 < lim && buf[p + 1] == quote) {
+                            esc = true;
+                            p += 2;
+                            continue;
+                        }
+                        end = p++;
+                        break;
+                    }
+                    ++p;
+                }
+                while (p < lim && (b = buf[p]) != separator && b != '\n' && b != '\r') {
+                    ++p;
+                }
+            } else {
+                while (p < lim && (b = buf[p]) != separator && b != '\n' && b != '\r') {
+                    ++p;
+                }
+                end = p;
+            }
+            if (p >= lim) {
+                if (!endOfInput) {
+                    return -1;
+                }
+                addField(start, end, esc);
+                return p;
+            }
+            addField(start, end, esc);
+            b = buf[p++];
+            if (b == separator) {
+                continue;
+            }
+            if (b == '\r') {
+                if (p >= lim && !endOfInput) {
+                    return -1;
+                }
+                if (p < lim && buf[p] == '\n') {
+                    ++p;
+                }
+            }
+            return p;
+        }
+    }
+
+    private void addField(int start, int end, boolean esc) {
+        if (numFields >= starts.length) {
+            final int capacity = starts.length << 1;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+            views = Arrays.copyOf(views, capacity);
+        }
+        starts[numFields] = start;
+        ends[numFields] = end;
+        escaped[numFields++] = esc;
+    }
+
+    /**
+     * Move the unread bytes to the start of the buffer and read more bytes from the channel
+     *
+     * @return whether there are unread bytes
+     * @throws IOException if the channel could not be read
+     */
+    private boolean fill() throws IOException {
+        if (!endOfInput) {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                offset += position;
+                position = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length << 1);
+            }
+            final int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                limit += read;
+            }
+        }
+        return position < limit;
+    }
+
+    /**
+     * @return the offset in the file after the current record. Once {@link #nextRecord()} returns false, this is the
+     * offset of the first record that was not returned
+     */
+    long position() {
+        return offset + position;
+    }
+
+    /**
+     * @return the offset in the file of the start of the current record, or -1 if no record has been read
+     */
+    long recordStart() {
+        return recordStart;
+    }
+
+    /**
+     * @return the number of fields in the current record
+     */
+    int numFields() {
+        return numFields;
+    }
+
+    /**
+     * Get a field of the current record
+     *
+     * @param index the index of the field
+     * @return a view of the field. If the record does not have the field, an empty sequence is returned
+     */
+    CharSequence get(int index) {
+        if (index >= numFields) {
+            return "";
+        }
+        if (escaped[index]) {
+            return unescape(index);
+        }
+        Field view = views[index];
+        if (view == null) {
+            view = views[index] = new Field(charset);
+        }
+        return view.set(buffer, starts[index], ends[index]);
+    }
+
+    /**
+     * Get a field of the current record as a string
+     *
+     * @param index the index of the field
+     * @return the field, decoded with the charset of the file
+     */
+    String getString(int index) {
+        if (index >= numFields) {
+            return "";
+        }
+        if (escaped[index]) {
+            return unescape(index);
+        }
+        return new String(buffer, starts[index], ends[index] - starts[index], charset);
+    }
+
+    private String unescape(int index) {
+        final byte[] out = new byte[ends[index] - starts[index]];
+        int j = 0;
+        for (int i = starts[index]; i < ends[index]; ++i) {
+            out[j++] = buffer[i];
+            if (buffer[i] == quote && i + 1 < ends[index] && buffer[i + 1] == quote) {
+                ++i;
+            }
+        }
+        return new String(out, 0, j, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,9 +1,15 @@
 package net.mahdilamb.dataframe;
 
 import java.util.PrimitiveIterator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
 
 /**
- * A series of ordered double data
+ * A series of ordered double data.
+ * <p>
+ * As in queries, comparisons with NaN are {@code false}, including {@link #ne(double)}, so NaN values are never
+ * selected by a comparison. In particular, {@code eq(Double.NaN)} selects no elements; NaN values can be selected with
+ * {@code mapDoubleToBool(Double::isNaN)}.
  */
 public interface DoubleSeries extends NumericSeries<Double> {
     /**
@@ -29,6 +35,311 @@ public interface DoubleSeries extends NumericSeries<Double> {
         return DataType.DOUBLE;
     }
 
+    /**
+     * Test each element of the series as a primitive double
+     *
+     * @param test the test
+     * @return a new boolean series produced from using the predicate on every element
+     */
+    default BooleanSeries mapDoubleToBool(DoublePredicate test) {
+        return ElementWise.mapToBool(this, test);
+    }
+
+    /**
+     * Apply an operator to each element of the series
+     *
+     * @param operator the operator
+     * @return a new series containing the result of the operator on each element
+     */
+    default DoubleSeries map(DoubleUnaryOperator operator) {
+        return ElementWise.map(this, operator);
+    }
+
+    /**
+     * Add the corresponding element of the other series to each element of the series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries add(DoubleSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Operator.ADD);
+    }
+
+    /**
+     * Add a value to each element of the series
+     *
+     * @param value the value
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries add(double value) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Operator.ADD);
+    }
+
+    /**
+     * Subtract the corresponding element of the other series from each element of the series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries subtract(DoubleSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Operator.SUBTRACT);
+    }
+
+    /**
+     * Subtract a value from each element of the series
+     *
+     * @param value the value
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries subtract(double value) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Operator.SUBTRACT);
+    }
+
+    /**
+     * Multiply each element of the series by the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries multiply(DoubleSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Operator.MULTIPLY);
+    }
+
+    /**
+     * Multiply each element of the series by a value
+     *
+     * @param value the value
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries multiply(double value) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Operator.MULTIPLY);
+    }
+
+    /**
+     * Divide each element of the series by the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries divide(DoubleSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Operator.DIVIDE);
+    }
+
+    /**
+     * Divide each element of the series by a value
+     *
+     * @param value the value
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries divide(double value) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Operator.DIVIDE);
+    }
+
+    /**
+     * Raise each element of the series to the power of the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries pow(DoubleSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Operator.POWER);
+    }
+
+    /**
+     * Raise each element of the series to the power of a value
+     *
+     * @param value the value
+     * @return a new series containing the result. NaN values propagate to the result
+     */
+    default DoubleSeries pow(double value) {
+        return ElementWise.apply(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Operator.POWER);
+    }
+
+    /**
+     * Test whether each element of the series is less than the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries lt(DoubleSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Comparison.LESS_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is less than a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries lt(double value) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Comparison.LESS_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is less than or equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries le(DoubleSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Comparison.LESS_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is less than or equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries le(double value) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Comparison.LESS_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is greater than the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries gt(DoubleSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Comparison.GREATER_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is greater than a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries gt(double value) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Comparison.GREATER_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is greater than or equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ge(DoubleSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Comparison.GREATER_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is greater than or equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ge(double value) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Comparison.GREATER_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries eq(DoubleSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Comparison.EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries eq(double value) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Comparison.EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is not equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ne(DoubleSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(other), ElementWise.Comparison.NOT_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is not equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ne(double value) {
+        return ElementWise.compare(getName(), Aggregations.Doubles.of(this), Aggregations.Doubles.of(value), ElementWise.Comparison.NOT_EQUAL);
+    }
+
+    /**
+     * Get a series whose arithmetic is deferred. Each arithmetic operation on the returned series extends an
+     * expression rather than computing a new array, and the expression is evaluated in a single pass when the result
+     * is compared, aggregated or materialized. For example, {@code area.lazy().subtract(mean).divide(std).gt(2)}
+     * produces a mask without any intermediate arrays
+     *
+     * @return a lazy view of this series
+     */
+    default DoubleSeries lazy() {
+        return new SeriesImpl.OfExpression(getName(), Expression.of(this));
+    }
+
+    /**
+     * @return a series backed by an array containing the values of this series. If this series is lazy, its expression
+     * is evaluated
+     */
+    default DoubleSeries materialize() {
+        return new SeriesImpl.OfDoubleArray(getName(), toArray(new double[size()]));
+    }
+
+    @Override
+    default double sum() {
+        return Aggregations.sum(this, false);
+    }
+
+    /**
+     * @param compensated whether to use Neumaier summation, which reduces the error from adding values of different
+     *                    magnitudes
+     * @return the sum of the values in the series, skipping NaN values
+     */
+    default double sum(boolean compensated) {
+        return Aggregations.sum(this, compensated);
+    }
+
+    @Override
+    default double mean() {
+        return Aggregations.mean(this);
+    }
+
+    @Override
+    default int count() {
+        return Aggregations.count(this);
+    }
+
+    @Override
+    default double variance() {
+        return Aggregations.variance(this);
+    }
+
+    /**
+     * @return the minimum of the values in the series, skipping NaN values. If there are no values, this is NaN
+     */
+    @Override
+    default Double min() {
+        return Aggregations.min(this);
+    }
+
+    /**
+     * @return the maximum of the values in the series, skipping NaN values. If there are no values, this is NaN
+     */
+    @Override
+    default Double max() {
+        return Aggregations.max(this);
+    }
+
     /**
      * Convert this array to an array of primitives
      *
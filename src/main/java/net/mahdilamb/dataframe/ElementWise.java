@@ -0,0 +1,497 @@
+package net.mahdilamb.dataframe;
+
+import java.util.Arrays;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Element-wise operations on numeric series which read the backing arrays directly and produce primitive series.
+ * <p>
+ * Operators between two series loop over the backing arrays of operands whose values are contiguous. The values of
+ * views and of broadcast operands are first gathered into a buffer, {@link #CHUNK_SIZE} at a time.
+ */
+final class ElementWise {
+    /**
+     * The number of values of an operand that are gathered at a time. This is a multiple of 64 so that each chunk of a
+     * comparison starts on a new word
+     */
+    private static final int CHUNK_SIZE = Expression.CHUNK_SIZE;
+
+    private ElementWise() {
+
+    }
+
+    /**
+     * @param series the series
+     * @param test   the test of each value
+     * @return a boolean series containing the result of the test on each value
+     */
+    static BooleanSeries mapToBool(final DoubleSeries series, final DoublePredicate test) {
+        final Aggregations.Doubles d = Aggregations.Doubles.of(series);
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        final int size = d.to - d.from;
+        final long[] words = new long[Bits.words(size)];
+        for (int i = 0; i < size; ++i) {
+            if (test.test(data[rows == null ? d.from + i : rows[d.from + i]])) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return new SeriesImpl.OfBooleanArray(series.getName(), words, size);
+    }
+
+    /**
+     * @param series the series
+     * @param test   the test of each value
+     * @return a boolean series containing the result of the test on each value. Null values are {@code false}
+     */
+    static BooleanSeries mapToBool(final LongSeries series, final LongPredicate test) {
+        final Aggregations.Longs l = Aggregations.Longs.of(series);
+        final long[] data = l.data;
+        final int[] rows = l.rows;
+        final int size = l.to - l.from;
+        final long[] words = new long[Bits.words(size)];
+        for (int i = 0; i < size; ++i) {
+            final int row = rows == null ? l.from + i : rows[l.from + i];
+            if (!l.isNull(row) && test.test(data[row])) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return new SeriesImpl.OfBooleanArray(series.getName(), words, size);
+    }
+
+    /**
+     * @param series   the series
+     * @param operator the operator to apply to each value
+     * @return a new series containing the result of the operator on each value
+     */
+    static DoubleSeries map(final DoubleSeries series, final DoubleUnaryOperator operator) {
+        final Aggregations.Doubles d = Aggregations.Doubles.of(series);
+        final double[] data = d.data;
+        final int[] rows = d.rows;
+        final double[] out = new double[d.to - d.from];
+        if (rows == null) {
+            for (int i = 0; i < out.length; ++i) {
+                out[i] = operator.applyAsDouble(data[d.from + i]);
+            }
+        } else {
+            for (int i = 0; i < out.length; ++i) {
+                out[i] = operator.applyAsDouble(data[rows[d.from + i]]);
+            }
+        }
+        return new SeriesImpl.OfDoubleArray(series.getName(), out);
+    }
+
+    /**
+     * @param series   the series
+     * @param operator the operator to apply to each value
+     * @return a new series containing the result of the operator on each value. Null values remain null
+     */
+    static LongSeries map(final LongSeries series, final LongUnaryOperator operator) {
+        final Aggregations.Longs l = Aggregations.Longs.of(series);
+        final long[] data = l.data;
+        final int[] rows = l.rows;
+        final long[] out = new long[l.to - l.from];
+        long[] nulls = null;
+        for (int i = 0; i < out.length; ++i) {
+            final int row = rows == null ? l.from + i : rows[l.from + i];
+            if (l.isNull(row)) {
+                if (nulls == null) {
+                    nulls = new long[Bits.words(out.length)];
+                }
+                Bits.set(nulls, i);
+            } else {
+                out[i] = operator.applyAsLong(data[row]);
+            }
+        }
+        return nulls == null ? new SeriesImpl.OfNonNaNLongArray(series.getName(), out) : new SeriesImpl.OfLongArray(series.getName(), out, nulls);
+    }
+
+    /**
+     * Arithmetic operators
+     */
+    enum Operator {
+        ADD,
+        SUBTRACT,
+        MULTIPLY,
+        DIVIDE,
+        POWER
+    }
+
+    /**
+     * Comparison operators
+     */
+    enum Comparison {
+        LESS_THAN,
+        LESS_THAN_OR_EQUAL,
+        GREATER_THAN,
+        GREATER_THAN_OR_EQUAL,
+        EQUAL,
+        NOT_EQUAL
+    }
+
+    /**
+     * Get the size of the result of an element-wise operation. Operands with one element are broadcast to the size of
+     * the other operand
+     *
+     * @param a the size of the first operand
+     * @param b the size of the second operand
+     * @return the size of the result
+     * @throws IllegalArgumentException if the sizes cannot be broadcast together
+     */
+    static int broadcast(int a, int b) {
+        if (a == b || b == 1) {
+            return a;
+        }
+        if (a == 1) {
+            return b;
+        }
+        throw new IllegalArgumentException(String.format("Series of size %d and %d cannot be broadcast together", a, b));
+    }
+
+    /**
+     * Apply an arithmetic operator element-wise. NaN values propagate to the result
+     *
+     * @param name     the name of the result
+     * @param a        the first operand
+     * @param b        the second operand
+     * @param operator the operator
+     * @return the result
+     */
+    static DoubleSeries apply(final String name, final Aggregations.Doubles a, final Aggregations.Doubles b, final Operator operator) {
+        final double[] out = new double[broadcast(a.to - a.from, b.to - b.from)];
+        final double[] x = source(a, out.length), y = source(b, out.length);
+        for (int from = 0; from < out.length; from += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, out.length - from);
+            apply(operator, x, gather(a, from, n, x), y, gather(b, from, n, y), out, from, n);
+        }
+        return new SeriesImpl.OfDoubleArray(name, out);
+    }
+
+    /**
+     * Apply an arithmetic operator element-wise. If either value is null, the result is null
+     *
+     * @param name     the name of the result
+     * @param a        the first operand
+     * @param b        the second operand
+     * @param operator the operator, which must be one of addition, subtraction or multiplication
+     * @return the result
+     */
+    static LongSeries apply(final String name, final Aggregations.Longs a, final Aggregations.Longs b, final Operator operator) {
+        final long[] out = new long[broadcast(a.to - a.from, b.to - b.from)];
+        final long[] x = source(a, out.length), y = source(b, out.length);
+        for (int from = 0; from < out.length; from += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, out.length - from);
+            apply(operator, x, gather(a, from, n, x), y, gather(b, from, n, y), out, from, n);
+        }
+        if (a.nulls == null && b.nulls == null) {
+            return new SeriesImpl.OfNonNaNLongArray(name, out);
+        }
+        final long[] nulls = new long[Bits.words(out.length)];
+        for (int i = 0; i < out.length; ++i) {
+            if (a.isNullAt(i) || b.isNullAt(i)) {
+                Bits.set(nulls, i);
+                out[i] = 0;
+            }
+        }
+        return new SeriesImpl.OfLongArray(name, out, nulls);
+    }
+
+    /**
+     * Apply an arithmetic operator element-wise, producing doubles. If either value is null, the result is NaN
+     *
+     * @param name     the name of the result
+     * @param a        the first operand
+     * @param b        the second operand
+     * @param operator the operator, which must be one of division or power
+     * @return the result
+     */
+    static DoubleSeries applyAsDouble(final String name, final Aggregations.Longs a, final Aggregations.Longs b, final Operator operator) {
+        final double[] out = new double[broadcast(a.to - a.from, b.to - b.from)];
+        final long[] x = source(a, out.length), y = source(b, out.length);
+        for (int from = 0; from < out.length; from += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, out.length - from);
+            applyAsDouble(operator, x, gather(a, from, n, x), y, gather(b, from, n, y), out, from, n);
+        }
+        if (a.nulls != null || b.nulls != null) {
+            for (int i = 0; i < out.length; ++i) {
+                if (a.isNullAt(i) || b.isNullAt(i)) {
+                    out[i] = Double.NaN;
+                }
+            }
+        }
+        return new SeriesImpl.OfDoubleArray(name, out);
+    }
+
+    /**
+     * Compare values element-wise. Comparisons with NaN are {@code false}
+     *
+     * @param name       the name of the result
+     * @param a          the first operand
+     * @param b          the second operand
+     * @param comparison the comparison
+     * @return the result
+     */
+    static BooleanSeries compare(final String name, final Aggregations.Doubles a, final Aggregations.Doubles b, final Comparison comparison) {
+        final int size = broadcast(a.to - a.from, b.to - b.from);
+        final long[] words = new long[Bits.words(size)];
+        final double[] x = source(a, size), y = source(b, size);
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, size - from);
+            compare(comparison, x, gather(a, from, n, x), y, gather(b, from, n, y), words, from, n);
+        }
+        return new SeriesImpl.OfBooleanArray(name, words, size);
+    }
+
+    /**
+     * Compare values element-wise. Comparisons with null values are {@code false}
+     *
+     * @param name       the name of the result
+     * @param a          the first operand
+     * @param b          the second operand
+     * @param comparison the comparison
+     * @return the result
+     */
+    static BooleanSeries compare(final String name, final Aggregations.Longs a, final Aggregations.Longs b, final Comparison comparison) {
+        final int size = broadcast(a.to - a.from, b.to - b.from);
+        final long[] words = new long[Bits.words(size)];
+        final long[] x = source(a, size), y = source(b, size);
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, size - from);
+            compare(comparison, x, gather(a, from, n, x), y, gather(b, from, n, y), words, from, n);
+        }
+        if (a.nulls != null || b.nulls != null) {
+            for (int i = 0; i < size; ++i) {
+                if (a.isNullAt(i) || b.isNullAt(i)) {
+                    words[i >>> 6] &= ~(1L << i);
+                }
+            }
+        }
+        return new SeriesImpl.OfBooleanArray(name, words, size);
+    }
+
+    /**
+     * @param values the operand
+     * @param size   the size of the result
+     * @return the backing array of the operand if its values are contiguous, otherwise a buffer to gather them into
+     */
+    private static double[] source(final Aggregations.Doubles values, int size) {
+        return values.rows == null && !values.broadcast ? values.data : new double[Math.min(CHUNK_SIZE, size)];
+    }
+
+    /**
+     * @param values the operand
+     * @param size   the size of the result
+     * @return the backing array of the operand if its values are contiguous, otherwise a buffer to gather them into
+     */
+    private static long[] source(final Aggregations.Longs values, int size) {
+        return values.rows == null && !values.broadcast ? values.data : new long[Math.min(CHUNK_SIZE, size)];
+    }
+
+    /**
+     * @param values the operand
+     * @param from   the first position
+     * @param n      the number of positions
+     * @param buffer the array returned by {@link #source(Aggregations.Doubles, int)}
+     * @return the offset of the values at the positions in the array. Values of operands that are not contiguous are
+     * first gathered into it
+     */
+    private static int gather(final Aggregations.Doubles values, int from, int n, final double[] buffer) {
+        final int[] rows = values.rows;
+        if (values.broadcast) {
+            Arrays.fill(buffer, 0, n, values.get(0));
+        } else if (rows == null) {
+            return values.from + from;
+        } else {
+            final double[] data = values.data;
+            for (int i = 0, j = values.from + from; i < n; ++i, ++j) {
+                buffer[i] = data[rows[j]];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param values the operand
+     * @param from   the first position
+     * @param n      the number of positions
+     * @param buffer the array returned by {@link #source(Aggregations.Longs, int)}
+     * @return the offset of the values at the positions in the array. Values of operands that are not contiguous are
+     * first gathered into it. Null values are zero
+     */
+    private static int gather(final Aggregations.Longs values, int from, int n, final long[] buffer) {
+        final int[] rows = values.rows;
+        if (values.broadcast) {
+            Arrays.fill(buffer, 0, n, values.get(0));
+        } else if (rows == null) {
+            return values.from + from;
+        } else {
+            final long[] data = values.data;
+            for (int i = 0, j = values.from + from; i < n; ++i, ++j) {
+                buffer[i] = data[rows[j]];
+            }
+        }
+        return 0;
+    }
+
+    private static void apply(final Operator operator, final double[] a, int aFrom, final double[] b, int bFrom, final double[] out, int from, int n) {
+        switch (operator) {
+            case ADD:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] + b[bFrom + i];
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] - b[bFrom + i];
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] * b[bFrom + i];
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] / b[bFrom + i];
+                }
+                break;
+            case POWER:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = Math.pow(a[aFrom + i], b[bFrom + i]);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static void apply(final Operator operator, final long[] a, int aFrom, final long[] b, int bFrom, final long[] out, int from, int n) {
+        switch (operator) {
+            case ADD:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] + b[bFrom + i];
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] - b[bFrom + i];
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = a[aFrom + i] * b[bFrom + i];
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static void applyAsDouble(final Operator operator, final long[] a, int aFrom, final long[] b, int bFrom, final double[] out, int from, int n) {
+        switch (operator) {
+            case DIVIDE:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = (double) a[aFrom + i] / b[bFrom + i];
+                }
+                break;
+            case POWER:
+                for (int i = 0; i < n; ++i) {
+                    out[from + i] = Math.pow(a[aFrom + i], b[bFrom + i]);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Compare ranges of two arrays element-wise, setting the bits of the selected values. Comparisons with NaN are
+     * {@code false}
+     *
+     * @param comparison the comparison
+     * @param a          the first operand
+     * @param aFrom      the offset of the first value of the first operand
+     * @param b          the second operand
+     * @param bFrom      the offset of the first value of the second operand
+     * @param words      the packed result
+     * @param from       the position of the first value in the result, which must be a multiple of 64
+     * @param n          the number of values
+     */
+    static void compare(final Comparison comparison, final double[] a, int aFrom, final double[] b, int bFrom, final long[] words, int from, int n) {
+        switch (comparison) {
+            case LESS_THAN:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] < b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case LESS_THAN_OR_EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] <= b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case GREATER_THAN:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] > b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case GREATER_THAN_OR_EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] >= b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] == b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case NOT_EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    final double x = a[aFrom + i], y = b[bFrom + i];
+                    words[(from + i) >>> 6] |= x != y && x == x && y == y ? 1L << i : 0;
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static void compare(final Comparison comparison, final long[] a, int aFrom, final long[] b, int bFrom, final long[] words, int from, int n) {
+        switch (comparison) {
+            case LESS_THAN:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] < b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case LESS_THAN_OR_EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] <= b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case GREATER_THAN:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] > b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case GREATER_THAN_OR_EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] >= b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] == b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            case NOT_EQUAL:
+                for (int i = 0; i < n; ++i) {
+                    words[(from + i) >>> 6] |= a[aFrom + i] != b[bFrom + i] ? 1L << i : 0;
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package net.mahdilamb.dataframe;
+
+import java.util.Arrays;
+
+/**
+ * Deferred arithmetic on numeric series.
+ * <p>
+ * An expression is a tree of operators whose leaves are columns and scalars. Rather than producing a new series for
+ * each operator, the tree is evaluated in chunks: each operator works on a buffer of at most {@link #CHUNK_SIZE}
+ * values, so the only full-sized array is the output.
+ */
+final class Expression {
+    /**
+     * The number of values evaluated at a time
+     */
+    static final int CHUNK_SIZE = 1024;
+
+    private Expression() {
+
+    }
+
+    /**
+     * A node in an expression tree
+     */
+    abstract static class Node {
+        /**
+         * The number of values produced by the node, or {@code 1} if the value is broadcast
+         */
+        final int size;
+        /**
+         * The number of buffers needed to evaluate the node
+         */
+        final int depth;
+
+        Node(int size, int depth) {
+            this.size = size;
+            this.depth = depth;
+        }
+
+        /**
+         * @param index the index
+         * @return the value of the node at the index
+         */
+        abstract double get(int index);
+
+        /**
+         * Evaluate a range of the node
+         *
+         * @param from    the first index
+         * @param to      the end index (exclusive)
+         * @param out     the output, which is filled from position 0
+         * @param buffers the scratch buffers
+         * @param level   the first scratch buffer that may be used
+         */
+        abstract void evaluate(int from, int to, double[] out, double[][] buffers, int level);
+
+        /**
+         * @return the scratch buffers needed to evaluate the node
+         */
+        final double[][] buffers() {
+            return new double[depth][Math.min(CHUNK_SIZE, size)];
+        }
+    }
+
+    /**
+     * A node reading the values of a series
+     */
+    static final class Column extends Node {
+        private final Aggregations.Doubles values;
+
+        Column(final Aggregations.Doubles values) {
+            super(values.to - values.from, 0);
+            this.values = values;
+        }
+
+        @Override
+        double get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        void evaluate(int from, int to, double[] out, double[][] buffers, int level) {
+            final double[] data = values.data;
+            final int[] rows = values.rows;
+            if (values.broadcast) {
+                Arrays.fill(out, 0, to - from, values.get(0));
+            } else if (rows == null) {
+                System.arraycopy(data, values.from + from, out, 0, to - from);
+            } else {
+                for (int i = from, j = 0; i < to; ++i, ++j) {
+                    out[j] = data[rows[values.from + i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * A node reading the values of a long series as doubles, with null values as NaN
+     */
+    static final class LongColumn extends Node {
+        private final Aggregations.Longs values;
+
+        LongColumn(final Aggregations.Longs values) {
+            super(values.to - values.from, 0);
+            this.values = values;
+        }
+
+        @Override
+        double get(int index) {
+            return values.isNullAt(index) ? Double.NaN : values.get(index);
+        }
+
+        @Override
+        void evaluate(int from, int to, double[] out, double[][] buffers, int level) {
+            for (int i = from, j = 0; i < to; ++i, ++j) {
+                out[j] = values.get(i);
+            }
+            if (values.nulls != null) {
+                for (int i = from, j = 0; i < to; ++i, ++j) {
+                    if (values.isNullAt(i)) {
+                        out[j] = Double.NaN;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A node applying an arithmetic operator to two nodes
+     */
+    static final class Binary extends Node {
+        private final ElementWise.Operator operator;
+        private final Node left;
+        private final Node right;
+
+        Binary(final Node left, final ElementWise.Operator operator, final Node right) {
+            super(ElementWise.broadcast(left.size, right.size), Math.max(left.depth, right.depth + 1));
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double get(int index) {
+            return apply(operator, left.get(left.size == 1 ? 0 : index), right.get(right.size == 1 ? 0 : index));
+        }
+
+        @Override
+        void evaluate(int from, int to, double[] out, double[][] buffers, int level) {
+            final int n = to - from;
+            if (left.size == 1 && size != 1) {
+                Arrays.fill(out, 0, n, left.get(0));
+            } else {
+                left.evaluate(from, to, out, buffers, level);
+            }
+            if (right.size == 1) {
+                apply(operator, out, right.get(0), n);
+                return;
+            }
+            final double[] other = buffers[level];
+            right.evaluate(from, to, other, buffers, level + 1);
+            apply(operator, out, other, n);
+        }
+
+        static double apply(ElementWise.Operator operator, double a, double b) {
+            switch (operator) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                case POWER:
+                    return Math.pow(a, b);
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        private static void apply(ElementWise.Operator operator, double[] out, double b, int n) {
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] += b;
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] -= b;
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] *= b;
+                    }
+                    break;
+                case DIVIDE:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] /= b;
+                    }
+                    break;
+                case POWER:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] = Math.pow(out[i], b);
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        private static void apply(ElementWise.Operator operator, double[] out, double[] b, int n) {
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] += b[i];
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] -= b[i];
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] *= b[i];
+                    }
+                    break;
+                case DIVIDE:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] /= b[i];
+                    }
+                    break;
+                case POWER:
+                    for (int i = 0; i < n; ++i) {
+                        out[i] = Math.pow(out[i], b[i]);
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    /**
+     * @param series the series
+     * @return the node of the series. If the series is an expression, this is its root
+     */
+    static Node of(final DoubleSeries series) {
+        if (series instanceof SeriesImpl.OfExpression) {
+            return ((SeriesImpl.OfExpression) series).root;
+        }
+        return new Column(Aggregations.Doubles.of(series));
+    }
+
+    /**
+     * @param series the series
+     * @return the node of the series
+     */
+    static Node of(final LongSeries series) {
+        return new LongColumn(Aggregations.Longs.of(series));
+    }
+
+    /**
+     * @param value the value
+     * @return a node broadcasting the value
+     */
+    static Node of(final double value) {
+        return new Column(Aggregations.Doubles.of(value));
+    }
+
+    /**
+     * Evaluate a node into a new array
+     *
+     * @param node   the node
+     * @param output the output array, which is used if it is large enough
+     * @return the output array, or a new array if the output was too small
+     */
+    static double[] evaluate(final Node node, double[] output) {
+        if (output.length < node.size) {
+            output = new double[node.size];
+        }
+        final double[][] buffers = node.buffers();
+        if (node.size <= CHUNK_SIZE) {
+            node.evaluate(0, node.size, output, buffers, 0);
+            return output;
+        }
+        final double[] chunk = new double[CHUNK_SIZE];
+        for (int from = 0; from < node.size; from += CHUNK_SIZE) {
+            final int to = Math.min(node.size, from + CHUNK_SIZE);
+            node.evaluate(from, to, chunk, buffers, 0);
+            System.arraycopy(chunk, 0, output, from, to - from);
+        }
+        return output;
+    }
+
+    /**
+     * Compare two nodes element-wise, using the semantics of
+     * {@link ElementWise#compare(String, Aggregations.Doubles, Aggregations.Doubles, ElementWise.Comparison)}
+     *
+     * @param name       the name of the result
+     * @param left       the first operand
+     * @param right      the second operand
+     * @param comparison the comparison
+     * @return the packed result of the comparison
+     */
+    static BooleanSeries compare(final String name, final Node left, final Node right, final ElementWise.Comparison comparison) {
+        final int size = ElementWise.broadcast(left.size, right.size);
+        return new SeriesImpl.OfBooleanArray(name, compare(left, comparison, right, size, null), size);
+    }
+
+    /**
+     * Compare two nodes element-wise for some of the rows. Chunks without candidate rows are not evaluated
+     *
+     * @param left       the first operand
+     * @param comparison the comparison
+     * @param right      the second operand
+     * @param size       the number of rows
+     * @param candidates the packed mask of the rows to compare, or {@code null} to compare all the rows
+     * @return the packed result of the comparison. Bits of rows that are not candidates may hold any value
+     */
+    static long[] compare(final Node left, final ElementWise.Comparison comparison, final Node right, int size, final long[] candidates) {
+        final long[] words = new long[Bits.words(size)];
+        final int chunk = Math.min(CHUNK_SIZE, size);
+        final double[][] buffers = new double[Math.max(left.depth, right.depth)][chunk];
+        final double[] a = new double[chunk];
+        final double[] b = new double[chunk];
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            final int to = Math.min(size, from + CHUNK_SIZE);
+            if (candidates != null && Bits.isEmpty(candidates, from >>> 6, Bits.words(to))) {
+                continue;
+            }
+            evaluate(left, from, to, a, buffers);
+            evaluate(right, from, to, b, buffers);
+            ElementWise.compare(comparison, a, 0, b, 0, words, from, to - from);
+        }
+        return words;
+    }
+
+    /**
+     * Evaluate a range of a node, broadcasting it if it has a single value
+     *
+     * @param node    the node
+     * @param from    the first index
+     * @param to      the end index (exclusive)
+     * @param out     the output, which is filled from position 0
+     * @param buffers the scratch buffers, of which there must be at least the depth of the node
+     */
+    static void evaluate(final Node node, int from, int to, double[] out, double[][] buffers) {
+        if (node.size == 1) {
+            Arrays.fill(out, 0, to - from, node.get(0));
+        } else {
+            node.evaluate(from, to, out, buffers, 0);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package net.mahdilamb.dataframe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Aggregations of the columns of a grouped dataframe.
+ * <p>
+ * Each column is read once: every requested aggregation is accumulated together into arrays indexed by the group of
+ * each row, so no view of a group is created. The number of distinct values is counted by grouping the pairs of group
+ * and value. When several threads are used, each thread accumulates a range of groups, reading their rows in order, so
+ * floating-point results do not depend on the number of threads.
+ */
+final class GroupedAggregations {
+    private GroupedAggregations() {
+
+    }
+
+    /**
+     * @param name         the name of the result
+     * @param keys         the columns that the rows are grouped by
+     * @param grouping     the groups of the rows
+     * @param columns      the columns to aggregate
+     * @param aggregations the aggregations of each column
+     * @param parallelism  the number of threads. If more than one thread is used, the groups are split into ranges of
+     *                     about the same number of rows, and the rows of each group are accumulated in order, so that
+     *                     the result is the same as with one thread
+     * @return a dataframe of the keys of each group, followed by each aggregation of each column
+     * @throws IllegalArgumentException if an aggregation is not supported by the type of a column
+     */
+    static DataFrame aggregate(final String name, final Series<?>[] keys, final Grouping grouping, final Series<?>[] columns, final Aggregation[] aggregations, int parallelism) {
+        final Series<?>[] out = new Series<?>[keys.length + columns.length * aggregations.length];
+        int j = 0;
+        for (final Series<?> key : keys) {
+            out[j++] = take(key.getName(), key, grouping.firstRows);
+        }
+        final Accumulator[] accumulators = new Accumulator[columns.length];
+        for (int c = 0; c < columns.length; ++c) {
+            for (final Aggregation aggregation : aggregations) {
+                if (!aggregation.supports(columns[c].getType())) {
+                    throw new IllegalArgumentException(String.format("%s cannot be applied to %s, which is of type %s", aggregation, columns[c].getName(), columns[c].getType()));
+                }
+            }
+            accumulators[c] = new Accumulator(grouping, aggregations, columns[c], parallelism);
+        }
+        if (parallelism <= 1 || grouping.size() < Grouping.MIN_PARALLEL_SIZE || grouping.numGroups < 2) {
+            for (final Accumulator accumulator : accumulators) {
+                accumulator.accumulate(null, 0, grouping.size());
+            }
+        } else {
+            final int[] offsets = grouping.offsets();
+            final int[] rows = grouping.rows();
+            final List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+            for (int k = 0, g = 0; k < parallelism && g < grouping.numGroups; ++k) {
+                //the groups up to the k + 1th fraction of the rows
+                final long end = (long) grouping.size() * (k + 1) / parallelism;
+                final int from = offsets[g];
+                while (g < grouping.numGroups && (offsets[g] < end || offsets[g] == from)) {
+                    ++g;
+                }
+                final int to = offsets[g];
+                tasks.add(() -> {
+                    for (final Accumulator accumulator : accumulators) {
+                        accumulator.accumulate(rows, from, to);
+                    }
+                    return null;
+                });
+            }
+            Grouping.invokeAll(parallelism, tasks);
+        }
+        for (int c = 0; c < columns.length; ++c) {
+            for (final Aggregation aggregation : aggregations) {
+                out[j++] = accumulators[c].get(columns[c], aggregation);
+            }
+        }
+        return new DataFrameImpl.OfArray(name, out);
+    }
+
+    /**
+     * The accumulated aggregations of a column
+     */
+    private static final class Accumulator {
+        private final Grouping grouping;
+        private final Aggregation[] aggregations;
+        private final int parallelism;
+        private final DataType type;
+        private Aggregations.Doubles doubles;
+        private Aggregations.Longs longs;
+        private StringSeries strings;
+        private BooleanSeries booleans;
+        final int[] count;
+        final int[] first;
+        final int[] last;
+        double[] sum;
+        double[] mean;
+        double[] m2;
+        double[] doubleMin;
+        double[] doubleMax;
+        long[] longSum;
+        long[] longMin;
+        long[] longMax;
+        /**
+         * The row of the minimum and maximum of string columns
+         */
+        int[] minRow;
+        int[] maxRow;
+
+        Accumulator(final Grouping grouping, final Aggregation[] aggregations, final Series<?> column, int parallelism) {
+            this.grouping = grouping;
+            this.aggregations = aggregations;
+            this.parallelism = parallelism;
+            this.type = column.getType();
+            count = new int[grouping.numGroups];
+            first = has(Aggregation.FIRST) ? filled(-1) : null;
+            last = has(Aggregation.LAST) ? filled(-1) : null;
+            if (has(Aggregation.VAR) || has(Aggregation.STD)) {
+                mean = new double[grouping.numGroups];
+                m2 = new double[grouping.numGroups];
+            }
+            switch (type) {
+                case DOUBLE:
+                    doubles = Aggregations.Doubles.of(column.asDouble());
+                    if (has(Aggregation.SUM) || has(Aggregation.MEAN)) {
+                        sum = new double[grouping.numGroups];
+                    }
+                    if (has(Aggregation.MIN)) {
+                        doubleMin = filled(Double.POSITIVE_INFINITY);
+                    }
+                    if (has(Aggregation.MAX)) {
+                        doubleMax = filled(Double.NEGATIVE_INFINITY);
+                    }
+                    break;
+                case LONG:
+                    longs = Aggregations.Longs.of(column.asLong());
+                    if (has(Aggregation.SUM) || has(Aggregation.MEAN)) {
+                        longSum = new long[grouping.numGroups];
+                    }
+                    if (has(Aggregation.MIN)) {
+                        longMin = new long[grouping.numGroups];
+                        Arrays.fill(longMin, Long.MAX_VALUE);
+                    }
+                    if (has(Aggregation.MAX)) {
+                        longMax = new long[grouping.numGroups];
+                        Arrays.fill(longMax, Long.MIN_VALUE);
+                    }
+                    break;
+                case STRING:
+                    strings = column.asString();
+                    if (has(Aggregation.MIN)) {
+                        minRow = filled(-1);
+                    }
+                    if (has(Aggregation.MAX)) {
+                        maxRow = filled(-1);
+                    }
+                    break;
+                case BOOLEAN:
+                    booleans = column.asBoolean();
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        private boolean has(final Aggregation aggregation) {
+            for (final Aggregation a : aggregations) {
+                if (a == aggregation) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int[] filled(int value) {
+            final int[] array = new int[grouping.numGroups];
+            Arrays.fill(array, value);
+            return array;
+        }
+
+        private double[] filled(double value) {
+            final double[] array = new double[grouping.numGroups];
+            Arrays.fill(array, value);
+            return array;
+        }
+
+        /**
+         * Accumulate a range of rows. Concurrent calls must accumulate different groups
+         *
+         * @param order the rows to accumulate, or {@code null} to accumulate the rows in order
+         * @param from  the first position in the rows
+         * @param to    the end position in the rows (exclusive)
+         */
+        void accumulate(final int[] order, int from, int to) {
+            switch (type) {
+                case DOUBLE:
+                    accumulate(doubles, order, from, to);
+                    break;
+                case LONG:
+                    accumulate(longs, order, from, to);
+                    break;
+                case STRING:
+                    accumulate(strings, order, from, to);
+                    break;
+                case BOOLEAN:
+                    accumulate(booleans, order, from, to);
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        private void accumulate(final Aggregations.Doubles values, final int[] order, int from, int to) {
+            final int[] groups = grouping.groups;
+            for (int k = from; k < to; ++k) {
+                final int i = order == null ? k : order[k];
+                final double x = values.get(i);
+                if (x != x) {
+                    continue;
+                }
+                final int g = groups[i];
+                final int n = ++count[g];
+                if (m2 != null) {
+                    //Welford's algorithm
+                    final double delta = x - mean[g];
+                    mean[g] += delta / n;
+                    m2[g] += delta * (x - mean[g]);
+                }
+                if (sum != null) {
+                    sum[g] += x;
+                }
+                if (doubleMin != null && x < doubleMin[g]) {
+                    doubleMin[g] = x;
+                }
+                if (doubleMax != null && x > doubleMax[g]) {
+                    doubleMax[g] = x;
+                }
+                if (first != null && first[g] < 0) {
+                    first[g] = i;
+                }
+                if (last != null) {
+                    last[g] = i;
+                }
+            }
+        }
+
+        private void accumulate(final Aggregations.Longs values, final int[] order, int from, int to) {
+            final int[] groups = grouping.groups;
+            for (int k = from; k < to; ++k) {
+                final int i = order == null ? k : order[k];
+                if (values.isNullAt(i)) {
+                    continue;
+                }
+                final long x = values.get(i);
+                final int g = groups[i];
+                final int n = ++count[g];
+                if (m2 != null) {
+                    final double delta = x - mean[g];
+                    mean[g] += delta / n;
+                    m2[g] += delta * (x - mean[g]);
+                }
+                if (longSum != null) {
+                    longSum[g] += x;
+                }
+                if (longMin != null && x < longMin[g]) {
+                    longMin[g] = x;
+                }
+                if (longMax != null && x > longMax[g]) {
+                    longMax[g] = x;
+                }
+                if (first != null && first[g] < 0) {
+                    first[g] = i;
+                }
+                if (last != null) {
+                    last[g] = i;
+                }
+            }
+        }
+
+        private void accumulate(final StringSeries values, final int[] order, int from, int to) {
+            final int[] groups = grouping.groups;
+            for (int k = from; k < to; ++k) {
+                final int i = order == null ? k : order[k];
+                final String x = values.get(i);
+                if (x == null) {
+                    continue;
+                }
+                final int g = groups[i];
+                ++count[g];
+                if (minRow != null && (minRow[g] < 0 || x.compareTo(values.get(minRow[g])) < 0)) {
+                    minRow[g] = i;
+                }
+                if (maxRow != null && (maxRow[g] < 0 || x.compareTo(values.get(maxRow[g])) > 0)) {
+                    maxRow[g] = i;
+                }
+                if (first != null && first[g] < 0) {
+                    first[g] = i;
+                }
+                if (last != null) {
+                    last[g] = i;
+                }
+            }
+        }
+
+        private void accumulate(final BooleanSeries values, final int[] order, int from, int to) {
+            final int[] groups = grouping.groups;
+            for (int k = from; k < to; ++k) {
+                final int i = order == null ? k : order[k];
+                if (values.get(i) == null) {
+                    continue;
+                }
+                final int g = groups[i];
+                ++count[g];
+                if (first != null && first[g] < 0) {
+                    first[g] = i;
+                }
+                if (last != null) {
+                    last[g] = i;
+                }
+            }
+        }
+
+        /**
+         * @param column      the column that was accumulated
+         * @param aggregation the aggregation
+         * @return the aggregation of each group
+         */
+        Series<?> get(final Series<?> column, final Aggregation aggregation) {
+            final String name = String.format("%s_%s", column.getName(), aggregation.name().toLowerCase());
+            final int numGroups = grouping.numGroups;
+            switch (aggregation) {
+                case COUNT:
+                    final long[] counts = new long[numGroups];
+                    for (int g = 0; g < numGroups; ++g) {
+                        counts[g] = count[g];
+                    }
+                    return new SeriesImpl.OfNonNaNLongArray(name, counts);
+                case SUM:
+                    if (longSum != null) {
+                        return new SeriesImpl.OfNonNaNLongArray(name, longSum.clone());
+                    }
+                    return new SeriesImpl.OfDoubleArray(name, sum.clone());
+                case MEAN:
+                    final double[] means = new double[numGroups];
+                    for (int g = 0; g < numGroups; ++g) {
+                        means[g] = count[g] == 0 ? Double.NaN : (longSum != null ? longSum[g] : sum[g]) / count[g];
+                    }
+                    return new SeriesImpl.OfDoubleArray(name, means);
+                case VAR:
+                case STD:
+                    final double[] variances = new double[numGroups];
+                    for (int g = 0; g < numGroups; ++g) {
+                        variances[g] = count[g] < 2 ? Double.NaN : m2[g] / (count[g] - 1);
+                        if (aggregation == Aggregation.STD) {
+                            variances[g] = Math.sqrt(variances[g]);
+                        }
+                    }
+                    return new SeriesImpl.OfDoubleArray(name, variances);
+                case MIN:
+                case MAX:
+                    final boolean min = aggregation == Aggregation.MIN;
+                    if (column.getType() == DataType.STRING) {
+                        return take(name, column, min ? minRow : maxRow);
+                    }
+                    if (column.getType() == DataType.LONG) {
+                        return longs(name, min ? longMin : longMax);
+                    }
+                    final double[] extremes = (min ? doubleMin : doubleMax).clone();
+                    for (int g = 0; g < numGroups; ++g) {
+                        if (count[g] == 0) {
+                            extremes[g] = Double.NaN;
+                        }
+                    }
+                    return new SeriesImpl.OfDoubleArray(name, extremes);
+                case FIRST:
+                    return take(name, column, first);
+                case LAST:
+                    return take(name, column, last);
+                case NUNIQUE:
+                    return new SeriesImpl.OfNonNaNLongArray(name, countDistinct(column));
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        /**
+         * @param name   the name of the series
+         * @param values the value of each group, which is only valid if the group has any values
+         * @return a series of the values, with null for groups that have no values
+         */
+        private Series<?> longs(final String name, final long[] values) {
+            long[] nulls = null;
+            final long[] out = values.clone();
+            for (int g = 0; g < out.length; ++g) {
+                if (count[g] == 0) {
+                    if (nulls == null) {
+                        nulls = new long[Bits.words(out.length)];
+                    }
+                    Bits.set(nulls, g);
+                    out[g] = 0;
+                }
+            }
+            return nulls == null ? new SeriesImpl.OfNonNaNLongArray(name, out) : new SeriesImpl.OfLongArray(name, out, nulls);
+        }
+
+        /**
+         * @param column the column
+         * @return the number of distinct values in each group, counted by grouping the pairs of group and value
+         */
+        private long[] countDistinct(final Series<?> column) {
+            final Grouping values = Grouping.of(column, parallelism);
+            int missing = -1;
+            for (int v = 0; v < values.numGroups && missing < 0; ++v) {
+                final Object value = column.get(values.firstRows[v]);
+                if (value == null || (value instanceof Double && ((Double) value).isNaN())) {
+                    missing = v;
+                }
+            }
+            final int[] groups = grouping.groups;
+            final long[] pairs = new long[groups.length];
+            int n = 0;
+            for (int i = 0; i < groups.length; ++i) {
+                if (values.groups[i] != missing) {
+                    pairs[n++] = ((long) groups[i] << 32) | values.groups[i];
+                }
+            }
+            final Grouping distinct = Grouping.of(new SeriesImpl.OfNonNaNLongArray(column.getName(), n == pairs.length ? pairs : Arrays.copyOf(pairs, n)), parallelism);
+            final long[] counts = new long[grouping.numGroups];
+            for (int p = 0; p < distinct.numGroups; ++p) {
+                ++counts[(int) (pairs[distinct.firstRows[p]] >>> 32)];
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * @param name   the name of the series
+     * @param series the series
+     * @param rows   the rows to take, where {@code -1} is a missing value
+     * @return a new series containing the values of the series at the rows
+     */
+    static Series<?> take(final String name, final Series<?> series, final int[] rows) {
+        switch (series.getType()) {
+            case DOUBLE:
+                final Aggregations.Doubles doubles = Aggregations.Doubles.of(series.asDouble());
+                final double[] d = new double[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    d[i] = rows[i] < 0 ? Double.NaN : doubles.get(rows[i]);
+                }
+                return new SeriesImpl.OfDoubleArray(name, d);
+            case LONG:
+                final Aggregations.Longs longs = Aggregations.Longs.of(series.asLong());
+                final long[] l = new long[rows.length];
+                long[] nulls = null;
+                for (int i = 0; i < rows.length; ++i) {
+                    if (rows[i] < 0 || longs.isNullAt(rows[i])) {
+                        if (nulls == null) {
+                            nulls = new long[Bits.words(rows.length)];
+                        }
+                        Bits.set(nulls, i);
+                    } else {
+                        l[i] = longs.get(rows[i]);
+                    }
+                }
+                return nulls == null ? new SeriesImpl.OfNonNaNLongArray(name, l) : new SeriesImpl.OfLongArray(name, l, nulls);
+            case BOOLEAN:
+                final BooleanSeries booleans = series.asBoolean();
+                final boolean[] b = new boolean[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    b[i] = rows[i] >= 0 && booleans.getBoolean(rows[i]);
+                }
+                return new SeriesImpl.OfBooleanArray(name, b);
+            case STRING:
+                final StringSeries strings = series.asString();
+                final String[] s = new String[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    s[i] = rows[i] < 0 ? null : strings.get(rows[i]);
+                }
+                return new SeriesImpl.OfStringArray(name, s);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+}
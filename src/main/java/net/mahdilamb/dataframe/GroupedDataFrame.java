@@ -0,0 +1,81 @@
+package net.mahdilamb.dataframe;
+
+/**
+ * A dataframe whose rows are grouped by the values of one or more columns. Iterating over it gives a view of each
+ * group, in the order that the group first appears
+ */
+public interface GroupedDataFrame extends Iterable<DataFrame> {
+
+    /**
+     * @return the number of groups
+     */
+    int numGroups();
+
+    /**
+     * Set the number of threads to use when grouping the rows and aggregating the groups. If more than one thread is
+     * used, the rows are split into ranges that are grouped concurrently and then merged. The groups, their order and
+     * the aggregations are the same as with one thread. This must be set before the groups are first used.
+     *
+     * @param parallelism the number of threads. A value of 1 uses the calling thread
+     * @return this grouped dataframe
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    GroupedDataFrame setParallelism(int parallelism);
+
+    /**
+     * Group and aggregate the rows using all the available processors
+     *
+     * @return this grouped dataframe
+     * @see #setParallelism(int)
+     */
+    default GroupedDataFrame setParallel() {
+        return setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Indicate that the rows are ordered by the keys, so that the rows of each group are adjacent. The groups are then
+     * found as runs of equal keys in a single pass, without hashing each row. This is set automatically when grouping
+     * a dataframe that has been sorted by its only key, and must be set before the groups are first used. If the rows
+     * are not ordered, the groups are still correct, but grouping may be slower
+     *
+     * @return this grouped dataframe
+     */
+    GroupedDataFrame setSorted();
+
+    /**
+     * Aggregate columns within each group.
+     * <p>
+     * Each aggregation is computed for every group in a single pass over each column. The result has one row per group,
+     * with the keys of the group followed by a column named {@code column_aggregation} (e.g. {@code area_mean}) for
+     * each column and aggregation.
+     *
+     * @param columns      the names of the columns to aggregate
+     * @param aggregations the aggregations
+     * @return a new dataframe containing the aggregations of each group
+     * @throws IllegalArgumentException if an aggregation is not supported by the type of a column
+     */
+    DataFrame agg(String[] columns, Aggregation... aggregations);
+
+    /**
+     * Aggregate a column within each group
+     *
+     * @param column       the name of the column to aggregate
+     * @param aggregations the aggregations
+     * @return a new dataframe containing the aggregations of each group
+     * @throws IllegalArgumentException if an aggregation is not supported by the type of the column
+     * @see #agg(String[], Aggregation...)
+     */
+    default DataFrame agg(String column, Aggregation... aggregations) {
+        return agg(new String[]{column}, aggregations);
+    }
+
+    /**
+     * Aggregate all the columns other than the keys within each group. Columns whose type does not support all of the
+     * aggregations are skipped
+     *
+     * @param aggregations the aggregations
+     * @return a new dataframe containing the aggregations of each group
+     * @see #agg(String[], Aggregation...)
+     */
+    DataFrame agg(Aggregation... aggregations);
+}
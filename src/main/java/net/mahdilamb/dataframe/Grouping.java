@@ -0,0 +1,759 @@
+package net.mahdilamb.dataframe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * The groups of the values of a series, numbered in the order that their value first appears.
+ * <p>
+ * The values are grouped with open-addressing hash tables specialized for the type of the series, so no value is
+ * boxed. The result is the group of each row, from which the rows of every group are laid out contiguously, in
+ * ascending order, on first use: the rows of group {@code g} are {@code rows[offsets[g]]} to
+ * {@code rows[offsets[g + 1] - 1]}.
+ */
+final class Grouping {
+    /**
+     * The number of rows below which the rows are grouped on one thread
+     */
+    static final int MIN_PARALLEL_SIZE = 1 << 16;
+
+    /**
+     * The group of each row
+     */
+    final int[] groups;
+    /**
+     * The number of groups
+     */
+    final int numGroups;
+    /**
+     * The first row of each group, from which the key of the group can be read
+     */
+    final int[] firstRows;
+    private int[] rows;
+    private volatile int[] offsets;
+
+    Grouping(final int[] groups, int numGroups, final int[] firstRows) {
+        this.groups = groups;
+        this.numGroups = numGroups;
+        this.firstRows = firstRows;
+    }
+
+    /**
+     * @param series the series
+     * @return the groups of the values of the series
+     */
+    static Grouping of(final Series<?> series) {
+        return of(series, 0, series.size());
+    }
+
+    /**
+     * @param series the series
+     * @param from   the first row
+     * @param to     the end row (exclusive)
+     * @return the groups of the values in a range of the series. The rows of the groups are relative to the first row
+     */
+    private static Grouping of(final Series<?> series, int from, int to) {
+        switch (series.getType()) {
+            case DOUBLE:
+                final Aggregations.Doubles doubles = Aggregations.Doubles.of(series.asDouble());
+                return of(new Aggregations.Doubles(doubles.data, doubles.rows, doubles.from + from, doubles.from + to));
+            case LONG:
+                final Aggregations.Longs longs = Aggregations.Longs.of(series.asLong());
+                return of(new Aggregations.Longs(longs.data, longs.nulls, longs.rows, longs.from + from, longs.from + to));
+            case BOOLEAN:
+                return of(series.asBoolean(), from, to);
+            case STRING:
+                return of(series.asString(), from, to);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Group rows by the values of several series. Each series is grouped separately and the groups of each row are
+     * packed into a single long key, so no key object is created per row. If the product of the number of groups of
+     * each series would overflow, the keys packed so far are renumbered densely before continuing
+     *
+     * @param series the series, which must be of the same size
+     * @return the groups of the rows
+     */
+    static Grouping of(final Series<?>... series) {
+        return of(series, 1);
+    }
+
+    /**
+     * The length of the prefix of a series after which run detection is abandoned if the runs are short
+     */
+    private static final int MIN_RUN_DETECTION_SIZE = 1 << 10;
+
+    /**
+     * Group rows by the values of one or more series, first looking for runs of equal keys.
+     * <p>
+     * If the rows are ordered by their keys (for example, after sorting by the key), the rows of each group are
+     * adjacent, so the groups are found in a single pass that compares each row with the previous one, without a hash
+     * table. Only the first row of each run is hashed, to check that no key appears in more than one run. If the rows
+     * are not known to be ordered, the runs are detected anyway and grouping falls back to hashing every row when the
+     * runs are too short to be worth it
+     *
+     * @param series      the series, which must be of the same size
+     * @param sorted      whether the rows are known to be ordered by the keys. The groups are correct either way
+     * @param parallelism the number of threads to use if the rows are hashed
+     * @return the groups of the rows, which are the same as those produced by hashing
+     */
+    static Grouping of(final Series<?>[] series, boolean sorted, int parallelism) {
+        final Grouping runs = ofRuns(series, sorted);
+        return runs == null ? of(series, parallelism) : runs;
+    }
+
+    /**
+     * @param series the series, which must be of the same size
+     * @param sorted whether the rows are known to be ordered by the keys
+     * @return the groups of the rows from the runs of equal keys, or {@code null} if the rows are not known to be sorted
+     * and the average run is shorter than four rows
+     */
+    private static Grouping ofRuns(final Series<?>[] series, boolean sorted) {
+        final int size = series[0].size();
+        final boolean[] starts = new boolean[size];
+        int numRuns = size == 0 ? 0 : 1;
+        for (final Series<?> s : series) {
+            if (s.size() != size) {
+                throw new IllegalArgumentException(String.format("Series %s is of size %d, not %d", s.getName(), s.size(), size));
+            }
+            final int marked = markRuns(s, starts, sorted || s != series[0]);
+            numRuns += marked;
+            if (!sorted && (marked < 0 || numRuns > size >> 2)) {
+                return null;
+            }
+        }
+        final int[] runStarts = new int[numRuns + 1];
+        final int[] groups = new int[size];
+        for (int i = 1, run = 0; i < size; ++i) {
+            if (starts[i]) {
+                runStarts[++run] = i;
+            }
+            groups[i] = run;
+        }
+        runStarts[numRuns] = size;
+        //group the first row of each run, so that a key that appears in several runs is one group
+        final Series<?>[] firsts = new Series<?>[series.length];
+        for (int i = 0; i < series.length; ++i) {
+            firsts[i] = select(series[i], Arrays.copyOf(runStarts, numRuns));
+        }
+        final Grouping keys = of(firsts, 1);
+        if (keys.numGroups == numRuns) {
+            final Grouping grouping = new Grouping(groups, numRuns, Arrays.copyOf(runStarts, numRuns));
+            grouping.rows = DataFrameImpl.range(0, size);
+            grouping.offsets = runStarts;
+            return grouping;
+        }
+        for (int i = 0; i < size; ++i) {
+            groups[i] = keys.groups[groups[i]];
+        }
+        final int[] firstRows = new int[keys.numGroups];
+        for (int g = 0; g < keys.numGroups; ++g) {
+            firstRows[g] = runStarts[keys.firstRows[g]];
+        }
+        return new Grouping(groups, keys.numGroups, firstRows);
+    }
+
+    /**
+     * Mark the rows whose value differs from that of the previous row
+     *
+     * @param series the series
+     * @param starts whether each row starts a run. Rows that start a run are not counted again
+     * @param all    whether to mark all the rows. If not, marking stops, returning -1, once the runs in the rows seen
+     *               so far are shorter than four rows on average
+     * @return the number of rows that have been marked
+     */
+    private static int markRuns(final Series<?> series, final boolean[] starts, boolean all) {
+        int marked = 0;
+        switch (series.getType()) {
+            case DOUBLE:
+                final Aggregations.Doubles doubles = Aggregations.Doubles.of(series.asDouble());
+                for (int i = 1; i < starts.length; ++i) {
+                    if (Double.doubleToLongBits(doubles.get(i)) != Double.doubleToLongBits(doubles.get(i - 1)) && !starts[i]) {
+                        starts[i] = true;
+                        if (++marked > i >> 2 && !all && i >= MIN_RUN_DETECTION_SIZE) {
+                            return -1;
+                        }
+                    }
+                }
+                return marked;
+            case LONG:
+                final Aggregations.Longs longs = Aggregations.Longs.of(series.asLong());
+                for (int i = 1; i < starts.length; ++i) {
+                    final boolean isNull = longs.isNullAt(i);
+                    if ((isNull != longs.isNullAt(i - 1) || (!isNull && longs.get(i) != longs.get(i - 1))) && !starts[i]) {
+                        starts[i] = true;
+                        if (++marked > i >> 2 && !all && i >= MIN_RUN_DETECTION_SIZE) {
+                            return -1;
+                        }
+                    }
+                }
+                return marked;
+            case BOOLEAN:
+            case STRING:
+                if (series instanceof SeriesImpl.OfCategoricalArray) {
+                    final int[] codes = ((SeriesImpl.OfCategoricalArray) series).codes;
+                    for (int i = 1; i < starts.length; ++i) {
+                        if (codes[i] != codes[i - 1] && !starts[i]) {
+                            starts[i] = true;
+                            if (++marked > i >> 2 && !all && i >= MIN_RUN_DETECTION_SIZE) {
+                                return -1;
+                            }
+                        }
+                    }
+                    return marked;
+                }
+                for (int i = 1; i < starts.length; ++i) {
+                    if (!Objects.equals(series.get(i), series.get(i - 1)) && !starts[i]) {
+                        starts[i] = true;
+                        if (++marked > i >> 2 && !all && i >= MIN_RUN_DETECTION_SIZE) {
+                            return -1;
+                        }
+                    }
+                }
+                return marked;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @param series the series
+     * @param rows   the rows to select
+     * @return a view of the rows of the series
+     */
+    private static Series<?> select(final Series<?> series, final int[] rows) {
+        switch (series.getType()) {
+            case DOUBLE:
+                return new SeriesImpl.SeriesView<>(series.asDouble(), rows);
+            case LONG:
+                return new SeriesImpl.SeriesView<>(series.asLong(), rows);
+            case BOOLEAN:
+                return new SeriesImpl.SeriesView<>(series.asBoolean(), rows);
+            case STRING:
+                return new SeriesImpl.SeriesView<>(series.asString(), rows);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Group rows by the values of one or more series, using several threads.
+     * <p>
+     * The rows are split into ranges, which are grouped concurrently into their own tables. The first row of each group
+     * of each range is then grouped in order of range, which numbers the groups in the order they first appear, as if
+     * the rows were grouped on one thread. Finally, the group of each row is mapped from its range to the result
+     *
+     * @param series      the series, which must be of the same size
+     * @param parallelism the number of threads
+     * @return the groups of the rows, which are the same as those produced by a single thread
+     * @see #of(Series[])
+     */
+    static Grouping of(final Series<?>[] series, int parallelism) {
+        if (series.length == 1) {
+            return of(series[0], parallelism);
+        }
+        final int size = series[0].size();
+        final long[] keys = new long[size];
+        long radix = 1;
+        for (final Series<?> s : series) {
+            if (s.size() != size) {
+                throw new IllegalArgumentException(String.format("Series %s is of size %d, not %d", s.getName(), s.size(), size));
+            }
+            final Grouping grouping = of(s, parallelism);
+            final int numGroups = Math.max(1, grouping.numGroups);
+            if (radix > Long.MAX_VALUE / numGroups) {
+                final Grouping packed = of(keys, parallelism);
+                for (int i = 0; i < size; ++i) {
+                    keys[i] = packed.groups[i];
+                }
+                radix = Math.max(1, packed.numGroups);
+            }
+            for (int i = 0; i < size; ++i) {
+                keys[i] = keys[i] * numGroups + grouping.groups[i];
+            }
+            radix *= numGroups;
+        }
+        return of(keys, parallelism);
+    }
+
+    /**
+     * @param series      the series
+     * @param parallelism the number of threads
+     * @return the groups of the values of the series
+     */
+    static Grouping of(final Series<?> series, int parallelism) {
+        if (parallelism <= 1 || series.size() < MIN_PARALLEL_SIZE) {
+            return of(series);
+        }
+        switch (series.getType()) {
+            case DOUBLE:
+                final Aggregations.Doubles doubles = Aggregations.Doubles.of(series.asDouble());
+                return of(series.size(), parallelism,
+                        (from, to) -> of(new Aggregations.Doubles(doubles.data, doubles.rows, doubles.from + from, doubles.from + to)),
+                        rows -> of(new Aggregations.Doubles(doubles.data, gather(doubles.rows, doubles.from, rows), 0, rows.length))
+                );
+            case LONG:
+                final Aggregations.Longs longs = Aggregations.Longs.of(series.asLong());
+                return of(series.size(), parallelism,
+                        (from, to) -> of(new Aggregations.Longs(longs.data, longs.nulls, longs.rows, longs.from + from, longs.from + to)),
+                        rows -> of(new Aggregations.Longs(longs.data, longs.nulls, gather(longs.rows, longs.from, rows), 0, rows.length))
+                );
+            case BOOLEAN:
+                final BooleanSeries booleans = series.asBoolean();
+                return of(series.size(), parallelism,
+                        (from, to) -> of(booleans, from, to),
+                        rows -> of(new SeriesImpl.SeriesView<>(booleans, rows))
+                );
+            case STRING:
+                final StringSeries strings = series.asString();
+                return of(series.size(), parallelism,
+                        (from, to) -> of(strings, from, to),
+                        rows -> of(new SeriesImpl.SeriesView<>(strings, rows))
+                );
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @param keys        the keys
+     * @param parallelism the number of threads
+     * @return the groups of the keys
+     */
+    private static Grouping of(final long[] keys, int parallelism) {
+        return of(keys.length, parallelism,
+                (from, to) -> of(new Aggregations.Longs(keys, null, null, from, to)),
+                rows -> of(new Aggregations.Longs(keys, null, rows, 0, rows.length))
+        );
+    }
+
+    /**
+     * Groups a range of rows
+     */
+    @FunctionalInterface
+    private interface RangeGrouper {
+        /**
+         * @param from the first row
+         * @param to   the end row (exclusive)
+         * @return the groups of the rows, relative to the first row
+         */
+        Grouping group(int from, int to);
+    }
+
+    /**
+     * Group the rows in ranges on several threads and merge the groups of the ranges
+     *
+     * @param size        the number of rows
+     * @param parallelism the number of threads
+     * @param ranges      the function used to group a range of rows
+     * @param rows        the function used to group a selection of rows, which is used to merge the ranges
+     * @return the groups of the rows
+     */
+    private static Grouping of(int size, int parallelism, final RangeGrouper ranges, final Function<int[], Grouping> rows) {
+        if (parallelism <= 1 || size < MIN_PARALLEL_SIZE) {
+            return ranges.group(0, size);
+        }
+        final int numRanges = Math.min(parallelism, size / (MIN_PARALLEL_SIZE >> 2));
+        final int[] bounds = new int[numRanges + 1];
+        for (int k = 0; k <= numRanges; ++k) {
+            bounds[k] = (int) ((long) size * k / numRanges);
+        }
+        final List<Callable<Grouping>> tasks = new ArrayList<>(numRanges);
+        for (int k = 0; k < numRanges; ++k) {
+            final int from = bounds[k], to = bounds[k + 1];
+            tasks.add(() -> ranges.group(from, to));
+        }
+        final List<Grouping> local = invokeAll(parallelism, tasks);
+        //the first row of each group in each range, ordered by range
+        final int[] offsets = new int[numRanges + 1];
+        for (int k = 0; k < numRanges; ++k) {
+            offsets[k + 1] = offsets[k] + local.get(k).numGroups;
+        }
+        final int[] firstRows = new int[offsets[numRanges]];
+        for (int k = 0; k < numRanges; ++k) {
+            final Grouping range = local.get(k);
+            for (int g = 0; g < range.numGroups; ++g) {
+                firstRows[offsets[k] + g] = bounds[k] + range.firstRows[g];
+            }
+        }
+        final Grouping merged = rows.apply(firstRows);
+        final int[] groups = new int[size];
+        final List<Callable<Void>> remap = new ArrayList<>(numRanges);
+        for (int k = 0; k < numRanges; ++k) {
+            final int from = bounds[k], offset = offsets[k];
+            final int[] rangeGroups = local.get(k).groups;
+            remap.add(() -> {
+                for (int i = 0; i < rangeGroups.length; ++i) {
+                    groups[from + i] = merged.groups[offset + rangeGroups[i]];
+                }
+                return null;
+            });
+        }
+        invokeAll(parallelism, remap);
+        final int[] mergedFirstRows = new int[merged.numGroups];
+        for (int g = 0; g < merged.numGroups; ++g) {
+            mergedFirstRows[g] = firstRows[merged.firstRows[g]];
+        }
+        return new Grouping(groups, merged.numGroups, mergedFirstRows);
+    }
+
+    /**
+     * @param rows      the rows of the values, or {@code null} if the values are in order
+     * @param from      the position of the first value
+     * @param positions the positions to gather
+     * @return the rows of the values at the positions
+     */
+    private static int[] gather(final int[] rows, int from, final int[] positions) {
+        final int[] out = new int[positions.length];
+        for (int i = 0; i < positions.length; ++i) {
+            out[i] = rows == null ? (from + positions[i]) : rows[from + positions[i]];
+        }
+        return out;
+    }
+
+    /**
+     * Run tasks on a new pool of threads
+     *
+     * @param parallelism the number of threads
+     * @param tasks       the tasks
+     * @param <T>         the type of the result of the tasks
+     * @return the results of the tasks, in order
+     */
+    static <T> List<T> invokeAll(int parallelism, final List<Callable<T>> tasks) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final List<T> out = new ArrayList<>(tasks.size());
+            for (final Future<T> future : pool.invokeAll(tasks)) {
+                out.add(future.get());
+            }
+            return out;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the number of rows
+     */
+    int size() {
+        return groups.length;
+    }
+
+    /**
+     * @param group the group
+     * @return the number of rows in the group
+     */
+    int size(int group) {
+        final int[] offsets = offsets();
+        return offsets[group + 1] - offsets[group];
+    }
+
+    /**
+     * @return the offsets of each group in the rows, with the number of rows at the end
+     */
+    int[] offsets() {
+        if (offsets == null) {
+            layout();
+        }
+        return offsets;
+    }
+
+    /**
+     * @return the rows of every group, ordered by group
+     */
+    int[] rows() {
+        if (offsets == null) {
+            layout();
+        }
+        return rows;
+    }
+
+    /**
+     * @param group the group
+     * @return a copy of the rows in the group
+     */
+    int[] rows(int group) {
+        final int[] offsets = offsets();
+        return Arrays.copyOfRange(rows(), offsets[group], offsets[group + 1]);
+    }
+
+    /**
+     * Lay out the rows by group, using a counting sort
+     */
+    private synchronized void layout() {
+        if (this.offsets != null) {
+            return;
+        }
+        final int[] offsets = new int[numGroups + 1];
+        for (final int group : groups) {
+            ++offsets[group + 1];
+        }
+        for (int g = 0; g < numGroups; ++g) {
+            offsets[g + 1] += offsets[g];
+        }
+        final int[] next = Arrays.copyOf(offsets, numGroups);
+        final int[] rows = new int[groups.length];
+        for (int i = 0; i < groups.length; ++i) {
+            rows[next[groups[i]]++] = i;
+        }
+        this.rows = rows;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param key the key
+     * @return the mixed bits of the key, using the finalizer of MurmurHash3, so that keys that differ only in their high
+     * bits (such as the bits of small whole doubles) spread over the low bits used to index the table
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Builds the groups of a series from the keys of its rows
+     */
+    private static final class Builder {
+        final int[] groups;
+        int[] firstRows = new int[16];
+        int numGroups = 0;
+        /**
+         * The group of each slot, offset by one so that zero is empty
+         */
+        int[] slots = new int[16];
+        int mask = 15;
+
+        Builder(int size) {
+            groups = new int[size];
+        }
+
+        /**
+         * @param row the row
+         * @return a new group, starting at the row
+         */
+        int add(int row) {
+            if (numGroups == firstRows.length) {
+                firstRows = Arrays.copyOf(firstRows, numGroups << 1);
+            }
+            firstRows[numGroups] = row;
+            return numGroups++;
+        }
+
+        /**
+         * @return whether the table should be grown before adding another group
+         */
+        boolean isFull() {
+            return (numGroups + 1) << 1 > slots.length;
+        }
+
+        Grouping build() {
+            return new Grouping(groups, numGroups, Arrays.copyOf(firstRows, numGroups));
+        }
+    }
+
+    /**
+     * @param values the values
+     * @return the groups of the values. Values are grouped by their bits, so all NaN values are one group
+     */
+    static Grouping of(final Aggregations.Doubles values) {
+        final int size = values.to - values.from;
+        final Builder builder = new Builder(size);
+        long[] keys = new long[16];
+        for (int i = 0; i < size; ++i) {
+            final long key = Double.doubleToLongBits(values.get(i));
+            int slot = hash(key) & builder.mask;
+            int group;
+            while ((group = builder.slots[slot] - 1) >= 0 && keys[group] != key) {
+                slot = (slot + 1) & builder.mask;
+            }
+            if (group < 0) {
+                group = builder.add(i);
+                if (group == keys.length) {
+                    keys = Arrays.copyOf(keys, group << 1);
+                }
+                keys[group] = key;
+                builder.slots[slot] = group + 1;
+                if (builder.isFull()) {
+                    rehash(builder, keys);
+                }
+            }
+            builder.groups[i] = group;
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param values the values
+     * @return the groups of the values. Null values are one group
+     */
+    static Grouping of(final Aggregations.Longs values) {
+        final int size = values.to - values.from;
+        final Builder builder = new Builder(size);
+        long[] keys = new long[16];
+        int nullGroup = -1;
+        for (int i = 0; i < size; ++i) {
+            if (values.isNullAt(i)) {
+                if (nullGroup < 0) {
+                    nullGroup = builder.add(i);
+                    if (nullGroup == keys.length) {
+                        keys = Arrays.copyOf(keys, nullGroup << 1);
+                    }
+                }
+                builder.groups[i] = nullGroup;
+                continue;
+            }
+            final long key = values.get(i);
+            int slot = hash(key) & builder.mask;
+            int group;
+            while ((group = builder.slots[slot] - 1) >= 0 && keys[group] != key) {
+                slot = (slot + 1) & builder.mask;
+            }
+            if (group < 0) {
+                group = builder.add(i);
+                if (group == keys.length) {
+                    keys = Arrays.copyOf(keys, group << 1);
+                }
+                keys[group] = key;
+                builder.slots[slot] = group + 1;
+                if (builder.isFull()) {
+                    rehash(builder, keys);
+                }
+            }
+            builder.groups[i] = group;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Double the size of the table of a builder
+     *
+     * @param builder the builder
+     * @param keys    the key of each group, from which its slot is found. Groups without a slot (such as the group of
+     *                null values) are not added
+     */
+    private static void rehash(final Builder builder, final long[] keys) {
+        final int[] old = builder.slots;
+        builder.slots = new int[old.length << 1];
+        builder.mask = builder.slots.length - 1;
+        for (final int entry : old) {
+            if (entry == 0) {
+                continue;
+            }
+            int slot = hash(keys[entry - 1]) & builder.mask;
+            while (builder.slots[slot] != 0) {
+                slot = (slot + 1) & builder.mask;
+            }
+            builder.slots[slot] = entry;
+        }
+    }
+
+    /**
+     * @param series the series
+     * @param from   the first row
+     * @param to     the end row (exclusive)
+     * @return the groups of the values, of which there are at most three ({@code true}, {@code false} and null)
+     */
+    private static Grouping of(final BooleanSeries series, int from, int to) {
+        final Builder builder = new Builder(to - from);
+        final int[] groupOf = {-1, -1, -1};
+        for (int i = 0; i < builder.groups.length; ++i) {
+            final Boolean value = series.get(from + i);
+            final int key = value == null ? 2 : value ? 1 : 0;
+            if (groupOf[key] < 0) {
+                groupOf[key] = builder.add(i);
+            }
+            builder.groups[i] = groupOf[key];
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param series the series
+     * @param from   the first row
+     * @param to     the end row (exclusive)
+     * @return the groups of the values. Dictionary-coded series are grouped by their codes
+     */
+    private static Grouping of(final StringSeries series, int from, int to) {
+        if (series instanceof SeriesImpl.OfCategoricalArray) {
+            final SeriesImpl.OfCategoricalArray categorical = (SeriesImpl.OfCategoricalArray) series;
+            return ofCodes(categorical.codes, null, from, to, categorical.categories.length);
+        }
+        if (series instanceof SeriesImpl.SeriesView && ((SeriesImpl.SeriesView<?>) series).dataSeries instanceof SeriesImpl.OfCategoricalArray) {
+            final SeriesImpl.SeriesView<?> view = (SeriesImpl.SeriesView<?>) series;
+            final SeriesImpl.OfCategoricalArray categorical = (SeriesImpl.OfCategoricalArray) view.dataSeries;
+            return ofCodes(categorical.codes, view.rows, from, to, categorical.categories.length);
+        }
+        final int size = to - from;
+        final Builder builder = new Builder(size);
+        String[] keys = new String[16];
+        long[] hashes = new long[16];
+        for (int i = 0; i < size; ++i) {
+            final String key = series.get(from + i);
+            final int hash = Objects.hashCode(key);
+            int slot = hash(hash) & builder.mask;
+            int group;
+            while ((group = builder.slots[slot] - 1) >= 0 && !(hashes[group] == hash && Objects.equals(keys[group], key))) {
+                slot = (slot + 1) & builder.mask;
+            }
+            if (group < 0) {
+                group = builder.add(i);
+                if (group == keys.length) {
+                    keys = Arrays.copyOf(keys, group << 1);
+                    hashes = Arrays.copyOf(hashes, group << 1);
+                }
+                keys[group] = key;
+                hashes[group] = hash;
+                builder.slots[slot] = group + 1;
+                if (builder.isFull()) {
+                    rehash(builder, hashes);
+                }
+            }
+            builder.groups[i] = group;
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param codes    the codes of the values
+     * @param rows     the rows of the codes of each value, or {@code null} if the codes are in order
+     * @param from     the first value
+     * @param to       the end value (exclusive)
+     * @param numCodes the number of distinct codes
+     * @return the groups of the codes, which are renumbered in the order they first appear
+     */
+    private static Grouping ofCodes(final int[] codes, final int[] rows, int from, int to, int numCodes) {
+        final Builder builder = new Builder(to - from);
+        final int[] groupOf = new int[numCodes];
+        Arrays.fill(groupOf, -1);
+        for (int i = 0; i < builder.groups.length; ++i) {
+            final int code = codes[rows == null ? from + i : rows[from + i]];
+            if (groupOf[code] < 0) {
+                groupOf[code] = builder.add(i);
+            }
+            builder.groups[i] = groupOf[code];
+        }
+        return builder.build();
+    }
+}
@@ -1,9 +1,14 @@
 package net.mahdilamb.dataframe;
 
 import java.util.PrimitiveIterator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
 
 /**
- * A series of ordered long data
+ * A series of ordered long data.
+ * <p>
+ * As in queries, comparisons with null values are {@code false}, including {@link #ne(long)}, so null values are never
+ * selected by a comparison.
  */
 public interface LongSeries extends NumericSeries<Long> {
 
@@ -28,6 +33,297 @@ public interface LongSeries extends NumericSeries<Long> {
         return DataType.LONG;
     }
 
+    /**
+     * Test each element of the series as a primitive long
+     *
+     * @param test the test
+     * @return a new boolean series produced from using the predicate on every element. Null values are {@code false}
+     */
+    default BooleanSeries mapLongToBool(LongPredicate test) {
+        return ElementWise.mapToBool(this, test);
+    }
+
+    /**
+     * Apply an operator to each element of the series
+     *
+     * @param operator the operator
+     * @return a new series containing the result of the operator on each element. Null values remain null
+     */
+    default LongSeries map(LongUnaryOperator operator) {
+        return ElementWise.map(this, operator);
+    }
+
+    /**
+     * Add the corresponding element of the other series to each element of the series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. If either value is null, the result is null
+     */
+    default LongSeries add(LongSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Operator.ADD);
+    }
+
+    /**
+     * Add a value to each element of the series
+     *
+     * @param value the value
+     * @return a new series containing the result. If either value is null, the result is null
+     */
+    default LongSeries add(long value) {
+        return ElementWise.apply(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Operator.ADD);
+    }
+
+    /**
+     * Subtract the corresponding element of the other series from each element of the series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. If either value is null, the result is null
+     */
+    default LongSeries subtract(LongSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Operator.SUBTRACT);
+    }
+
+    /**
+     * Subtract a value from each element of the series
+     *
+     * @param value the value
+     * @return a new series containing the result. If either value is null, the result is null
+     */
+    default LongSeries subtract(long value) {
+        return ElementWise.apply(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Operator.SUBTRACT);
+    }
+
+    /**
+     * Multiply each element of the series by the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. If either value is null, the result is null
+     */
+    default LongSeries multiply(LongSeries other) {
+        return ElementWise.apply(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Operator.MULTIPLY);
+    }
+
+    /**
+     * Multiply each element of the series by a value
+     *
+     * @param value the value
+     * @return a new series containing the result. If either value is null, the result is null
+     */
+    default LongSeries multiply(long value) {
+        return ElementWise.apply(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Operator.MULTIPLY);
+    }
+
+    /**
+     * Divide each element of the series by the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. If either value is null, the result is NaN
+     */
+    default DoubleSeries divide(LongSeries other) {
+        return ElementWise.applyAsDouble(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Operator.DIVIDE);
+    }
+
+    /**
+     * Divide each element of the series by a value
+     *
+     * @param value the value
+     * @return a new series containing the result. If either value is null, the result is NaN
+     */
+    default DoubleSeries divide(long value) {
+        return ElementWise.applyAsDouble(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Operator.DIVIDE);
+    }
+
+    /**
+     * Raise each element of the series to the power of the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new series containing the result. If either value is null, the result is NaN
+     */
+    default DoubleSeries pow(LongSeries other) {
+        return ElementWise.applyAsDouble(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Operator.POWER);
+    }
+
+    /**
+     * Raise each element of the series to the power of a value
+     *
+     * @param value the value
+     * @return a new series containing the result. If either value is null, the result is NaN
+     */
+    default DoubleSeries pow(long value) {
+        return ElementWise.applyAsDouble(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Operator.POWER);
+    }
+
+    /**
+     * Test whether each element of the series is less than the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries lt(LongSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Comparison.LESS_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is less than a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries lt(long value) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Comparison.LESS_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is less than or equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries le(LongSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Comparison.LESS_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is less than or equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries le(long value) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Comparison.LESS_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is greater than the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries gt(LongSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Comparison.GREATER_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is greater than a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries gt(long value) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Comparison.GREATER_THAN);
+    }
+
+    /**
+     * Test whether each element of the series is greater than or equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ge(LongSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Comparison.GREATER_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is greater than or equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ge(long value) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Comparison.GREATER_THAN_OR_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries eq(LongSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Comparison.EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries eq(long value) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Comparison.EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is not equal to the corresponding element of the other series
+     *
+     * @param other the other series, which must be the same size as this series or have one element
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ne(LongSeries other) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(other), ElementWise.Comparison.NOT_EQUAL);
+    }
+
+    /**
+     * Test whether each element of the series is not equal to a value
+     *
+     * @param value the value
+     * @return a new boolean series containing the result of each comparison.
+     */
+    default BooleanSeries ne(long value) {
+        return ElementWise.compare(getName(), Aggregations.Longs.of(this), Aggregations.Longs.of(value), ElementWise.Comparison.NOT_EQUAL);
+    }
+
+    /**
+     * Get a series whose arithmetic is deferred, as with {@link DoubleSeries#lazy()}. The values are converted to
+     * doubles, with null values as NaN
+     *
+     * @return a lazy view of this series
+     */
+    default DoubleSeries lazy() {
+        return new SeriesImpl.OfExpression(getName(), Expression.of(this));
+    }
+
+    /**
+     * @return the sum of the values in the series, skipping null values. The values are accumulated as a long
+     */
+    @Override
+    default double sum() {
+        return Aggregations.sum(this);
+    }
+
+    @Override
+    default double mean() {
+        return Aggregations.mean(this);
+    }
+
+    @Override
+    default int count() {
+        return Aggregations.count(this);
+    }
+
+    @Override
+    default double variance() {
+        return Aggregations.variance(this);
+    }
+
+    /**
+     * @return the minimum of the values in the series, skipping null values. If there are no values, this is
+     * {@code null}
+     */
+    @Override
+    default Long min() {
+        return Aggregations.extreme(this, false);
+    }
+
+    /**
+     * @return the maximum of the values in the series, skipping null values. If there are no values, this is
+     * {@code null}
+     */
+    @Override
+    default Long max() {
+        return Aggregations.extreme(this, true);
+    }
+
     @Override
     default PrimitiveIterator.OfLong iterator() {
         return new PrimitiveIterator.OfLong() {
@@ -15,25 +15,32 @@ interface NumericSeries<T extends Number & Comparable<T>> extends Series<T>, Ser
     boolean isNaN(int index);
 
     /**
-     * @return the sum of all the values in the series
+     * @return the sum of the values in the series, skipping NaN values
      */
-    default double sum() {
-        int sum = 0;
-        for (int i = 0; i < size(); ++i) {
-            final T val = get(i);
-            if (val == null) {
-                return Double.NaN;
-            }
-            sum += val.doubleValue();
-        }
-        return sum;
-    }
+    double sum();
+
+    /**
+     * @return the mean of the values in the series, skipping NaN values. If there are no values, this is NaN
+     */
+    double mean();
+
+    /**
+     * @return the number of values in the series that are not NaN
+     */
+    int count();
+
+    /**
+     * @return the sample variance of the values in the series, skipping NaN values. If there are fewer than two
+     * values, this is NaN
+     */
+    double variance();
 
     /**
-     * @return the mean of all the values in the series
+     * @return the sample standard deviation of the values in the series, skipping NaN values. If there are fewer than
+     * two values, this is NaN
      */
-    default double mean() {
-        return sum() / size();
+    default double std() {
+        return Math.sqrt(variance());
     }
 
 }
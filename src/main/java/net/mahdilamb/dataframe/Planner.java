@@ -0,0 +1,270 @@
+package net.mahdilamb.dataframe;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Plans the evaluation of conjunctions in queries.
+ * <p>
+ * The conditions of a conjunction are evaluated in order of their cost per row divided by the fraction of rows that
+ * they reject, which is estimated from statistics of the columns. Each condition after the first is only evaluated for
+ * the rows selected by the conditions before it, and evaluation stops once no rows remain.
+ */
+final class Planner {
+    private Planner() {
+
+    }
+
+    /**
+     * Statistics of a column, which are computed once per series and used to estimate the selectivity of conditions
+     */
+    static final class Statistics {
+        private static final Map<Series<?>, Statistics> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+        final int size;
+        /**
+         * The number of missing values
+         */
+        final int nulls;
+        /**
+         * The minimum and maximum of a numeric column, which are NaN if there are no numeric values
+         */
+        final double min, max;
+        /**
+         * The number of distinct values, or {@code -1} if this is not known
+         */
+        final int distinct;
+        private final boolean isLong;
+
+        private Statistics(final Series<?> series) {
+            size = series.size();
+            isLong = series.getType() == DataType.LONG;
+            switch (series.getType()) {
+                case DOUBLE:
+                    final DoubleSeries doubles = series.asDouble();
+                    nulls = size - Aggregations.count(doubles);
+                    min = Aggregations.min(doubles);
+                    max = Aggregations.max(doubles);
+                    distinct = -1;
+                    break;
+                case LONG:
+                    final LongSeries longs = series.asLong();
+                    final Long lo = Aggregations.extreme(longs, false), hi = Aggregations.extreme(longs, true);
+                    nulls = size - Aggregations.count(longs);
+                    min = lo == null ? Double.NaN : lo;
+                    max = hi == null ? Double.NaN : hi;
+                    distinct = lo == null ? 0 : (int) Math.min(size - nulls, hi - lo + 1);
+                    break;
+                default:
+                    nulls = 0;
+                    min = Double.NaN;
+                    max = Double.NaN;
+                    distinct = series instanceof SeriesImpl.OfCategoricalArray ? ((SeriesImpl.OfCategoricalArray) series).categories.length : -1;
+                    break;
+            }
+        }
+
+        /**
+         * @param series the series. The statistics of a view are those of the series it views
+         * @return the statistics of the series
+         */
+        static Statistics of(final Series<?> series) {
+            final Series<?> source = series instanceof SeriesImpl.SeriesView ? ((SeriesImpl.SeriesView<?>) series).dataSeries : series;
+            return CACHE.computeIfAbsent(source, Statistics::new);
+        }
+
+        /**
+         * Estimate the fraction of rows selected by comparing the column with a constant, assuming that the values are
+         * uniformly distributed between the minimum and maximum. The values of long columns are integers, so there
+         * are {@code max - min + 1} of them
+         *
+         * @param comparison the comparison
+         * @param value      the constant
+         * @return the estimated selectivity
+         */
+        double selectivity(final ElementWise.Comparison comparison, double value) {
+            if (size == nulls || Double.isNaN(value)) {
+                return 0;
+            }
+            final double present = (size - nulls) / (double) size;
+            final double range = max - min;
+            final double equal = value < min || value > max || (isLong && value != Math.rint(value)) ? 0 : range == 0 ? 1 : isLong ? (1. / distinct) : (1. / (size - nulls));
+            final double below = range == 0 ? (value > min ? 1 : 0) : Math.max(0, Math.min(1, (isLong ? Math.ceil(value) - min : value - min) / (isLong ? range + 1 : range)));
+            final double selectivity;
+            switch (comparison) {
+                case LESS_THAN:
+                    selectivity = below;
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    selectivity = below + equal;
+                    break;
+                case GREATER_THAN:
+                    selectivity = 1 - below - equal;
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    selectivity = 1 - below;
+                    break;
+                case EQUAL:
+                    selectivity = equal;
+                    break;
+                case NOT_EQUAL:
+                    selectivity = 1 - equal;
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+            return present * Math.max(0, Math.min(1, selectivity));
+        }
+    }
+
+    /**
+     * @param comparison the comparison
+     * @return the selectivity of a comparison about which nothing else is known
+     */
+    static double selectivity(final ElementWise.Comparison comparison) {
+        switch (comparison) {
+            case EQUAL:
+                return 0.1;
+            case NOT_EQUAL:
+                return 0.9;
+            default:
+                return 1. / 3;
+        }
+    }
+
+    /**
+     * A conjunction of conditions, which are evaluated in the planned order
+     */
+    static final class Conjunction extends Query.Mask {
+        final Query.Mask[] masks;
+        /**
+         * The text of each condition, or {@code null} if the conjunction was not written as such in the query
+         */
+        final String[] texts;
+
+        Conjunction(final Query.Mask[] masks, final String[] texts) {
+            super(cost(masks));
+            this.masks = masks;
+            this.texts = texts;
+        }
+
+        private static double cost(final Query.Mask[] masks) {
+            double cost = 0;
+            for (final Query.Mask mask : masks) {
+                cost += mask.cost;
+            }
+            return cost;
+        }
+
+        @Override
+        long[] evaluate(DataFrame dataFrame, int size) {
+            return evaluate(dataFrame, size, null, null);
+        }
+
+        @Override
+        long[] evaluate(DataFrame dataFrame, int size, long[] candidates) {
+            return evaluate(dataFrame, size, candidates, null);
+        }
+
+        @Override
+        double selectivity(DataFrame dataFrame) {
+            double selectivity = 1;
+            for (final Query.Mask mask : masks) {
+                selectivity *= mask.selectivity(dataFrame);
+            }
+            return selectivity;
+        }
+
+        /**
+         * Evaluate the conditions in the planned order
+         *
+         * @param dataFrame  the dataframe
+         * @param size       the number of rows
+         * @param candidates the candidate rows, or {@code null} if all rows are candidates
+         * @param plan       the output for a description of each step, or {@code null}
+         * @return the packed mask of the selected rows
+         */
+        long[] evaluate(DataFrame dataFrame, int size, long[] candidates, final StringBuilder plan) {
+            final double[] selectivity = new double[masks.length];
+            final Integer[] order = new Integer[masks.length];
+            for (int i = 0; i < masks.length; ++i) {
+                selectivity[i] = masks[i].selectivity(dataFrame);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(rank(masks[a].cost, selectivity[a]), rank(masks[b].cost, selectivity[b])));
+            long[] words = candidates;
+            for (int step = 0; step < order.length; ++step) {
+                final int i = order[step];
+                final int before = words == null ? size : count(words, size);
+                if (before == 0 && step > 0) {
+                    if (plan != null) {
+                        plan.append(String.format("%d. %s: skipped%n", step + 1, text(i)));
+                    }
+                    continue;
+                }
+                final long start = System.nanoTime();
+                final long[] result = masks[i].evaluate(dataFrame, size, words);
+                if (words != null) {
+                    for (int w = 0; w < result.length; ++w) {
+                        result[w] &= words[w];
+                    }
+                }
+                words = result;
+                if (plan != null) {
+                    plan.append(String.format("%d. %s [cost %.2f, estimated %.1f%%]: %d -> %d rows in %.3f ms%n", step + 1, text(i), masks[i].cost, 100 * selectivity[i], before, count(words, size), (System.nanoTime() - start) / 1e6));
+                }
+            }
+            return words;
+        }
+
+        private String text(int i) {
+            return texts == null ? String.valueOf(i + 1) : texts[i];
+        }
+
+        /**
+         * @param cost        the cost per row
+         * @param selectivity the fraction of rows selected
+         * @return the rank of a condition. Conditions with a lower rank are evaluated first
+         */
+        private static double rank(double cost, double selectivity) {
+            return cost / Math.max(1e-9, 1 - selectivity);
+        }
+    }
+
+    /**
+     * Evaluate a query, describing the plan of each step
+     *
+     * @param query     the query
+     * @param dataFrame the dataframe
+     * @return the description of the plan, with the number of rows and time taken for each step
+     */
+    static String explain(final String query, final DataFrame dataFrame) {
+        final int size = dataFrame.size(Axis.INDEX);
+        final StringBuilder plan = new StringBuilder(String.format("Query: %s%n", query));
+        final long start = System.nanoTime();
+        final Query.Mask mask = Query.compile(query, dataFrame);
+        final long[] words;
+        if (mask instanceof Conjunction) {
+            words = ((Conjunction) mask).evaluate(dataFrame, size, null, plan);
+        } else {
+            words = mask.evaluate(dataFrame, size);
+            plan.append(String.format("1. %s [cost %.2f, estimated %.1f%%]: %d -> %d rows in %.3f ms%n", query, mask.cost, 100 * mask.selectivity(dataFrame), size, count(words, size), (System.nanoTime() - start) / 1e6));
+        }
+        return plan.append(String.format("Selected %d of %d rows in %.3f ms", count(words, size), size, (System.nanoTime() - start) / 1e6)).toString();
+    }
+
+    /**
+     * @param words the packed bits
+     * @param size  the number of bits
+     * @return the number of bits that are set
+     */
+    static int count(final long[] words, int size) {
+        final int last = Bits.words(size) - 1;
+        int count = 0;
+        for (int i = 0; i < last; ++i) {
+            count += Long.bitCount(words[i]);
+        }
+        return last < 0 ? 0 : (count + Long.bitCount(words[last] & Bits.tailMask(size)));
+    }
+}
@@ -0,0 +1,1579 @@
+package net.mahdilamb.dataframe;
+
+import net.mahdilamb.dataframe.utils.StringParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Queries on the rows of a dataframe.
+ * <p>
+ * A query is parsed into a tree of nodes, which is compiled against the types of the columns of a dataframe into
+ * evaluators that work a column at a time and produce a single mask of the selected rows. Both the parsed and compiled
+ * queries are cached, so repeating a query on dataframes with the same columns does neither again.
+ * <p>
+ * The grammar, from the loosest to the tightest binding, is:
+ * <pre>
+ * or         := and (('or' | '|' | '||') and)*
+ * and        := not (('and' | '&amp;' | '&amp;&amp;') not)*
+ * not        := ('not' | '!' | '~') not | comparison
+ * comparison := additive (op additive | ['not'] 'in' list | 'between' additive 'and' additive | 'matches' string)?
+ * additive   := term (('+' | '-') term)*
+ * term       := unary (('*' | '/') unary)*
+ * unary      := ('-' | '+') unary | power
+ * power      := primary ('**' unary)?
+ * primary    := '(' or ')' | column | number | string
+ * list       := '[' literal (',' literal)* ']'
+ * </pre>
+ * where {@code op} is one of {@code == != < <= > >=}. Column names that are not plain words may be quoted with
+ * backticks, and strings are quoted with single or double quotes. A word that is not the name of a column may be
+ * {@code true}, {@code false} or a number such as {@code NaN}.
+ * <p>
+ * Comparisons between long columns and integers are made as longs, and other numeric comparisons are made as doubles.
+ * Missing values (null or NaN) are never selected by a comparison, including {@code !=}. Negations are applied to the
+ * comparisons they contain, so {@code not (a == 1)} is the same as {@code a != 1} and {@code a not in [1, 2]} does not
+ * select missing values either.
+ * <p>
+ * The same tree may instead be compiled into a test of the records of a file, which is used to filter rows during
+ * import with {@link DataFrameImporter#filter(String)} and follows the same rules.
+ */
+final class Query {
+    /**
+     * The maximum number of queries held in each cache
+     */
+    static final int CACHE_SIZE = 256;
+
+    private static final Map<String, Node> PARSED = cache();
+    private static final Map<String, Mask> COMPILED = cache();
+
+    private Query() {
+
+    }
+
+    private static <T> Map<String, T> cache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+    }
+
+    /**
+     * Evaluate a query against a dataframe
+     *
+     * @param query     the query
+     * @param dataFrame the dataframe
+     * @return a mask of the rows selected by the query
+     */
+    static BooleanSeries evaluate(final String query, final DataFrame dataFrame) {
+        final int size = dataFrame.size(Axis.INDEX);
+        return new SeriesImpl.OfBooleanArray(query, compile(query, dataFrame).evaluate(dataFrame, size), size);
+    }
+
+    /**
+     * Get the compiled form of a query for the columns of a dataframe
+     *
+     * @param query     the query
+     * @param dataFrame the dataframe
+     * @return the compiled query
+     */
+    static Mask compile(final String query, final DataFrame dataFrame) {
+        final Map<String, DataType> schema = new HashMap<>(dataFrame.numSeries());
+        final StringBuilder key = new StringBuilder(query);
+        for (int i = 0; i < dataFrame.numSeries(); ++i) {
+            final Series<?> series = dataFrame.get(i);
+            schema.put(series.getName(), series.getType());
+            key.append('\0').append(series.getName()).append('\0').append(series.getType().ordinal());
+        }
+        final String k = key.toString();
+        Mask mask = COMPILED.get(k);
+        if (mask == null) {
+            mask = new Compiler(query, schema).mask(parse(query));
+            COMPILED.put(k, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * @param query the query
+     * @return the root of the parsed query
+     * @throws StringParseException if the query is not valid
+     */
+    static Node parse(final String query) {
+        Node node = PARSED.get(query);
+        if (node == null) {
+            node = new Parser(query).parse();
+            PARSED.put(query, node);
+        }
+        return node;
+    }
+
+    /**
+     * A node in a parsed query
+     */
+    abstract static class Node {
+        /**
+         * The position of the node in the query
+         */
+        final int position;
+
+        Node(int position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * A word, which is either the name of a column or a literal
+     */
+    static final class Word extends Node {
+        final String text;
+        /**
+         * Whether the word was quoted with backticks, in which case it must be a column
+         */
+        final boolean quoted;
+
+        Word(int position, String text, boolean quoted) {
+            super(position);
+            this.text = text;
+            this.quoted = quoted;
+        }
+    }
+
+    /**
+     * A numeric literal
+     */
+    static final class NumberLiteral extends Node {
+        final String text;
+        final boolean isLong;
+        final long longValue;
+        final double doubleValue;
+
+        NumberLiteral(int position, String text, boolean isLong, long longValue, double doubleValue) {
+            super(position);
+            this.text = text;
+            this.isLong = isLong;
+            this.longValue = longValue;
+            this.doubleValue = doubleValue;
+        }
+
+        NumberLiteral negate() {
+            return new NumberLiteral(position, text.startsWith("-") ? text.substring(1) : ('-' + text), isLong, -longValue, -doubleValue);
+        }
+    }
+
+    /**
+     * A quoted string literal
+     */
+    static final class StringLiteral extends Node {
+        final String value;
+
+        StringLiteral(int position, String value) {
+            super(position);
+            this.value = value;
+        }
+    }
+
+    /**
+     * An arithmetic operation
+     */
+    static final class Arithmetic extends Node {
+        final ElementWise.Operator operator;
+        final Node left;
+        final Node right;
+
+        Arithmetic(int position, Node left, ElementWise.Operator operator, Node right) {
+            super(position);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * A comparison of two values
+     */
+    static final class Comparison extends Node {
+        final ElementWise.Comparison comparison;
+        final Node left;
+        final Node right;
+
+        Comparison(int position, Node left, ElementWise.Comparison comparison, Node right) {
+            super(position);
+            this.comparison = comparison;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * A test of whether a value is one of a list of literals
+     */
+    static final class In extends Node {
+        final Node operand;
+        final List<Node> values;
+
+        In(int position, Node operand, List<Node> values) {
+            super(position);
+            this.operand = operand;
+            this.values = values;
+        }
+    }
+
+    /**
+     * A test of whether a value is between two bounds, inclusive
+     */
+    static final class Between extends Node {
+        final Node operand;
+        final Node lower;
+        final Node upper;
+        /**
+         * The source text of the comparisons with the lower and upper bound
+         */
+        final String[] texts;
+
+        Between(int position, Node operand, Node lower, Node upper, String[] texts) {
+            super(position);
+            this.operand = operand;
+            this.lower = lower;
+            this.upper = upper;
+            this.texts = texts;
+        }
+    }
+
+    /**
+     * A test of whether a string matches a regular expression
+     */
+    static final class Matches extends Node {
+        final Node operand;
+        final String pattern;
+
+        Matches(int position, Node operand, String pattern) {
+            super(position);
+            this.operand = operand;
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * A conjunction of conditions
+     */
+    static final class Conjunction extends Node {
+        final List<Node> operands;
+        /**
+         * The text of each operand in the query
+         */
+        final List<String> texts;
+
+        Conjunction(int position, List<Node> operands, List<String> texts) {
+            super(position);
+            this.operands = operands;
+            this.texts = texts;
+        }
+    }
+
+    /**
+     * A disjunction of two conditions
+     */
+    static final class Disjunction extends Node {
+        final Node left;
+        final Node right;
+
+        Disjunction(int position, Node left, Node right) {
+            super(position);
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * The negation of a condition
+     */
+    static final class Not extends Node {
+        final Node operand;
+
+        Not(int position, Node operand) {
+            super(position);
+            this.operand = operand;
+        }
+    }
+
+    /**
+     * A recursive descent parser of the query grammar
+     */
+    private static final class Parser {
+        private static final int END = 0, WORD = 1, QUOTED_WORD = 2, NUMBER = 3, STRING = 4, SYMBOL = 5;
+        private final String query;
+        private final List<int[]> tokens = new ArrayList<>();
+        private int current;
+
+        Parser(final String query) {
+            this.query = query;
+            tokenize();
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < query.length()) {
+                final char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    ++i;
+                } else if (c == '`' || c == '\'' || c == '"') {
+                    final int end = query.indexOf(c, i + 1);
+                    if (end == -1) {
+                        throw new StringParseException(query, i);
+                    }
+                    tokens.add(new int[]{c == '`' ? QUOTED_WORD : STRING, i + 1, end});
+                    i = end + 1;
+                } else if (Character.isDigit(c) || (c == '.' && i + 1 < query.length() && Character.isDigit(query.charAt(i + 1)))) {
+                    int end = i + 1;
+                    while (end < query.length()) {
+                        final char d = query.charAt(end);
+                        if (Character.isLetterOrDigit(d) || d == '.' || d == '_' || ((d == '+' || d == '-') && (query.charAt(end - 1) == 'e' || query.charAt(end - 1) == 'E'))) {
+                            ++end;
+                        } else {
+                            break;
+                        }
+                    }
+                    tokens.add(new int[]{NUMBER, i, end});
+                    i = end;
+                } else if (isSymbol(c)) {
+                    int end = i + 1;
+                    if (end < query.length()) {
+                        final char d = query.charAt(end);
+                        if ((d == '=' && (c == '<' || c == '>' || c == '=' || c == '!')) || (d == c && (c == '*' || c == '&' || c == '|'))) {
+                            ++end;
+                        }
+                    }
+                    tokens.add(new int[]{SYMBOL, i, end});
+                    i = end;
+                } else {
+                    int end = i + 1;
+                    while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && !isSymbol(query.charAt(end)) && "`'\"".indexOf(query.charAt(end)) == -1) {
+                        ++end;
+                    }
+                    tokens.add(new int[]{WORD, i, end});
+                    i = end;
+                }
+            }
+            tokens.add(new int[]{END, query.length(), query.length()});
+        }
+
+        private static boolean isSymbol(char c) {
+            return "()[],+-*/<>=!~&|".indexOf(c) != -1;
+        }
+
+        Node parse() {
+            final Node node = or();
+            if (type() != END) {
+                throw error();
+            }
+            return node;
+        }
+
+        private int type() {
+            return tokens.get(current)[0];
+        }
+
+        private int position() {
+            return tokens.get(current)[1];
+        }
+
+        private String text() {
+            final int[] token = tokens.get(current);
+            return query.substring(token[1], token[2]);
+        }
+
+        private boolean isSymbol(final String symbol) {
+            return type() == SYMBOL && text().equals(symbol);
+        }
+
+        private boolean isKeyword(final String keyword) {
+            return type() == WORD && text().equalsIgnoreCase(keyword);
+        }
+
+        private void expect(final String symbol) {
+            if (!isSymbol(symbol)) {
+                throw error();
+            }
+            ++current;
+        }
+
+        private StringParseException error() {
+            return new StringParseException(query, position());
+        }
+
+        private Node or() {
+            Node left = and();
+            while (isKeyword("or") || isSymbol("|") || isSymbol("||")) {
+                final int position = position();
+                ++current;
+                left = new Disjunction(position, left, and());
+            }
+            return left;
+        }
+
+        private Node and() {
+            final int position = position();
+            int first = current;
+            final Node node = not();
+            if (!(isKeyword("and") || isSymbol("&") || isSymbol("&&"))) {
+                return node;
+            }
+            final List<Node> operands = new ArrayList<>();
+            final List<String> texts = new ArrayList<>();
+            operands.add(node);
+            texts.add(source(first, current));
+            while (isKeyword("and") || isSymbol("&") || isSymbol("&&")) {
+                first = ++current;
+                operands.add(not());
+                texts.add(source(first, current));
+            }
+            return new Conjunction(position, operands, texts);
+        }
+
+        /**
+         * @param from the first token
+         * @param to   the end token (exclusive)
+         * @return the text of the tokens in the query, including any quotes
+         */
+        private String source(int from, int to) {
+            final int[] first = tokens.get(from), last = tokens.get(to - 1);
+            final boolean quotedFirst = first[0] == STRING || first[0] == QUOTED_WORD, quotedLast = last[0] == STRING || last[0] == QUOTED_WORD;
+            return query.substring(quotedFirst ? first[1] - 1 : first[1], quotedLast ? last[2] + 1 : last[2]);
+        }
+
+        private Node not() {
+            if (isKeyword("not") || isSymbol("!") || isSymbol("~")) {
+                final int position = position();
+                ++current;
+                return new Not(position, not());
+            }
+            return comparison();
+        }
+
+        private Node comparison() {
+            final int first = current;
+            final Node left = additive();
+            final int position = position();
+            if (type() == SYMBOL) {
+                final ElementWise.Comparison comparison;
+                switch (text()) {
+                    case "==":
+                        comparison = ElementWise.Comparison.EQUAL;
+                        break;
+                    case "!=":
+                        comparison = ElementWise.Comparison.NOT_EQUAL;
+                        break;
+                    case "<":
+                        comparison = ElementWise.Comparison.LESS_THAN;
+                        break;
+                    case "<=":
+                        comparison = ElementWise.Comparison.LESS_THAN_OR_EQUAL;
+                        break;
+                    case ">":
+                        comparison = ElementWise.Comparison.GREATER_THAN;
+                        break;
+                    case ">=":
+                        comparison = ElementWise.Comparison.GREATER_THAN_OR_EQUAL;
+                        break;
+                    case "=":
+                        throw error();
+                    default:
+                        return left;
+                }
+                ++current;
+                return new Comparison(position, left, comparison, additive());
+            }
+            if (isKeyword("in")) {
+                ++current;
+                return new In(position, left, list());
+            }
+            if (isKeyword("not")) {
+                ++current;
+                if (!isKeyword("in")) {
+                    throw error();
+                }
+                ++current;
+                return new Not(position, new In(position, left, list()));
+            }
+            if (isKeyword("matches")) {
+                ++current;
+                if (type() != STRING) {
+                    throw error();
+                }
+                final String pattern = text();
+                ++current;
+                return new Matches(position, left, pattern);
+            }
+            if (isKeyword("between")) {
+                final String operand = source(first, current);
+                final int lowerFirst = ++current;
+                final Node lower = additive();
+                if (!isKeyword("and")) {
+                    throw error();
+                }
+                final String lowerText = source(lowerFirst, current);
+                final int upperFirst = ++current;
+                final Node upper = additive();
+                return new Between(position, left, lower, upper, new String[]{
+                        operand + " >= " + lowerText,
+                        operand + " <= " + source(upperFirst, current)
+                });
+            }
+            return left;
+        }
+
+        private List<Node> list() {
+            final String close = isSymbol("(") ? ")" : "]";
+            if (!isSymbol("(")) {
+                expect("[");
+            } else {
+                ++current;
+            }
+            final List<Node> values = new ArrayList<>();
+            while (true) {
+                final Node value = unary();
+                if (!(value instanceof NumberLiteral || value instanceof StringLiteral || value instanceof Word)) {
+                    throw new StringParseException(query, value.position);
+                }
+                values.add(value);
+                if (isSymbol(close)) {
+                    ++current;
+                    return values;
+                }
+                expect(",");
+            }
+        }
+
+        private Node additive() {
+            Node left = term();
+            while (isSymbol("+") || isSymbol("-")) {
+                final int position = position();
+                final ElementWise.Operator operator = isSymbol("+") ? ElementWise.Operator.ADD : ElementWise.Operator.SUBTRACT;
+                ++current;
+                left = new Arithmetic(position, left, operator, term());
+            }
+            return left;
+        }
+
+        private Node term() {
+            Node left = unary();
+            while (isSymbol("*") || isSymbol("/")) {
+                final int position = position();
+                final ElementWise.Operator operator = isSymbol("*") ? ElementWise.Operator.MULTIPLY : ElementWise.Operator.DIVIDE;
+                ++current;
+                left = new Arithmetic(position, left, operator, unary());
+            }
+            return left;
+        }
+
+        private Node unary() {
+            if (isSymbol("-") || isSymbol("+")) {
+                final int position = position();
+                final boolean negate = isSymbol("-");
+                ++current;
+                final Node operand = unary();
+                if (!negate) {
+                    return operand;
+                }
+                if (operand instanceof NumberLiteral) {
+                    return ((NumberLiteral) operand).negate();
+                }
+                return new Arithmetic(position, new NumberLiteral(position, "-1", true, -1, -1), ElementWise.Operator.MULTIPLY, operand);
+            }
+            final Node base = primary();
+            if (isSymbol("**")) {
+                final int position = position();
+                ++current;
+                return new Arithmetic(position, base, ElementWise.Operator.POWER, unary());
+            }
+            return base;
+        }
+
+        private Node primary() {
+            final int position = position();
+            switch (type()) {
+                case SYMBOL:
+                    if (isSymbol("(")) {
+                        ++current;
+                        final Node node = or();
+                        expect(")");
+                        return node;
+                    }
+                    throw error();
+                case NUMBER:
+                    final String text = text();
+                    ++current;
+                    if (DataType.LONG.matches(text)) {
+                        final long value = DataType.toLong(text);
+                        return new NumberLiteral(position, text, true, value, value);
+                    }
+                    if (!DataType.DOUBLE.matches(text)) {
+                        throw new StringParseException(query, position);
+                    }
+                    return new NumberLiteral(position, text, false, 0, DataType.toDouble(text));
+                case STRING:
+                    final String value = text();
+                    ++current;
+                    return new StringLiteral(position, value);
+                case WORD:
+                case QUOTED_WORD:
+                    final boolean quoted = type() == QUOTED_WORD;
+                    final String word = text();
+                    ++current;
+                    return new Word(position, word, quoted);
+                default:
+                    throw error();
+            }
+        }
+    }
+
+    /**
+     * A compiled condition, which produces a mask of the rows of a dataframe
+     */
+    abstract static class Mask {
+        /**
+         * The estimated cost of evaluating the condition for a row, relative to comparing a numeric column with a
+         * constant
+         */
+        final double cost;
+
+        Mask(double cost) {
+            this.cost = cost;
+        }
+
+        /**
+         * @param dataFrame the dataframe, which has the columns the condition was compiled against
+         * @param size      the number of rows
+         * @return the packed mask of the selected rows. Bits after the end may hold any value
+         */
+        abstract long[] evaluate(DataFrame dataFrame, int size);
+
+        /**
+         * Evaluate the condition for some of the rows. Conditions that can skip rows should override this
+         *
+         * @param dataFrame  the dataframe, which has the columns the condition was compiled against
+         * @param size       the number of rows
+         * @param candidates the packed mask of the rows to evaluate, or {@code null} to evaluate all the rows
+         * @return the packed mask of the selected rows. Bits of rows that are not candidates may hold any value
+         */
+        long[] evaluate(DataFrame dataFrame, int size, long[] candidates) {
+            return evaluate(dataFrame, size);
+        }
+
+        /**
+         * @param dataFrame the dataframe, which has the columns the condition was compiled against
+         * @return the estimated fraction of rows that are selected
+         */
+        double selectivity(DataFrame dataFrame) {
+            return 0.5;
+        }
+    }
+
+    /**
+     * The cost of comparing a numeric column with a constant
+     */
+    static final double NUMERIC_COST = 1;
+    /**
+     * The cost of reading a boolean column
+     */
+    static final double BOOLEAN_COST = 0.25;
+    /**
+     * The cost of comparing a string
+     */
+    static final double STRING_COST = 8;
+    /**
+     * The cost of matching a regular expression
+     */
+    static final double PATTERN_COST = 40;
+
+    /**
+     * A comparison of a numeric column with a constant
+     */
+    private static final class ColumnComparison extends Mask {
+        private final String name;
+        private final boolean isLong;
+        private final ElementWise.Comparison comparison;
+        private final long longValue;
+        private final double doubleValue;
+
+        ColumnComparison(String name, boolean isLong, ElementWise.Comparison comparison, long longValue, double doubleValue) {
+            super(NUMERIC_COST);
+            this.name = name;
+            this.isLong = isLong;
+            this.comparison = comparison;
+            this.longValue = longValue;
+            this.doubleValue = doubleValue;
+        }
+
+        @Override
+        long[] evaluate(DataFrame dataFrame, int size) {
+            return evaluate(dataFrame, size, null);
+        }
+
+        @Override
+        long[] evaluate(DataFrame dataFrame, int size, long[] candidates) {
+            final Series<?> series = dataFrame.get(name);
+            if (series.getType() != DataType.LONG) {
+                return Comparisons.compare(Aggregations.Doubles.of(series.asDouble()), comparison, doubleValue, candidates);
+            }
+            if (isLong) {
+                return Comparisons.compare(Aggregations.Longs.of(series.asLong()), comparison, longValue, candidates);
+            }
+            return Comparisons.compare(Aggregations.Longs.of(series.asLong()), comparison, doubleValue, candidates);
+        }
+
+        @Override
+        double selectivity(DataFrame dataFrame) {
+            return Planner.Statistics.of(dataFrame.get(name)).selectivity(comparison, doubleValue);
+        }
+    }
+
+    /**
+     * A test of the values of a string column
+     */
+    private static class StringTest extends Mask {
+        private final String name;
+        private final Predicate<String> test;
+        private final double selectivity;
+
+        StringTest(String name, Predicate<String> test, double cost, double selectivity) {
+            super(cost);
+            this.name = name;
+            this.test = test;
+            this.selectivity = selectivity;
+        }
+
+        @Override
+        long[] evaluate(DataFrame dataFrame, int size) {
+            return owned(dataFrame.get(name).asString().mapToBool(test));
+        }
+
+        @Override
+        long[] evaluate(DataFrame dataFrame, int size, long[] candidates) {
+            final StringSeries series = dataFrame.get(name).asString();
+            if (candidates == null || series instanceof SeriesImpl.OfCategoricalArray) {
+                return owned(series.mapToBool(test));
+            }
+            //only test the candidate rows
+            final long[] words = new long[Bits.words(size)];
+            for (int w = 0; w < words.length; ++w) {
+                long candidate = candidates[w];
+                while (candidate != 0) {
+                    final int i = (w << 6) + Long.numberOfTrailingZeros(candidate);
+                    candidate &= candidate - 1;
+                    if (i < size && test.test(series.get(i))) {
+                        Bits.set(words, i);
+                    }
+                }
+            }
+            return words;
+        }
+
+        @Override
+        double selectivity(DataFrame dataFrame) {
+            if (selectivity >= 0) {
+                return selectivity;
+            }
+            //the fraction of rows equal to one value
+            final int distinct = Planner.Statistics.of(dataFrame.get(name)).distinct;
+            return distinct > 0 ? (1. / distinct) : 0.1;
+        }
+    }
+
+    /**
+     * A compiled numeric value
+     */
+    abstract static class Value {
+        /**
+         * @param dataFrame the dataframe
+         * @return the value as an expression
+         */
+        abstract Expression.Node bind(DataFrame dataFrame);
+    }
+
+    /**
+     * Compiles the nodes of a parsed query against the types of the columns of a dataframe
+     */
+    private static final class Compiler {
+        private final String query;
+        private final Map<String, DataType> schema;
+        /**
+         * The slot of each column in a record, when compiling a test of records
+         */
+        private final Map<String, Integer> slots;
+
+        Compiler(final String query, final Map<String, DataType> schema) {
+            this(query, schema, null);
+        }
+
+        Compiler(final String query, final Map<String, DataType> schema, final Map<String, Integer> slots) {
+            this.query = query;
+            this.schema = schema;
+            this.slots = slots;
+        }
+
+        /**
+         * @param node the node
+         * @return the type of the node, or {@code null} if it is not a column or literal
+         */
+        private DataType typeOf(final Node node) {
+            if (node instanceof Word) {
+                final Word word = (Word) node;
+                final DataType type = schema.get(word.text);
+                if (type != null) {
+                    return type;
+                }
+                if (word.quoted) {
+                    throw new StringParseException(query, node.position);
+                }
+                if (word.text.equalsIgnoreCase("true") || word.text.equalsIgnoreCase("false")) {
+                    return DataType.BOOLEAN;
+                }
+                if (DataType.DOUBLE.matches(word.text)) {
+                    return DataType.DOUBLE;
+                }
+                throw new StringParseException(query, node.position);
+            }
+            if (node instanceof NumberLiteral) {
+                return ((NumberLiteral) node).isLong ? DataType.LONG : DataType.DOUBLE;
+            }
+            if (node instanceof StringLiteral) {
+                return DataType.STRING;
+            }
+            if (node instanceof Arithmetic) {
+                return DataType.DOUBLE;
+            }
+            return null;
+        }
+
+        private boolean isColumn(final Node node) {
+            return node instanceof Word && schema.containsKey(((Word) node).text);
+        }
+
+        private IllegalArgumentException typeError(final Node node) {
+            return new IllegalArgumentException(String.format("Invalid types at position %d of query \"%s\"", node.position, query));
+        }
+
+        Mask mask(final Node node) {
+            return mask(node, false);
+        }
+
+        /**
+         * @param node   the node
+         * @param negate whether to compile the negation of the node. The negation is applied to the comparisons in
+         *               the node, so that missing values are not selected by them either
+         * @return the compiled node
+         */
+        private Mask mask(final Node node, final boolean negate) {
+            if (node instanceof Conjunction) {
+                final Conjunction conjunction = (Conjunction) node;
+                final Mask[] masks = new Mask[conjunction.operands.size()];
+                for (int i = 0; i < masks.length; ++i) {
+                    masks[i] = mask(conjunction.operands.get(i), negate);
+                }
+                if (!negate) {
+                    return new Planner.Conjunction(masks, conjunction.texts.toArray(new String[0]));
+                }
+                Mask mask = masks[0];
+                for (int i = 1; i < masks.length; ++i) {
+                    mask = or(mask, masks[i]);
+                }
+                return mask;
+            }
+            if (node instanceof Disjunction) {
+                final Disjunction disjunction = (Disjunction) node;
+                final Mask left = mask(disjunction.left, negate), right = mask(disjunction.right, negate);
+                return negate ? new Planner.Conjunction(new Mask[]{left, right}, null) : or(left, right);
+            }
+            if (node instanceof Not) {
+                return mask(((Not) node).operand, !negate);
+            }
+            if (node instanceof Comparison) {
+                final Comparison comparison = (Comparison) node;
+                return compare(comparison.left, negate ? negate(comparison.comparison) : comparison.comparison, comparison.right);
+            }
+            if (node instanceof In) {
+                return in((In) node, negate);
+            }
+            if (node instanceof Between) {
+                final Between between = (Between) node;
+                if (negate) {
+                    return or(compare(between.operand, ElementWise.Comparison.LESS_THAN, between.lower), compare(between.operand, ElementWise.Comparison.GREATER_THAN, between.upper));
+                }
+                return new Planner.Conjunction(new Mask[]{
+                        compare(between.operand, ElementWise.Comparison.GREATER_THAN_OR_EQUAL, between.lower),
+                        compare(between.operand, ElementWise.Comparison.LESS_THAN_OR_EQUAL, between.upper)
+                }, between.texts);
+            }
+            if (node instanceof Matches) {
+                final Matches matches = (Matches) node;
+                if (!isColumn(matches.operand) || typeOf(matches.operand) != DataType.STRING) {
+                    throw typeError(matches.operand);
+                }
+                final Pattern pattern = Pattern.compile(matches.pattern);
+                return new StringTest(((Word) matches.operand).text, it -> it != null && pattern.matcher(it).matches() != negate, PATTERN_COST, negate ? 0.75 : 0.25);
+            }
+            if (typeOf(node) == DataType.BOOLEAN) {
+                if (isColumn(node)) {
+                    final String name = ((Word) node).text;
+                    return new Mask(BOOLEAN_COST) {
+                        @Override
+                        long[] evaluate(DataFrame dataFrame, int size) {
+                            final long[] words = copy(dataFrame.get(name).asBoolean());
+                            if (negate) {
+                                for (int i = 0; i < words.length; ++i) {
+                                    words[i] = ~words[i];
+                                }
+                            }
+                            return words;
+                        }
+                    };
+                }
+                final boolean value = DataType.toBoolean(((Word) node).text.toLowerCase()) != negate;
+                return new Mask(0) {
+                    @Override
+                    long[] evaluate(DataFrame dataFrame, int size) {
+                        final long[] words = new long[Bits.words(size)];
+                        if (value) {
+                            Arrays.fill(words, -1L);
+                        }
+                        return words;
+                    }
+
+                    @Override
+                    double selectivity(DataFrame dataFrame) {
+                        return value ? 1 : 0;
+                    }
+                };
+            }
+            throw typeError(node);
+        }
+
+        private Mask compare(Node left, ElementWise.Comparison comparison, Node right) {
+            if (!isColumn(left) && isColumn(right)) {
+                final Node tmp = left;
+                left = right;
+                right = tmp;
+                comparison = flip(comparison);
+            }
+            final DataType leftType = typeOf(left), rightType = typeOf(right);
+            if (leftType == DataType.STRING || leftType == DataType.BOOLEAN) {
+                if (!isColumn(left)) {
+                    throw typeError(left);
+                }
+                final String name = ((Word) left).text;
+                final IntPredicate test = test(comparison);
+                if (isColumn(right)) {
+                    if (rightType != leftType) {
+                        throw typeError(right);
+                    }
+                    final String other = ((Word) right).text;
+                    return new Mask(STRING_COST) {
+                        @Override
+                        long[] evaluate(DataFrame dataFrame, int size) {
+                            final Series<Comparable<Object>> a = dataFrame.get(name), b = dataFrame.get(other);
+                            final long[] words = new long[Bits.words(size)];
+                            for (int i = 0; i < size; ++i) {
+                                final Comparable<Object> x = a.get(i), y = b.get(i);
+                                if (x != null && y != null && test.test(x.compareTo(y))) {
+                                    Bits.set(words, i);
+                                }
+                            }
+                            return words;
+                        }
+                    };
+                }
+                if (leftType == DataType.STRING) {
+                    final String value = literal(right);
+                    final double selectivity = comparison == ElementWise.Comparison.EQUAL ? -1 : comparison == ElementWise.Comparison.NOT_EQUAL ? 0.9 : (1. / 3);
+                    return new StringTest(name, it -> it != null && test.test(it.compareTo(value)), STRING_COST, selectivity);
+                }
+                final Boolean value = rightType == DataType.BOOLEAN && right instanceof Word ? Boolean.valueOf(((Word) right).text.equalsIgnoreCase("true")) : DataType.toBoolean(literal(right));
+                return new Mask(BOOLEAN_COST) {
+                    @Override
+                    long[] evaluate(DataFrame dataFrame, int size) {
+                        return owned(dataFrame.get(name).asBoolean().mapToBool(it -> it != null && test.test(it.compareTo(value))));
+                    }
+                };
+            }
+            if (!isNumeric(leftType) || !isNumeric(rightType)) {
+                throw typeError(isNumeric(leftType) ? right : left);
+            }
+            final ElementWise.Comparison c = comparison;
+            if (isColumn(left) && isColumn(right) && leftType == DataType.LONG && rightType == DataType.LONG) {
+                final String name = ((Word) left).text, other = ((Word) right).text;
+                return new Mask(2 * NUMERIC_COST) {
+                    @Override
+                    long[] evaluate(DataFrame dataFrame, int size) {
+                        return owned(ElementWise.compare(name, Aggregations.Longs.of(dataFrame.get(name).asLong()), Aggregations.Longs.of(dataFrame.get(other).asLong()), c));
+                    }
+
+                    @Override
+                    double selectivity(DataFrame dataFrame) {
+                        return Planner.selectivity(c);
+                    }
+                };
+            }
+            if (isColumn(left) && !isColumn(right) && !(right instanceof Arithmetic)) {
+                //compare the backing array of the column with the constant directly
+                final boolean isLong = rightType == DataType.LONG;
+                return new ColumnComparison(((Word) left).text, isLong, c, isLong ? ((NumberLiteral) right).longValue : 0, doubleValue(right));
+            }
+            final Value a = value(left), b = value(right);
+            return new Mask(2 * NUMERIC_COST + nodes(left) + nodes(right)) {
+                @Override
+                long[] evaluate(DataFrame dataFrame, int size) {
+                    return evaluate(dataFrame, size, null);
+                }
+
+                @Override
+                long[] evaluate(DataFrame dataFrame, int size, long[] candidates) {
+                    return Expression.compare(a.bind(dataFrame), c, b.bind(dataFrame), size, candidates);
+                }
+
+                @Override
+                double selectivity(DataFrame dataFrame) {
+                    return Planner.selectivity(c);
+                }
+            };
+        }
+
+        /**
+         * @param node the node
+         * @return the number of arithmetic operators in the node
+         */
+        private int nodes(final Node node) {
+            return node instanceof Arithmetic ? 1 + nodes(((Arithmetic) node).left) + nodes(((Arithmetic) node).right) : 0;
+        }
+
+        private Mask in(final In in, final boolean negate) {
+            final Node operand = in.operand;
+            final DataType type = typeOf(operand);
+            if (type == DataType.STRING || type == DataType.BOOLEAN) {
+                if (!isColumn(operand)) {
+                    throw typeError(operand);
+                }
+                final String name = ((Word) operand).text;
+                final Set<Object> values = new HashSet<>();
+                for (final Node value : in.values) {
+                    values.add(type == DataType.STRING ? literal(value) : (Object) DataType.toBoolean(literal(value).toLowerCase()));
+                }
+                if (type == DataType.STRING) {
+                    return new StringTest(name, it -> it != null && values.contains(it) != negate, STRING_COST, -1) {
+                        @Override
+                        double selectivity(DataFrame dataFrame) {
+                            final double selectivity = Math.min(1, values.size() * super.selectivity(dataFrame));
+                            return negate ? 1 - selectivity : selectivity;
+                        }
+                    };
+                }
+                return new Mask(BOOLEAN_COST) {
+                    @Override
+                    long[] evaluate(DataFrame dataFrame, int size) {
+                        return owned(dataFrame.get(name).asBoolean().mapToBool(it -> it != null && values.contains(it) != negate));
+                    }
+                };
+            }
+            if (!isNumeric(type)) {
+                throw typeError(operand);
+            }
+            final double[] values = numbers(in);
+            final long[] longs = longs(in);
+            final boolean allLongs = type == DataType.LONG && isColumn(operand) && longs != null;
+            final double cost = 2 * NUMERIC_COST + nodes(operand);
+            final double equal = Math.min(1, values.length * Planner.selectivity(ElementWise.Comparison.EQUAL));
+            final double selectivity = negate ? 1 - equal : equal;
+            if (allLongs) {
+                final String name = ((Word) operand).text;
+                return new Mask(cost) {
+                    @Override
+                    long[] evaluate(DataFrame dataFrame, int size) {
+                        return owned(ElementWise.mapToBool(dataFrame.get(name).asLong(), v -> (Arrays.binarySearch(longs, v) >= 0) != negate));
+                    }
+
+                    @Override
+                    double selectivity(DataFrame dataFrame) {
+                        return selectivity;
+                    }
+                };
+            }
+            final Value value = value(operand);
+            return new Mask(cost) {
+                @Override
+                long[] evaluate(DataFrame dataFrame, int size) {
+                    return owned(ElementWise.mapToBool(new SeriesImpl.OfExpression(null, value.bind(dataFrame)), v -> v == v && (Arrays.binarySearch(values, v) >= 0) != negate));
+                }
+
+                @Override
+                double selectivity(DataFrame dataFrame) {
+                    return selectivity;
+                }
+            };
+        }
+
+        /**
+         * @param in the node
+         * @return the sorted values of the list
+         */
+        private double[] numbers(final In in) {
+            final double[] values = new double[in.values.size()];
+            for (int i = 0; i < values.length; ++i) {
+                final Node value = in.values.get(i);
+                if (!isNumeric(typeOf(value)) || isColumn(value)) {
+                    throw typeError(value);
+                }
+                values[i] = doubleValue(value);
+            }
+            Arrays.sort(values);
+            return values;
+        }
+
+        /**
+         * @param in the node
+         * @return the sorted values of the list, or {@code null} if they are not all integers
+         */
+        private long[] longs(final In in) {
+            final long[] longs = new long[in.values.size()];
+            for (int i = 0; i < longs.length; ++i) {
+                final Node value = in.values.get(i);
+                if (!(value instanceof NumberLiteral) || !((NumberLiteral) value).isLong) {
+                    return null;
+                }
+                longs[i] = ((NumberLiteral) value).longValue;
+            }
+            Arrays.sort(longs);
+            return longs;
+        }
+
+        private Value value(final Node node) {
+            if (node instanceof Arithmetic) {
+                final Arithmetic arithmetic = (Arithmetic) node;
+                final Value left = value(arithmetic.left), right = value(arithmetic.right);
+                return new Value() {
+                    @Override
+                    Expression.Node bind(DataFrame dataFrame) {
+                        return new Expression.Binary(left.bind(dataFrame), arithmetic.operator, right.bind(dataFrame));
+                    }
+                };
+            }
+            final DataType type = typeOf(node);
+            if (!isNumeric(type)) {
+                throw typeError(node);
+            }
+            if (isColumn(node)) {
+                final String name = ((Word) node).text;
+                return new Value() {
+                    @Override
+                    Expression.Node bind(DataFrame dataFrame) {
+                        final Series<?> series = dataFrame.get(name);
+                        return type == DataType.LONG ? Expression.of(series.asLong()) : Expression.of(series.asDouble());
+                    }
+                };
+            }
+            final Expression.Node constant = Expression.of(doubleValue(node));
+            return new Value() {
+                @Override
+                Expression.Node bind(DataFrame dataFrame) {
+                    return constant;
+                }
+            };
+        }
+
+        private double doubleValue(final Node node) {
+            if (node instanceof NumberLiteral) {
+                return ((NumberLiteral) node).doubleValue;
+            }
+            return DataType.toDouble(((Word) node).text);
+        }
+
+        private String literal(final Node node) {
+            if (node instanceof StringLiteral) {
+                return ((StringLiteral) node).value;
+            }
+            if (node instanceof NumberLiteral) {
+                return ((NumberLiteral) node).text;
+            }
+            if (node instanceof Word && !isColumn(node)) {
+                return ((Word) node).text;
+            }
+            throw typeError(node);
+        }
+
+        /**
+         * @param node   the node
+         * @param negate whether to compile the negation of the node, which is applied to the comparisons in the node
+         *               as in {@link #mask(Node, boolean)}
+         * @return a test of the records of a file
+         */
+        Predicate<RowFilter.Record> filter(final Node node, final boolean negate) {
+            if (node instanceof Conjunction) {
+                final List<Node> operands = ((Conjunction) node).operands;
+                @SuppressWarnings("unchecked") final Predicate<RowFilter.Record>[] tests = (Predicate<RowFilter.Record>[]) new Predicate<?>[operands.size()];
+                for (int i = 0; i < tests.length; ++i) {
+                    tests[i] = filter(operands.get(i), negate);
+                }
+                return record -> {
+                    for (final Predicate<RowFilter.Record> test : tests) {
+                        if (test.test(record) == negate) {
+                            return negate;
+                        }
+                    }
+                    return !negate;
+                };
+            }
+            if (node instanceof Disjunction) {
+                final Disjunction disjunction = (Disjunction) node;
+                final Predicate<RowFilter.Record> left = filter(disjunction.left, negate), right = filter(disjunction.right, negate);
+                return negate ? left.and(right) : left.or(right);
+            }
+            if (node instanceof Not) {
+                return filter(((Not) node).operand, !negate);
+            }
+            if (node instanceof Comparison) {
+                final Comparison comparison = (Comparison) node;
+                return filter(comparison.left, negate ? negate(comparison.comparison) : comparison.comparison, comparison.right);
+            }
+            if (node instanceof In) {
+                return filter((In) node, negate);
+            }
+            if (node instanceof Between) {
+                final Between between = (Between) node;
+                if (negate) {
+                    return filter(between.operand, ElementWise.Comparison.LESS_THAN, between.lower).or(filter(between.operand, ElementWise.Comparison.GREATER_THAN, between.upper));
+                }
+                return filter(between.operand, ElementWise.Comparison.GREATER_THAN_OR_EQUAL, between.lower).and(filter(between.operand, ElementWise.Comparison.LESS_THAN_OR_EQUAL, between.upper));
+            }
+            if (node instanceof Matches) {
+                final Matches matches = (Matches) node;
+                if (!isColumn(matches.operand) || typeOf(matches.operand) != DataType.STRING) {
+                    throw typeError(matches.operand);
+                }
+                final int slot = slot(matches.operand);
+                final Pattern pattern = Pattern.compile(matches.pattern);
+                return record -> pattern.matcher(record.getString(slot)).matches() != negate;
+            }
+            if (typeOf(node) == DataType.BOOLEAN) {
+                if (isColumn(node)) {
+                    final int slot = slot(node);
+                    return record -> record.getBoolean(slot) != negate;
+                }
+                final boolean value = DataType.toBoolean(((Word) node).text.toLowerCase()) != negate;
+                return record -> value;
+            }
+            throw typeError(node);
+        }
+
+        private Predicate<RowFilter.Record> filter(Node left, ElementWise.Comparison comparison, Node right) {
+            if (!isColumn(left) && isColumn(right)) {
+                final Node tmp = left;
+                left = right;
+                right = tmp;
+                comparison = flip(comparison);
+            }
+            final DataType leftType = typeOf(left), rightType = typeOf(right);
+            final IntPredicate test = test(comparison);
+            if (leftType == DataType.STRING || leftType == DataType.BOOLEAN) {
+                if (!isColumn(left)) {
+                    throw typeError(left);
+                }
+                final int slot = slot(left);
+                if (isColumn(right)) {
+                    if (rightType != leftType) {
+                        throw typeError(right);
+                    }
+                    final int other = slot(right);
+                    if (leftType == DataType.STRING) {
+                        return record -> test.test(record.getString(slot).compareTo(record.getString(other)));
+                    }
+                    return record -> test.test(Boolean.compare(record.getBoolean(slot), record.getBoolean(other)));
+                }
+                if (leftType == DataType.STRING) {
+                    final String value = literal(right);
+                    return record -> test.test(record.getString(slot).compareTo(value));
+                }
+                final boolean value = rightType == DataType.BOOLEAN && right instanceof Word ? ((Word) right).text.equalsIgnoreCase("true") : DataType.toBoolean(literal(right));
+                return record -> test.test(Boolean.compare(record.getBoolean(slot), value));
+            }
+            if (!isNumeric(leftType) || !isNumeric(rightType)) {
+                throw typeError(isNumeric(leftType) ? right : left);
+            }
+            if (isColumn(left) && isColumn(right) && leftType == DataType.LONG && rightType == DataType.LONG) {
+                final int slot = slot(left), other = slot(right);
+                return record -> record.isLong(slot) && record.isLong(other)
+                        ? test.test(Long.compare(record.getLong(slot), record.getLong(other)))
+                        : holds(record.getDouble(slot), test, record.getDouble(other));
+            }
+            if (isColumn(left) && leftType == DataType.LONG && rightType == DataType.LONG && right instanceof NumberLiteral) {
+                final int slot = slot(left);
+                final long longValue = ((NumberLiteral) right).longValue;
+                final double doubleValue = doubleValue(right);
+                return record -> record.isLong(slot)
+                        ? test.test(Long.compare(record.getLong(slot), longValue))
+                        : holds(record.getDouble(slot), test, doubleValue);
+            }
+            final ToDoubleFunction<RowFilter.Record> a = number(left), b = number(right);
+            return record -> holds(a.applyAsDouble(record), test, b.applyAsDouble(record));
+        }
+
+        private Predicate<RowFilter.Record> filter(final In in, final boolean negate) {
+            final Node operand = in.operand;
+            final DataType type = typeOf(operand);
+            if (type == DataType.STRING || type == DataType.BOOLEAN) {
+                if (!isColumn(operand)) {
+                    throw typeError(operand);
+                }
+                final int slot = slot(operand);
+                final Set<Object> values = new HashSet<>();
+                for (final Node value : in.values) {
+                    values.add(type == DataType.STRING ? literal(value) : (Object) DataType.toBoolean(literal(value).toLowerCase()));
+                }
+                if (type == DataType.STRING) {
+                    return record -> values.contains(record.getString(slot)) != negate;
+                }
+                return record -> values.contains(record.getBoolean(slot)) != negate;
+            }
+            if (!isNumeric(type)) {
+                throw typeError(operand);
+            }
+            final double[] values = numbers(in);
+            final long[] longs = longs(in);
+            final ToDoubleFunction<RowFilter.Record> value = number(operand);
+            final Predicate<RowFilter.Record> test = record -> {
+                final double v = value.applyAsDouble(record);
+                return v == v && (Arrays.binarySearch(values, v) >= 0) != negate;
+            };
+            if (type != DataType.LONG || !isColumn(operand) || longs == null) {
+                return test;
+            }
+            final int slot = slot(operand);
+            return record -> record.isLong(slot) ? (Arrays.binarySearch(longs, record.getLong(slot)) >= 0) != negate : test.test(record);
+        }
+
+        /**
+         * @param node a numeric node
+         * @return the value of the node in a record. Missing values are NaN
+         */
+        private ToDoubleFunction<RowFilter.Record> number(final Node node) {
+            if (node instanceof Arithmetic) {
+                final Arithmetic arithmetic = (Arithmetic) node;
+                final ToDoubleFunction<RowFilter.Record> left = number(arithmetic.left), right = number(arithmetic.right);
+                return record -> Expression.Binary.apply(arithmetic.operator, left.applyAsDouble(record), right.applyAsDouble(record));
+            }
+            if (!isNumeric(typeOf(node))) {
+                throw typeError(node);
+            }
+            if (isColumn(node)) {
+                final int slot = slot(node);
+                return record -> record.getDouble(slot);
+            }
+            final double value = doubleValue(node);
+            return record -> value;
+        }
+
+        private int slot(final Node node) {
+            return slots.get(((Word) node).text);
+        }
+    }
+
+    /**
+     * Compile a query into a test of the records of a file
+     *
+     * @param query  the query
+     * @param schema the type of each column used by the query
+     * @param slots  the slot of each column in a record
+     * @return the test of the records
+     * @throws StringParseException     if the query is not valid
+     * @throws IllegalArgumentException if the types in the query are not valid
+     */
+    static Predicate<RowFilter.Record> compile(final String query, final Map<String, DataType> schema, final Map<String, Integer> slots) {
+        return new Compiler(query, schema, slots).filter(parse(query), false);
+    }
+
+    /**
+     * @param node  the root of a parsed query
+     * @param names the names of the columns
+     * @return the names of the columns that are used by the query
+     */
+    static Set<String> columns(final Node node, final List<String> names) {
+        final Set<String> columns = new LinkedHashSet<>();
+        columns(node, names, columns);
+        return columns;
+    }
+
+    private static void columns(final Node node, final List<String> names, final Set<String> columns) {
+        if (node instanceof Word) {
+            if (names.contains(((Word) node).text)) {
+                columns.add(((Word) node).text);
+            }
+        } else if (node instanceof Arithmetic) {
+            columns(((Arithmetic) node).left, names, columns);
+            columns(((Arithmetic) node).right, names, columns);
+        } else if (node instanceof Comparison) {
+            columns(((Comparison) node).left, names, columns);
+            columns(((Comparison) node).right, names, columns);
+        } else if (node instanceof In) {
+            columns(((In) node).operand, names, columns);
+        } else if (node instanceof Between) {
+            columns(((Between) node).operand, names, columns);
+            columns(((Between) node).lower, names, columns);
+            columns(((Between) node).upper, names, columns);
+        } else if (node instanceof Matches) {
+            columns(((Matches) node).operand, names, columns);
+        } else if (node instanceof Conjunction) {
+            for (final Node operand : ((Conjunction) node).operands) {
+                columns(operand, names, columns);
+            }
+        } else if (node instanceof Disjunction) {
+            columns(((Disjunction) node).left, names, columns);
+            columns(((Disjunction) node).right, names, columns);
+        } else if (node instanceof Not) {
+            columns(((Not) node).operand, names, columns);
+        }
+    }
+
+    /**
+     * @param a          the first value
+     * @param comparison a test of the result of comparing the values
+     * @param b          the second value
+     * @return the result of the test, which is false if either value is NaN
+     */
+    private static boolean holds(double a, final IntPredicate comparison, double b) {
+        return a == a && b == b && comparison.test(a < b ? -1 : a > b ? 1 : 0);
+    }
+
+    private static boolean isNumeric(final DataType type) {
+        return type == DataType.LONG || type == DataType.DOUBLE;
+    }
+
+    /**
+     * @param comparison the comparison
+     * @return the comparison with its operands swapped
+     */
+    static ElementWise.Comparison flip(final ElementWise.Comparison comparison) {
+        switch (comparison) {
+            case LESS_THAN:
+                return ElementWise.Comparison.GREATER_THAN;
+            case LESS_THAN_OR_EQUAL:
+                return ElementWise.Comparison.GREATER_THAN_OR_EQUAL;
+            case GREATER_THAN:
+                return ElementWise.Comparison.LESS_THAN;
+            case GREATER_THAN_OR_EQUAL:
+                return ElementWise.Comparison.LESS_THAN_OR_EQUAL;
+            default:
+                return comparison;
+        }
+    }
+
+    /**
+     * @param comparison the comparison
+     * @return the comparison that holds when the comparison does not. Neither holds for missing values
+     */
+    static ElementWise.Comparison negate(final ElementWise.Comparison comparison) {
+        switch (comparison) {
+            case LESS_THAN:
+                return ElementWise.Comparison.GREATER_THAN_OR_EQUAL;
+            case LESS_THAN_OR_EQUAL:
+                return ElementWise.Comparison.GREATER_THAN;
+            case GREATER_THAN:
+                return ElementWise.Comparison.LESS_THAN_OR_EQUAL;
+            case GREATER_THAN_OR_EQUAL:
+                return ElementWise.Comparison.LESS_THAN;
+            case EQUAL:
+                return ElementWise.Comparison.NOT_EQUAL;
+            case NOT_EQUAL:
+                return ElementWise.Comparison.EQUAL;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @param comparison the comparison
+     * @return a test of the result of {@link Comparable#compareTo(Object)}
+     */
+    static IntPredicate test(final ElementWise.Comparison comparison) {
+        switch (comparison) {
+            case LESS_THAN:
+                return c -> c < 0;
+            case LESS_THAN_OR_EQUAL:
+                return c -> c <= 0;
+            case GREATER_THAN:
+                return c -> c > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return c -> c >= 0;
+            case EQUAL:
+                return c -> c == 0;
+            case NOT_EQUAL:
+                return c -> c != 0;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    static Mask or(final Mask left, final Mask right) {
+        return new Mask(left.cost + right.cost) {
+            @Override
+            long[] evaluate(DataFrame dataFrame, int size) {
+                return evaluate(dataFrame, size, null);
+            }
+
+            @Override
+            long[] evaluate(DataFrame dataFrame, int size, long[] candidates) {
+                final long[] words = left.evaluate(dataFrame, size, candidates);
+                final long[] other = right.evaluate(dataFrame, size, candidates);
+                for (int i = 0; i < words.length; ++i) {
+                    words[i] |= other[i];
+                }
+                return words;
+            }
+
+            @Override
+            double selectivity(DataFrame dataFrame) {
+                final double a = left.selectivity(dataFrame), b = right.selectivity(dataFrame);
+                return a + b - a * b;
+            }
+        };
+    }
+
+    /**
+     * @param series a series that is not shared
+     * @return the packed values of the series, which may be modified
+     */
+    static long[] owned(final BooleanSeries series) {
+        if (series instanceof SeriesImpl.OfBooleanArray) {
+            return ((SeriesImpl.OfBooleanArray) series).data;
+        }
+        return copy(series);
+    }
+
+    /**
+     * @param series the series
+     * @return a copy of the packed values of the series
+     */
+    static long[] copy(final BooleanSeries series) {
+        if (series instanceof SeriesImpl.OfBooleanArray) {
+            return Arrays.copyOf(((SeriesImpl.OfBooleanArray) series).data, Bits.words(series.size()));
+        }
+        final long[] words = new long[Bits.words(series.size())];
+        for (int i = 0; i < series.size(); ++i) {
+            if (series.getBoolean(i)) {
+                Bits.set(words, i);
+            }
+        }
+        return words;
+    }
+}
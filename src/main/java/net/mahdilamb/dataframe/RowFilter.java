@@ -0,0 +1,295 @@
+package net.mahdilamb.dataframe;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A filter on the records of a delimited file, which is evaluated on the fields of the filtered columns before the
+ * other fields of the record are converted.
+ * <p>
+ * Each condition is either a query, which is compiled from the same syntax tree as {@link DataFrame#query(String)}
+ * and follows the same rules, or a test on the value of one column. The fields of the filtered columns are converted
+ * as they would be stored in a column of their type, when a condition first reads them. A record is accepted if it
+ * matches all the conditions.
+ */
+final class RowFilter {
+    /**
+     * A condition on the records, which is created once the types of the columns are known
+     */
+    abstract static class Condition {
+        /**
+         * @param names the names of the fields in the file
+         * @return the names of the columns that the condition reads
+         * @throws IllegalArgumentException if a column could not be found
+         */
+        abstract Collection<String> columns(List<String> names);
+
+        /**
+         * @param slots the slot of each filtered column in a record
+         * @param types the type of each filtered column
+         * @return a test of the records
+         */
+        abstract Predicate<Record> create(Map<String, Integer> slots, Map<String, DataType> types);
+
+    }
+
+    /**
+     * @param query a query in the syntax of {@link DataFrame#query(String)}
+     * @return the condition of the query
+     * @throws net.mahdilamb.dataframe.utils.StringParseException if the query could not be parsed
+     */
+    static Condition query(final String query) {
+        final Query.Node root = Query.parse(query);
+        return new Condition() {
+            @Override
+            Collection<String> columns(List<String> names) {
+                return Query.columns(root, names);
+            }
+
+            @Override
+            Predicate<Record> create(Map<String, Integer> slots, Map<String, DataType> types) {
+                return Query.compile(query, types, slots);
+            }
+        };
+    }
+
+    /**
+     * @param column the name of the column
+     * @param test   the test on the values of the column, which must accept the type of the column
+     * @return the condition. Empty fields do not match
+     */
+    @SuppressWarnings("unchecked")
+    static Condition of(final String column, final Predicate<?> test) {
+        return new Condition() {
+            @Override
+            Collection<String> columns(List<String> names) {
+                if (!names.contains(column)) {
+                    throw new IllegalArgumentException("Could not find column " + column);
+                }
+                return Collections.singletonList(column);
+            }
+
+            @Override
+            Predicate<Record> create(Map<String, Integer> slots, Map<String, DataType> types) {
+                final int slot = slots.get(column);
+                final Predicate<CharSequence> field;
+                switch (types.get(column)) {
+                    case STRING:
+                        final Predicate<String> string = (Predicate<String>) test;
+                        field = it -> string.test(it.toString());
+                        break;
+                    case BOOLEAN:
+                        final Predicate<Boolean> bool = (Predicate<Boolean>) test;
+                        field = it -> bool.test(DataType.toBoolean(it.toString()));
+                        break;
+                    case LONG:
+                        final Predicate<Long> asLong = (Predicate<Long>) test;
+                        field = it -> isLong(it) && asLong.test(SeriesBuilder.parseLong(it));
+                        break;
+                    case DOUBLE:
+                        final Predicate<Double> dbl = (Predicate<Double>) test;
+                        field = it -> dbl.test(SeriesBuilder.parseDouble(it, Double.NaN));
+                        break;
+                    default:
+                        throw new UnsupportedOperationException();
+                }
+                return record -> {
+                    final CharSequence value = record.field(slot);
+                    return value.length() != 0 && field.test(value);
+                };
+            }
+        };
+    }
+
+    /**
+     * The fields of the filtered columns of the current record
+     */
+    static final class Record {
+        /**
+         * The index of the column of each slot within the columns that are read
+         */
+        private final int[] positions;
+        private final DataType[] types;
+        private final double[] doubles;
+        private final long[] longs;
+        private final boolean[] isLong;
+        private final String[] strings;
+        /**
+         * The record in which each slot was last converted
+         */
+        private final int[] converted;
+        private int id = 1;
+        private DelimitedTokenizer tokenizer;
+        private int[] columns;
+        private String[] fields;
+
+        Record(final int[] positions, final DataType[] types) {
+            this.positions = positions;
+            this.types = types;
+            this.doubles = new double[positions.length];
+            this.longs = new long[positions.length];
+            this.isLong = new boolean[positions.length];
+            this.strings = new String[positions.length];
+            this.converted = new int[positions.length];
+        }
+
+        /**
+         * @param slot the slot
+         * @return the unconverted field
+         */
+        CharSequence field(int slot) {
+            return tokenizer != null ? tokenizer.get(columns[positions[slot]]) : fields[positions[slot]];
+        }
+
+        /**
+         * @param slot the slot of a numeric column
+         * @return the value as a double. Missing values are NaN
+         */
+        double getDouble(int slot) {
+            convert(slot);
+            return doubles[slot];
+        }
+
+        /**
+         * @param slot the slot of a numeric column
+         * @return whether the value was written as a long. Missing values are not
+         */
+        boolean isLong(int slot) {
+            convert(slot);
+            return isLong[slot];
+        }
+
+        /**
+         * @param slot the slot of a long column
+         * @return the value, if it was written as a long
+         */
+        long getLong(int slot) {
+            convert(slot);
+            return longs[slot];
+        }
+
+        /**
+         * @param slot the slot of a string column
+         * @return the value
+         */
+        String getString(int slot) {
+            convert(slot);
+            return strings[slot];
+        }
+
+        /**
+         * @param slot the slot of a boolean column
+         * @return the value. Only fields that are case-insensitively "true" are true
+         */
+        boolean getBoolean(int slot) {
+            convert(slot);
+            return isLong[slot];
+        }
+
+        private void convert(int slot) {
+            if (converted[slot] == id) {
+                return;
+            }
+            converted[slot] = id;
+            final CharSequence field = field(slot);
+            switch (types[slot]) {
+                case LONG:
+                    isLong[slot] = field.length() != 0 && RowFilter.isLong(field);
+                    if (isLong[slot]) {
+                        longs[slot] = SeriesBuilder.parseLong(field);
+                        doubles[slot] = longs[slot];
+                    } else {
+                        doubles[slot] = field.length() == 0 ? Double.NaN : SeriesBuilder.parseDouble(field, Double.NaN);
+                    }
+                    break;
+                case DOUBLE:
+                    doubles[slot] = field.length() == 0 ? Double.NaN : SeriesBuilder.parseDouble(field, Double.NaN);
+                    break;
+                case BOOLEAN:
+                    isLong[slot] = DataType.toBoolean(field.toString());
+                    break;
+                case STRING:
+                    strings[slot] = field.toString();
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        private void next() {
+            if (++id == 0) {
+                Arrays.fill(converted, 0);
+                id = 1;
+            }
+        }
+    }
+
+    private final Record record;
+    private final Predicate<Record>[] tests;
+
+    /**
+     * Create a filter from conditions
+     *
+     * @param conditions the conditions
+     * @param names      the names of the filtered columns
+     * @param positions  the index of each filtered column within the columns that are read
+     * @param types      the types of the columns that are read
+     */
+    @SuppressWarnings("unchecked")
+    RowFilter(final List<Condition> conditions, final String[] names, final int[] positions, final DataType[] types) {
+        final Map<String, Integer> slots = new HashMap<>(names.length);
+        final Map<String, DataType> schema = new HashMap<>(names.length);
+        final DataType[] slotTypes = new DataType[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            slots.put(names[i], i);
+            slotTypes[i] = types[positions[i]];
+            schema.put(names[i], slotTypes[i]);
+        }
+        this.record = new Record(positions, slotTypes);
+        this.tests = (Predicate<Record>[]) new Predicate<?>[conditions.size()];
+        for (int i = 0; i < tests.length; ++i) {
+            tests[i] = conditions.get(i).create(slots, schema);
+        }
+    }
+
+    /**
+     * @param tokenizer the tokenizer positioned at a record
+     * @param columns   the index in the file of each column that is read
+     * @return whether the current record of the tokenizer is accepted
+     */
+    boolean test(final DelimitedTokenizer tokenizer, final int[] columns) {
+        record.next();
+        record.tokenizer = tokenizer;
+        record.columns = columns;
+        return test();
+    }
+
+    /**
+     * @param fields the fields of the columns that are read
+     * @return whether the record is accepted
+     */
+    boolean test(final String[] fields) {
+        record.next();
+        record.tokenizer = null;
+        record.fields = fields;
+        return test();
+    }
+
+    private boolean test() {
+        for (final Predicate<Record> test : tests) {
+            if (!test.test(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLong(final CharSequence value) {
+        return (DataType.classify(value, 0, value.length()) & DataType.LONG.mask()) != 0;
+    }
+}
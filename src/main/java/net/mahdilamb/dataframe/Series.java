@@ -81,14 +81,61 @@ public interface Series<T> extends Iterable<T> {
     }
 
     /**
-     * @return the counts of each of the elements in the series
+     * @return the counts of each of the elements in the series, in the order that they first appear
      */
-    DataFrame valueCounts();
+    default DataFrame valueCounts() {
+        return valueCounts(false, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param k the number of elements
+     * @return the counts of the {@code k} most common elements in the series, excluding missing values
+     */
+    default DataFrame valueCounts(int k) {
+        return valueCounts(true, true, k);
+    }
+
+    /**
+     * Count each of the distinct elements in the series
+     *
+     * @param sort        whether to order the elements by descending count. Elements with the same count, or all
+     *                    elements if not sorted, are in the order that they first appear
+     * @param dropMissing whether to exclude missing values (NaN or null). Otherwise, they are counted as one element
+     * @param limit       the maximum number of elements to keep
+     * @return a dataframe of each element and its count
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    DataFrame valueCounts(boolean sort, boolean dropMissing, int limit);
 
     /**
-     * @return the frequency of each of the elements in the series
+     * @return the frequency of each of the elements in the series, in the order that they first appear
+     */
+    default DataFrame frequencies() {
+        return frequencies(false, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param k the number of elements
+     * @return the frequencies of the {@code k} most common elements in the series, excluding missing values
+     */
+    default DataFrame frequencies(int k) {
+        return frequencies(true, true, k);
+    }
+
+    /**
+     * Calculate the frequency of each of the distinct elements in the series. The frequency is the count of the element
+     * divided by the number of elements that are counted
+     *
+     * @param sort        whether to order the elements by descending frequency. Elements with the same frequency, or
+     *                    all elements if not sorted, are in the order that they first appear
+     * @param dropMissing whether to exclude missing values (NaN or null), including from the total. Otherwise, they
+     *                    are counted as one element
+     * @param limit       the maximum number of elements to keep. The frequencies are of all the elements that are
+     *                    counted, not just those that are kept
+     * @return a dataframe of each element and its frequency
+     * @throws IllegalArgumentException if the limit is negative
      */
-    DataFrame frequencies();
+    DataFrame frequencies(boolean sort, boolean dropMissing, int limit);
 
     /**
      * Create a string series from an array of strings
@@ -0,0 +1,825 @@
+package net.mahdilamb.dataframe;
+
+import net.mahdilamb.dataframe.utils.NumberParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable, typed buffers used to collect the values of a column while a text file is being read.
+ * <p>
+ * A builder starts as the type that was inferred (or set) for the column. Unless the type has been fixed, a builder
+ * will promote itself to a wider type when it receives a value that does not fit ({@code LONG -> DOUBLE -> STRING}
+ * and {@code BOOLEAN -> STRING}). Promotion returns a new builder, so callers should always keep the builder returned
+ * by {@link #add(CharSequence)}. While a builder may still be promoted, it also keeps the text of each value, so that a
+ * column that is promoted to a string has the same text as the file (e.g. leading zeros are retained).
+ */
+abstract class SeriesBuilder {
+    /**
+     * The default initial capacity of a builder
+     */
+    static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Whether the type of this builder may not be promoted
+     */
+    final boolean fixed;
+    /**
+     * The number of values in the builder
+     */
+    int size;
+    /**
+     * The text of each value, or {@code null} if the builder stores strings or may not be promoted
+     */
+    Text text;
+
+    SeriesBuilder(boolean fixed) {
+        this.fixed = fixed;
+    }
+
+    /**
+     * Keep the text of a value that has been added, if the builder may be promoted
+     *
+     * @param value the value
+     */
+    final void record(CharSequence value) {
+        if (text != null) {
+            text.add(value);
+        }
+    }
+
+    /**
+     * Append the text of the values of another builder, if both builders keep the text of their values
+     *
+     * @param other the other builder
+     */
+    final void recordAll(SeriesBuilder other) {
+        if (text != null) {
+            if (other.text == null) {
+                text = null;
+            } else {
+                text.addAll(other.text);
+            }
+        }
+    }
+
+    /**
+     * Create a builder for a data type
+     *
+     * @param type     the initial type of the builder
+     * @param fixed    whether the builder should keep its type, even if a value does not fit
+     * @param capacity the initial capacity
+     * @return a builder of the given type
+     */
+    static SeriesBuilder of(DataType type, boolean fixed, int capacity) {
+        switch (type) {
+            case LONG:
+                return new OfLong(fixed, capacity);
+            case DOUBLE:
+                return new OfDouble(fixed, capacity);
+            case BOOLEAN:
+                return new OfBoolean(fixed, capacity);
+            case STRING:
+                return new OfString(fixed, capacity);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @return the current type of the builder
+     */
+    abstract DataType getType();
+
+    /**
+     * Add a value to the builder. An empty value is stored as the null value of the type.
+     *
+     * @param value the value to add. Numbers and booleans are read directly from the sequence, which is only
+     *              converted to a string if it is stored in a string builder
+     * @return the builder that holds the column. This will be a different builder if the column has been promoted
+     */
+    abstract SeriesBuilder add(CharSequence value);
+
+    /**
+     * Convert this builder to a wider type
+     *
+     * @param type the type to convert to
+     * @return this builder if it is already of the type, otherwise a new builder containing the same values
+     * @throws IllegalArgumentException if this builder cannot be promoted to the type
+     * @see #widest(DataType, DataType)
+     */
+    abstract SeriesBuilder promote(DataType type);
+
+    /**
+     * Append the values of another builder of the same type to this builder
+     *
+     * @param other the other builder
+     */
+    abstract void addAll(SeriesBuilder other);
+
+    /**
+     * Create the series from the values in this builder
+     *
+     * @param name the name of the series
+     * @return the series
+     */
+    abstract Series<?> build(String name);
+
+    /**
+     * Create a series that is backed by the arrays of this builder, without copying them. The series is only valid
+     * until the builder is next modified
+     *
+     * @param name the name of the series
+     * @return the series
+     */
+    abstract Series<?> wrap(String name);
+
+    /**
+     * Remove all the values from the builder, keeping its arrays
+     */
+    void clear() {
+        size = 0;
+        if (text != null) {
+            text.clear();
+        }
+    }
+
+    /**
+     * @return the number of values in the builder
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * @param a a type
+     * @param b another type
+     * @return the narrowest type that both types can be promoted to
+     */
+    static DataType widest(DataType a, DataType b) {
+        if (a == b) {
+            return a;
+        }
+        if ((a == DataType.LONG && b == DataType.DOUBLE) || (a == DataType.DOUBLE && b == DataType.LONG)) {
+            return DataType.DOUBLE;
+        }
+        return DataType.STRING;
+    }
+
+    /**
+     * Concatenate builders, in order, into a single builder. Builders of different types are first promoted to
+     * their widest type
+     *
+     * @param builders the builders
+     * @return the concatenated builder
+     */
+    static SeriesBuilder concat(final SeriesBuilder... builders) {
+        DataType type = builders[0].getType();
+        int size = 0;
+        for (final SeriesBuilder builder : builders) {
+            type = widest(type, builder.getType());
+            size += builder.size;
+        }
+        final SeriesBuilder out = builders[0].promote(type);
+        out.ensureCapacity(size);
+        for (int i = 1; i < builders.length; ++i) {
+            out.addAll(builders[i].promote(type));
+        }
+        return out;
+    }
+
+    /**
+     * Ensure that the builder can hold a number of values without growing
+     *
+     * @param capacity the number of values
+     */
+    abstract void ensureCapacity(int capacity);
+
+    /**
+     * Parse a long, reading the bytes of the file directly if the value is a view of a field
+     *
+     * @param value the value
+     * @return the parsed value
+     * @throws NumberFormatException if the value is not a long
+     */
+    static long parseLong(final CharSequence value) {
+        if (value instanceof DelimitedTokenizer.Field) {
+            final DelimitedTokenizer.Field field = (DelimitedTokenizer.Field) value;
+            return NumberParser.parseLong(field.buffer, field.start, field.end);
+        }
+        return NumberParser.parseLong(value);
+    }
+
+    /**
+     * Parse a double, reading the bytes of the file directly if the value is a view of a field
+     *
+     * @param value        the value
+     * @param defaultValue the value to return if the value is not a double
+     * @return the parsed value
+     */
+    static double parseDouble(final CharSequence value, double defaultValue) {
+        if (value instanceof DelimitedTokenizer.Field) {
+            final DelimitedTokenizer.Field field = (DelimitedTokenizer.Field) value;
+            return NumberParser.parseDouble(field.buffer, field.start, field.end, defaultValue);
+        }
+        return NumberParser.parseDouble(value, 0, value.length(), defaultValue);
+    }
+
+    static IllegalArgumentException cannotPromote(DataType from, DataType to) {
+        return new IllegalArgumentException(String.format("Cannot convert %s to %s", from, to));
+    }
+
+    static int grow(int capacity) {
+        return capacity + Math.max(1, capacity >>> 1);
+    }
+
+    /**
+     * The text of the values of a builder. Values that are stored as numbers or booleans are ASCII, so their text is
+     * stored as bytes, end to end, rather than as strings
+     */
+    static final class Text {
+        byte[] bytes;
+        /**
+         * The end of the text of each value
+         */
+        int[] ends;
+        int size;
+
+        Text(int capacity) {
+            bytes = new byte[capacity << 2];
+            ends = new int[capacity];
+        }
+
+        /**
+         * @return the number of bytes in the text
+         */
+        private int length() {
+            return size == 0 ? 0 : ends[size - 1];
+        }
+
+        void add(final CharSequence value) {
+            final int start = length(), length = value.length();
+            if (start + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(start + length, grow(bytes.length)));
+            }
+            if (value instanceof DelimitedTokenizer.Field) {
+                final DelimitedTokenizer.Field field = (DelimitedTokenizer.Field) value;
+                System.arraycopy(field.buffer, field.start, bytes, start, length);
+            } else {
+                for (int i = 0; i < length; ++i) {
+                    bytes[start + i] = (byte) value.charAt(i);
+                }
+            }
+            if (size >= ends.length) {
+                ends = Arrays.copyOf(ends, grow(ends.length));
+            }
+            ends[size++] = start + length;
+        }
+
+        void addAll(final Text other) {
+            final int start = length(), length = other.length();
+            if (start + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, start + length);
+            }
+            System.arraycopy(other.bytes, 0, bytes, start, length);
+            if (size + other.size > ends.length) {
+                ends = Arrays.copyOf(ends, size + other.size);
+            }
+            for (int i = 0; i < other.size; ++i) {
+                ends[size + i] = start + other.ends[i];
+            }
+            size += other.size;
+        }
+
+        /**
+         * @param index the index
+         * @return the text of the value at the index
+         */
+        String get(int index) {
+            final int start = index == 0 ? 0 : ends[index - 1];
+            return new String(bytes, start, ends[index] - start, StandardCharsets.ISO_8859_1);
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * The flags of {@link DataType#classify(CharSequence, int, int)} for values that can be parsed as a double
+     */
+    static final int DOUBLE_MASK = DataType.DOUBLE.mask() | DataType.HEX_FLOATING_POINT;
+    /**
+     * A NaN with a payload, used to distinguish values that are not doubles from parsed NaNs
+     */
+    private static final double INVALID = Double.longBitsToDouble(0x7ff8000000000001L);
+
+    /**
+     * Builder of long series. Null values are tracked in a bitmap so that the series can report them as NaN
+     */
+    static final class OfLong extends SeriesBuilder {
+        long[] data;
+        /**
+         * The packed bits of the null values, or {@code null} if there are none. This may be shorter than the data
+         */
+        long[] nulls;
+
+        OfLong(boolean fixed, int capacity) {
+            super(fixed);
+            data = new long[capacity];
+            if (!fixed) {
+                text = new Text(capacity);
+            }
+        }
+
+        @Override
+        DataType getType() {
+            return DataType.LONG;
+        }
+
+        @Override
+        SeriesBuilder add(CharSequence value) {
+            if (size >= data.length) {
+                data = Arrays.copyOf(data, grow(data.length));
+            }
+            if (value.length() == 0) {
+                record(value);
+                return addNull();
+            }
+            try {
+                data[size] = parseLong(value);
+                ++size;
+                record(value);
+                return this;
+            } catch (NumberFormatException ignored) {
+                //not a long, or out of range
+            }
+            if (fixed) {
+                return addNull();
+            }
+            return ((DataType.classify(value, 0, value.length()) & DOUBLE_MASK) != 0 ? new OfDouble(this) : new OfString(this)).add(value);
+        }
+
+        private SeriesBuilder addNull() {
+            ensureNulls(size + 1);
+            data[size] = 0;
+            Bits.set(nulls, size++);
+            return this;
+        }
+
+        private void ensureNulls(int size) {
+            if (nulls == null) {
+                nulls = new long[Bits.words(Math.max(size, data.length))];
+            } else if (nulls.length < Bits.words(size)) {
+                nulls = Arrays.copyOf(nulls, Bits.words(Math.max(size, data.length)));
+            }
+        }
+
+        boolean isNull(int index) {
+            return nulls != null && Bits.get(nulls, index);
+        }
+
+        @Override
+        SeriesBuilder promote(DataType type) {
+            switch (type) {
+                case LONG:
+                    return this;
+                case DOUBLE:
+                    return new OfDouble(this);
+                case STRING:
+                    return new OfString(this);
+                default:
+                    throw cannotPromote(getType(), type);
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > data.length) {
+                data = Arrays.copyOf(data, capacity);
+            }
+        }
+
+        @Override
+        void addAll(SeriesBuilder other) {
+            final OfLong o = (OfLong) other;
+            ensureCapacity(size + o.size);
+            System.arraycopy(o.data, 0, data, size, o.size);
+            recordAll(o);
+            if (o.nulls != null) {
+                ensureNulls(size + o.size);
+                for (int i = 0; i < o.size; ++i) {
+                    if (o.isNull(i)) {
+                        Bits.set(nulls, size + i);
+                    }
+                }
+            }
+            size += o.size;
+        }
+
+        @Override
+        Series<?> build(String name) {
+            if (nulls == null) {
+                return new SeriesImpl.OfNonNaNLongArray(name, Arrays.copyOf(data, size));
+            }
+            return new SeriesImpl.OfLongArray(name, Arrays.copyOf(data, size), Arrays.copyOf(nulls, Bits.words(size)));
+        }
+
+        @Override
+        Series<?> wrap(String name) {
+            final SeriesImpl<Long> series;
+            if (nulls == null) {
+                series = new SeriesImpl.OfNonNaNLongArray(name, data);
+            } else {
+                ensureNulls(size);
+                series = new SeriesImpl.OfLongArray(name, data, nulls);
+            }
+            series.end = size;
+            return series;
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            nulls = null;
+        }
+    }
+
+    /**
+     * Builder of double series. Null values are stored as {@code NaN}
+     */
+    static final class OfDouble extends SeriesBuilder {
+        double[] data;
+
+        OfDouble(boolean fixed, int capacity) {
+            super(fixed);
+            data = new double[capacity];
+            if (!fixed) {
+                text = new Text(capacity);
+            }
+        }
+
+        OfDouble(OfLong source) {
+            super(false);
+            data = new double[source.data.length];
+            for (int i = 0; i < source.size; ++i) {
+                data[i] = source.isNull(i) ? Double.NaN : source.data[i];
+            }
+            size = source.size;
+            text = source.text;
+        }
+
+        @Override
+        DataType getType() {
+            return DataType.DOUBLE;
+        }
+
+        @Override
+        SeriesBuilder add(CharSequence value) {
+            if (size >= data.length) {
+                data = Arrays.copyOf(data, grow(data.length));
+            }
+            if (value.length() == 0) {
+                data[size++] = Double.NaN;
+                record(value);
+                return this;
+            }
+            final double parsed = parseDouble(value, INVALID);
+            if (Double.doubleToRawLongBits(parsed) == Double.doubleToRawLongBits(INVALID)) {
+                if (!fixed) {
+                    return new OfString(this).add(value);
+                }
+                data[size++] = Double.NaN;
+                return this;
+            }
+            data[size++] = parsed;
+            record(value);
+            return this;
+        }
+
+        @Override
+        SeriesBuilder promote(DataType type) {
+            switch (type) {
+                case DOUBLE:
+                    return this;
+                case STRING:
+                    return new OfString(this);
+                default:
+                    throw cannotPromote(getType(), type);
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > data.length) {
+                data = Arrays.copyOf(data, capacity);
+            }
+        }
+
+        @Override
+        void addAll(SeriesBuilder other) {
+            final OfDouble o = (OfDouble) other;
+            ensureCapacity(size + o.size);
+            System.arraycopy(o.data, 0, data, size, o.size);
+            recordAll(o);
+            size += o.size;
+        }
+
+        @Override
+        Series<?> build(String name) {
+            return new SeriesImpl.OfDoubleArray(name, Arrays.copyOf(data, size));
+        }
+
+        @Override
+        Series<?> wrap(String name) {
+            final SeriesImpl.OfDoubleArray series = new SeriesImpl.OfDoubleArray(name, data);
+            series.end = size;
+            return series;
+        }
+    }
+
+    /**
+     * Builder of boolean series. The values are packed into the bits of longs, and null values are stored as
+     * {@code false}
+     */
+    static final class OfBoolean extends SeriesBuilder {
+        long[] data;
+
+        OfBoolean(boolean fixed, int capacity) {
+            super(fixed);
+            data = new long[Bits.words(capacity)];
+            if (!fixed) {
+                text = new Text(capacity);
+            }
+        }
+
+        @Override
+        DataType getType() {
+            return DataType.BOOLEAN;
+        }
+
+        @Override
+        SeriesBuilder add(CharSequence value) {
+            if (size >= data.length << 6) {
+                data = Arrays.copyOf(data, grow(data.length));
+            }
+            if (value.length() != 0 && !fixed && (DataType.classify(value, 0, value.length()) & DataType.BOOLEAN.mask()) == 0) {
+                return new OfString(this).add(value);
+            }
+            Bits.put(data, size++, isTrue(value));
+            record(value);
+            return this;
+        }
+
+        boolean get(int index) {
+            return Bits.get(data, index);
+        }
+
+        /**
+         * @param value the value
+         * @return whether the value is case-insensitively "true"
+         * @see DataType#toBoolean(String)
+         */
+        private static boolean isTrue(final CharSequence value) {
+            return value.length() == 4
+                    && Character.toLowerCase(value.charAt(0)) == 't'
+                    && Character.toLowerCase(value.charAt(1)) == 'r'
+                    && Character.toLowerCase(value.charAt(2)) == 'u'
+                    && Character.toLowerCase(value.charAt(3)) == 'e';
+        }
+
+        @Override
+        SeriesBuilder promote(DataType type) {
+            switch (type) {
+                case BOOLEAN:
+                    return this;
+                case STRING:
+                    return new OfString(this);
+                default:
+                    throw cannotPromote(getType(), type);
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (Bits.words(capacity) > data.length) {
+                data = Arrays.copyOf(data, Bits.words(capacity));
+            }
+        }
+
+        @Override
+        void addAll(SeriesBuilder other) {
+            final OfBoolean o = (OfBoolean) other;
+            ensureCapacity(size + o.size);
+            for (int i = 0; i < o.size; ++i) {
+                Bits.put(data, size + i, o.get(i));
+            }
+            recordAll(o);
+            size += o.size;
+        }
+
+        @Override
+        Series<?> build(String name) {
+            return new SeriesImpl.OfBooleanArray(name, Arrays.copyOf(data, Bits.words(size)), size);
+        }
+
+        @Override
+        Series<?> wrap(String name) {
+            return new SeriesImpl.OfBooleanArray(name, data, size);
+        }
+    }
+
+    /**
+     * Builder of string series.
+     * <p>
+     * While the number of distinct values is low, the values are stored as codes into a dictionary, and the series
+     * is built as a categorical series if the values are repeated. Once there are more than {@link #MAX_CATEGORIES}
+     * distinct values, the values are stored as strings.
+     */
+    static final class OfString extends SeriesBuilder {
+        /**
+         * The maximum number of distinct values that are dictionary encoded
+         */
+        static final int MAX_CATEGORIES = 1 << 12;
+        /**
+         * The values, if not dictionary encoded
+         */
+        String[] data;
+        /**
+         * The codes of the values, if dictionary encoded
+         */
+        int[] codes;
+        StringDictionary dictionary;
+
+        OfString(boolean fixed, int capacity) {
+            super(fixed);
+            codes = new int[capacity];
+            dictionary = new StringDictionary(Math.min(capacity, MAX_CATEGORIES));
+        }
+
+        OfString(OfLong source) {
+            this(source.data.length);
+            for (int i = 0; i < source.size; ++i) {
+                data[i] = source.text != null ? source.text.get(i) : source.isNull(i) ? "" : DataType.toString(source.data[i]);
+            }
+            size = source.size;
+        }
+
+        OfString(OfDouble source) {
+            this(source.data.length);
+            for (int i = 0; i < source.size; ++i) {
+                data[i] = source.text != null ? source.text.get(i) : Double.isNaN(source.data[i]) ? "" : DataType.toString(source.data[i]);
+            }
+            size = source.size;
+        }
+
+        OfString(OfBoolean source) {
+            this(source.data.length << 6);
+            for (int i = 0; i < source.size; ++i) {
+                data[i] = source.text != null ? source.text.get(i) : DataType.toString(source.get(i));
+            }
+            size = source.size;
+        }
+
+        /**
+         * Create a builder that stores strings, as used when promoting numeric columns
+         *
+         * @param capacity the initial capacity
+         */
+        private OfString(int capacity) {
+            super(false);
+            data = new String[capacity];
+        }
+
+        @Override
+        DataType getType() {
+            return DataType.STRING;
+        }
+
+        @Override
+        SeriesBuilder add(CharSequence value) {
+            if (codes != null) {
+                if (size >= codes.length) {
+                    codes = Arrays.copyOf(codes, grow(codes.length));
+                }
+                final int code = dictionary.add(value);
+                if (code < MAX_CATEGORIES) {
+                    codes[size++] = code;
+                    return this;
+                }
+                decode();
+            }
+            if (size >= data.length) {
+                data = Arrays.copyOf(data, grow(data.length));
+            }
+            data[size++] = value.toString();
+            return this;
+        }
+
+        /**
+         * @param index the index
+         * @return the value at the index
+         */
+        String get(int index) {
+            return codes != null ? dictionary.get(codes[index]) : data[index];
+        }
+
+        /**
+         * Stop encoding the values
+         */
+        private void decode() {
+            data = new String[codes.length];
+            for (int i = 0; i < size; ++i) {
+                data[i] = dictionary.get(codes[i]);
+            }
+            codes = null;
+            dictionary = null;
+        }
+
+        @Override
+        SeriesBuilder promote(DataType type) {
+            if (type != DataType.STRING) {
+                throw cannotPromote(getType(), type);
+            }
+            return this;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (codes != null) {
+                if (capacity > codes.length) {
+                    codes = Arrays.copyOf(codes, capacity);
+                }
+            } else if (capacity > data.length) {
+                data = Arrays.copyOf(data, capacity);
+            }
+        }
+
+        @Override
+        void addAll(SeriesBuilder other) {
+            final OfString o = (OfString) other;
+            ensureCapacity(size + o.size);
+            if (codes != null && o.codes != null && dictionary.size() + o.dictionary.size() <= MAX_CATEGORIES) {
+                //map the codes of the other dictionary to this dictionary
+                final int[] map = new int[o.dictionary.size()];
+                for (int i = 0; i < map.length; ++i) {
+                    map[i] = dictionary.add(o.dictionary.get(i));
+                }
+                for (int i = 0; i < o.size; ++i) {
+                    codes[size + i] = map[o.codes[i]];
+                }
+            } else {
+                if (codes != null) {
+                    decode();
+                }
+                for (int i = 0; i < o.size; ++i) {
+                    data[size + i] = o.get(i);
+                }
+            }
+            size += o.size;
+        }
+
+        /**
+         * @return whether the series should be built as a categorical series
+         */
+        private boolean isCategorical() {
+            return codes != null && dictionary.size() <= size >>> 1;
+        }
+
+        @Override
+        Series<?> build(String name) {
+            if (isCategorical()) {
+                return new SeriesImpl.OfCategoricalArray(name, Arrays.copyOf(codes, size), dictionary.toArray());
+            }
+            final String[] values = new String[size];
+            for (int i = 0; i < size; ++i) {
+                values[i] = get(i);
+            }
+            return new SeriesImpl.OfStringArray(name, values);
+        }
+
+        /**
+         * Remove all the values and categories from the builder, so that each batch of values is encoded with its own
+         * dictionary
+         */
+        @Override
+        void clear() {
+            super.clear();
+            if (codes == null) {
+                codes = new int[data.length];
+                data = null;
+            }
+            dictionary = new StringDictionary(Math.min(codes.length, MAX_CATEGORIES));
+        }
+
+        @Override
+        Series<?> wrap(String name) {
+            if (codes != null && !isCategorical()) {
+                return build(name);
+            }
+            final SeriesImpl<String> series = codes != null ? new SeriesImpl.OfCategoricalArray(name, codes, dictionary.toArray()) : new SeriesImpl.OfStringArray(name, data);
+            series.end = size;
+            return series;
+        }
+    }
+}
@@ -5,8 +5,9 @@ import net.mahdilamb.dataframe.utils.IntroSort;
 import net.mahdilamb.dataframe.utils.IteratorUtils;
 import net.mahdilamb.dataframe.utils.StringUtils;
 
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
 import java.util.function.*;
 
 import static net.mahdilamb.dataframe.DataFrameImpl.COLUMN_SEPARATOR;
@@ -61,36 +62,154 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
     }
 
     /**
-     * Default implementation of a series backed by a boolean array
+     * Default implementation of a series backed by bits packed into an array of longs
      */
     static final class OfBooleanArray extends SeriesImpl<Boolean> implements BooleanSeries {
-        final boolean[] data;
+        /**
+         * The packed values. Bits after the end of the series may hold any value
+         */
+        final long[] data;
 
         OfBooleanArray(final String name, final boolean... data) {
             super(name);
-            this.data = data;
+            this.data = new long[Bits.words(data.length)];
             this.end = data.length;
+            for (int i = 0; i < data.length; ++i) {
+                if (data[i]) {
+                    Bits.set(this.data, i);
+                }
+            }
+        }
+
+        OfBooleanArray(final String name, final long[] data, int size) {
+            super(name);
+            this.data = data;
+            this.end = size;
         }
 
         @Override
         public boolean getBoolean(int index) {
-            return data[index];
+            return (data[index >>> 6] & (1L << index)) != 0;
         }
 
         <S> OfBooleanArray(Series<S> source, Predicate<S> converter) {
             super(source.getName());
 
-            data = new boolean[source.size()];
-            this.end = data.length;
+            data = new long[Bits.words(source.size())];
+            this.end = source.size();
 
             for (int i = 0; i < end; ++i) {
-                data[i] = converter.test(source.get(i));
+                if (converter.test(source.get(i))) {
+                    Bits.set(data, i);
+                }
             }
         }
 
+        /**
+         * @param index the index of the word
+         * @return the word, with the bits after the end of the series cleared
+         */
+        private long word(int index) {
+            return index == Bits.words(end) - 1 ? data[index] & Bits.tailMask(end) : data[index];
+        }
+
+        /**
+         * @param series the series
+         * @return the values of the series packed into words
+         */
+        private static long[] words(BooleanSeries series) {
+            if (series instanceof OfBooleanArray) {
+                return ((OfBooleanArray) series).data;
+            }
+            final long[] words = new long[Bits.words(series.size())];
+            for (int i = 0; i < series.size(); ++i) {
+                if (series.getBoolean(i)) {
+                    Bits.set(words, i);
+                }
+            }
+            return words;
+        }
+
+        /**
+         * Combine two series a word at a time
+         *
+         * @param a  the first series
+         * @param b  the second series
+         * @param op the operation on words of each series
+         * @return the combined series, named after the first
+         */
+        static OfBooleanArray combine(BooleanSeries a, BooleanSeries b, LongBinaryOperator op) {
+            if (a.size() != b.size()) {
+                throw new IllegalArgumentException("Series must be the same size");
+            }
+            final long[] lhs = words(a);
+            final long[] rhs = a == b ? lhs : words(b);
+            final long[] out = new long[Bits.words(a.size())];
+            for (int i = 0; i < out.length; ++i) {
+                out[i] = op.applyAsLong(lhs[i], rhs[i]);
+            }
+            return new OfBooleanArray(a.getName(), out, a.size());
+        }
+
+        @Override
+        public int countTrue() {
+            final int words = Bits.words(end);
+            int count = 0;
+            for (int i = 0; i < words; ++i) {
+                count += Long.bitCount(word(i));
+            }
+            return count;
+        }
+
+        @Override
+        public boolean any() {
+            final int words = Bits.words(end);
+            for (int i = 0; i < words; ++i) {
+                if (word(i) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean all() {
+            final int words = Bits.words(end);
+            for (int i = 0; i < words; ++i) {
+                if (word(i) != (i == words - 1 ? Bits.tailMask(end) : -1L)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int[] indices() {
+            final int[] indices = new int[countTrue()];
+            final int words = Bits.words(end);
+            for (int i = 0, j = 0; i < words; ++i) {
+                long word = word(i);
+                while (word != 0) {
+                    indices[j++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return indices;
+        }
+
         @Override
         void sortArgs(int[] args, int size, boolean ascending) {
-            IntroSort.argSort(args, data, ascending);
+            //partition the arguments, as there are only two values
+            final int[] second = new int[size];
+            int numFirst = 0, numSecond = 0;
+            for (int i = 0; i < size; ++i) {
+                if (getBoolean(args[i]) == ascending) {
+                    second[numSecond++] = args[i];
+                } else {
+                    args[numFirst++] = args[i];
+                }
+            }
+            System.arraycopy(second, 0, args, numFirst, numSecond);
         }
     }
 
@@ -127,6 +246,87 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
         }
     }
 
+    /**
+     * A string series that stores a code for each element, which is the index of its value in an array of the
+     * distinct values. Operations that test or count the values are evaluated once per distinct value
+     */
+    static final class OfCategoricalArray extends SeriesImpl<String> implements StringSeries {
+        final int[] codes;
+        final String[] categories;
+        private GroupBy<String> groups;
+
+        OfCategoricalArray(final String name, final int[] codes, final String[] categories) {
+            super(name);
+            this.codes = codes;
+            this.categories = categories;
+            this.end = codes.length;
+        }
+
+        @Override
+        public String get(int index) {
+            return categories[codes[index]];
+        }
+
+        /**
+         * @param test the test of each category
+         * @return a boolean series that is true for the elements in a category that passes the test
+         */
+        private BooleanSeries mapCodes(final Predicate<String> test) {
+            final boolean[] accepted = new boolean[categories.length];
+            for (int i = 0; i < categories.length; ++i) {
+                accepted[i] = test.test(categories[i]);
+            }
+            final long[] words = new long[Bits.words(size())];
+            for (int i = 0; i < size(); ++i) {
+                if (accepted[codes[i]]) {
+                    Bits.set(words, i);
+                }
+            }
+            return new OfBooleanArray(getName(), words, size());
+        }
+
+        @Override
+        public BooleanSeries mapToBool(Predicate<String> converter) {
+            return mapCodes(converter);
+        }
+
+        @Override
+        public BooleanSeries eq(String other) {
+            return mapCodes(el -> Objects.equals(other, el));
+        }
+
+        @Override
+        public GroupBy<String> groups() {
+            if (groups == null) {
+                groups = groupBy(this);
+            }
+            return groups;
+        }
+
+        @Override
+        void sortArgs(int[] args, int size, boolean ascending) {
+            //rank the categories, then counting sort the arguments by the rank of their category
+            final int[] order = range(0, categories.length);
+            IntroSort.argSort(order, categories, Comparator.nullsLast(Comparator.<String>naturalOrder()), ascending);
+            final int[] offsets = new int[categories.length + 1];
+            final int[] rank = new int[categories.length];
+            for (int i = 0; i < order.length; ++i) {
+                rank[order[i]] = i;
+            }
+            for (int i = 0; i < size; ++i) {
+                ++offsets[rank[codes[args[i]]] + 1];
+            }
+            for (int i = 0; i < categories.length; ++i) {
+                offsets[i + 1] += offsets[i];
+            }
+            final int[] sorted = new int[size];
+            for (int i = 0; i < size; ++i) {
+                sorted[offsets[rank[codes[args[i]]]]++] = args[i];
+            }
+            System.arraycopy(sorted, 0, args, 0, size);
+        }
+    }
+
     /**
      * Default implementation of a series backed by a string, which parses to double when required
      */
@@ -182,20 +382,36 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
     }
 
     /**
-     * A series backed by objects holding Long
+     * A series backed by an array of primitive longs, with the null values marked in a bitmap
      */
     static final class OfLongArray extends SeriesImpl<Long> implements LongSeries {
-        final Long[] data;
+        final long[] data;
+        /**
+         * The packed bits of the null values
+         */
+        final long[] nulls;
 
         /**
          * Create an abstract named series
          *
-         * @param name the name of the series
+         * @param name  the name of the series
+         * @param data  the values. The value of each null must be zero, as sums add the values without checking for
+         *              nulls, so any other value at a null is set to zero
+         * @param nulls the packed bits of the null values
          */
-        OfLongArray(String name, Long[] data) {
+        OfLongArray(String name, long[] data, long[] nulls) {
             super(name);
             this.data = data;
+            this.nulls = nulls;
             this.end = data.length;
+            for (int w = 0; w < nulls.length; ++w) {
+                for (long word = nulls[w]; word != 0; word &= word - 1) {
+                    final int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (i < data.length) {
+                        data[i] = 0;
+                    }
+                }
+            }
         }
 
         @Override
@@ -205,27 +421,57 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
 
         @Override
         public boolean isNaN(int index) {
-            return data[index] == null;
+            return Bits.get(nulls, index);
         }
 
         <S> OfLongArray(Series<S> source, ToLongFunction<S> converter, Predicate<S> notNanTest) {
             super(source.getName());
-            data = new Long[source.size()];
+            data = new long[source.size()];
+            nulls = new long[Bits.words(source.size())];
             this.end = source.size();
 
             for (int i = 0; i < source.size(); ++i) {
-                if (notNanTest.test(source.get(i))) {
-                    data[i] = converter.applyAsLong(source.get(i));
+                final S value = source.get(i);
+                if (notNanTest.test(value)) {
+                    data[i] = converter.applyAsLong(value);
+                } else {
+                    Bits.set(nulls, i);
+                }
+            }
+        }
+
+        OfLongArray(DoubleSeries source) {
+            super(source.getName());
+            data = new long[source.size()];
+            nulls = new long[Bits.words(source.size())];
+            this.end = source.size();
+            for (int i = 0; i < source.size(); ++i) {
+                final double value = source.getDouble(i);
+                if (Double.isNaN(value)) {
+                    Bits.set(nulls, i);
                 } else {
-                    data[i] = null;
+                    data[i] = DataType.toLong(value);
                 }
             }
         }
 
         @Override
         void sortArgs(int[] args, int size, boolean ascending) {
-            IntroSort.argSort(args, data, ascending);
-
+            //null values are placed after the other values, keeping their original order
+            final int[] values = new int[size];
+            final int[] missing = new int[size];
+            int numValues = 0, numMissing = 0;
+            for (int i = 0; i < size; ++i) {
+                if (isNaN(args[i])) {
+                    missing[numMissing++] = args[i];
+                } else {
+                    values[numValues++] = args[i];
+                }
+            }
+            final int[] sorted = numValues == size ? values : Arrays.copyOf(values, numValues);
+            IntroSort.argSort(sorted, data, ascending);
+            System.arraycopy(sorted, 0, args, 0, numValues);
+            System.arraycopy(missing, 0, args, numValues, numMissing);
         }
     }
 
@@ -278,7 +524,7 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
     /**
      * Default implementation of a series backed by a collection of objects
      */
-    static final class OfFunctionalDouble extends SeriesImpl<Double> implements DoubleSeries {
+    static class OfFunctionalDouble extends SeriesImpl<Double> implements DoubleSeries {
         private final IntToDoubleFunction dataGetter;
 
         OfFunctionalDouble(final String name, int size, IntToDoubleFunction dataGetter) {
@@ -299,6 +545,139 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
         }
     }
 
+    /**
+     * A series whose values are computed from an expression. Arithmetic on the series extends the expression, and the
+     * expression is evaluated when the series is compared, aggregated or converted to an array
+     */
+    static final class OfExpression extends OfFunctionalDouble {
+        final Expression.Node root;
+
+        OfExpression(final String name, final Expression.Node root) {
+            super(name, root.size, root::get);
+            this.root = root;
+        }
+
+        @Override
+        public double[] toArray(double[] output) {
+            return Expression.evaluate(root, output);
+        }
+
+        @Override
+        void sortArgs(int[] args, int size, boolean ascending) {
+            IntroSort.argSort(args, toArray(new double[size()]), ascending);
+        }
+
+        @Override
+        public DoubleSeries add(DoubleSeries other) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.ADD, Expression.of(other)));
+        }
+
+        @Override
+        public DoubleSeries add(double value) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.ADD, Expression.of(value)));
+        }
+
+        @Override
+        public DoubleSeries subtract(DoubleSeries other) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.SUBTRACT, Expression.of(other)));
+        }
+
+        @Override
+        public DoubleSeries subtract(double value) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.SUBTRACT, Expression.of(value)));
+        }
+
+        @Override
+        public DoubleSeries multiply(DoubleSeries other) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.MULTIPLY, Expression.of(other)));
+        }
+
+        @Override
+        public DoubleSeries multiply(double value) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.MULTIPLY, Expression.of(value)));
+        }
+
+        @Override
+        public DoubleSeries divide(DoubleSeries other) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.DIVIDE, Expression.of(other)));
+        }
+
+        @Override
+        public DoubleSeries divide(double value) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.DIVIDE, Expression.of(value)));
+        }
+
+        @Override
+        public DoubleSeries pow(DoubleSeries other) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.POWER, Expression.of(other)));
+        }
+
+        @Override
+        public DoubleSeries pow(double value) {
+            return new OfExpression(getName(), new Expression.Binary(root, ElementWise.Operator.POWER, Expression.of(value)));
+        }
+
+        @Override
+        public BooleanSeries lt(DoubleSeries other) {
+            return Expression.compare(getName(), root, Expression.of(other), ElementWise.Comparison.LESS_THAN);
+        }
+
+        @Override
+        public BooleanSeries lt(double value) {
+            return Expression.compare(getName(), root, Expression.of(value), ElementWise.Comparison.LESS_THAN);
+        }
+
+        @Override
+        public BooleanSeries le(DoubleSeries other) {
+            return Expression.compare(getName(), root, Expression.of(other), ElementWise.Comparison.LESS_THAN_OR_EQUAL);
+        }
+
+        @Override
+        public BooleanSeries le(double value) {
+            return Expression.compare(getName(), root, Expression.of(value), ElementWise.Comparison.LESS_THAN_OR_EQUAL);
+        }
+
+        @Override
+        public BooleanSeries gt(DoubleSeries other) {
+            return Expression.compare(getName(), root, Expression.of(other), ElementWise.Comparison.GREATER_THAN);
+        }
+
+        @Override
+        public BooleanSeries gt(double value) {
+            return Expression.compare(getName(), root, Expression.of(value), ElementWise.Comparison.GREATER_THAN);
+        }
+
+        @Override
+        public BooleanSeries ge(DoubleSeries other) {
+            return Expression.compare(getName(), root, Expression.of(other), ElementWise.Comparison.GREATER_THAN_OR_EQUAL);
+        }
+
+        @Override
+        public BooleanSeries ge(double value) {
+            return Expression.compare(getName(), root, Expression.of(value), ElementWise.Comparison.GREATER_THAN_OR_EQUAL);
+        }
+
+        @Override
+        public BooleanSeries eq(DoubleSeries other) {
+            return Expression.compare(getName(), root, Expression.of(other), ElementWise.Comparison.EQUAL);
+        }
+
+        @Override
+        public BooleanSeries eq(double value) {
+            return Expression.compare(getName(), root, Expression.of(value), ElementWise.Comparison.EQUAL);
+        }
+
+        @Override
+        public BooleanSeries ne(DoubleSeries other) {
+            return Expression.compare(getName(), root, Expression.of(other), ElementWise.Comparison.NOT_EQUAL);
+        }
+
+        @Override
+        public BooleanSeries ne(double value) {
+            return Expression.compare(getName(), root, Expression.of(value), ElementWise.Comparison.NOT_EQUAL);
+        }
+    }
+
     /**
      * Default implementation of a series backed by a string, which parses to boolean when accessed
      */
@@ -559,14 +938,8 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
 
     @Override
     public Series<T> filter(BooleanSeries filter) {
-        final int[] ids = new int[filter.size()];
-        int size = 0;
-        for (int i = 0; i < filter.size(); ++i) {
-            if (filter.get(i)) {
-                ids[size++] = i;
-            }
-        }
-        return new SeriesView<>(this, ids, size);
+        final int[] ids = filter.indices();
+        return new SeriesView<>(this, ids, ids.length);
     }
 
     @Override
@@ -626,7 +999,7 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
             case LONG:
                 return this.getClass() == SeriesImpl.SeriesView.class ? new SeriesImpl.LongSeriesView((SeriesImpl.SeriesView<Long>) this) : (LongSeries) this;
             case DOUBLE:
-                return new SeriesImpl.OfLongArray(this, el -> DataType.toLong((Double) el), v -> !Double.isNaN((Double) v));
+                return new SeriesImpl.OfLongArray(asDouble());
             case BOOLEAN:
                 return new SeriesImpl.OfNonNaNLongArray(this, el -> DataType.toLong((Boolean) el));
             case STRING:
@@ -654,42 +1027,101 @@ abstract class SeriesImpl<T extends Comparable<T>> implements Series<T>, SeriesW
     }
 
     @Override
-    public DataFrame frequencies() {
-        final Map<T, Double> map = new Hashtable<>();
-        for (int i = 0; i < size(); ++i) {
-            final Double key = map.get(get(i));
-            if (key == null) {
-                map.put(get(i), 1. / size());
-                continue;
-            }
-            map.put(get(i), key + (1. / size()));
-        }
-        return new DataFrameImpl.OfMap(String.format("Frequencies of %s", getName()), getName(), getType(), "frequencies", DataType.DOUBLE, map);
-
+    public DataFrame valueCounts(boolean sort, boolean dropMissing, int limit) {
+        return count(this, false, sort, dropMissing, limit);
     }
 
     @Override
-    public DataFrame valueCounts() {
-        final Map<T, Long> map = new Hashtable<>();
-        for (int i = 0; i < size(); ++i) {
-            final Long key = map.get(get(i));
-            if (key == null) {
-                map.put(get(i), 1L);
-                continue;
-            }
-            map.put(get(i), key + 1);
-        }
-        return new DataFrameImpl.OfMap(String.format("Counts of %s", getName()), getName(), getType(), "counts", DataType.LONG, map);
+    public DataFrame frequencies(boolean sort, boolean dropMissing, int limit) {
+        return count(this, true, sort, dropMissing, limit);
     }
 
     @Override
     public GroupBy<T> groups() {
         if (group == null) {
-            group = new GroupBy<>(this);
+            group = groupBy(this);
         }
         return group;
     }
 
+    /**
+     * Count the distinct values of a series. The values are grouped without boxing each value (dictionary-coded series
+     * are grouped by their codes), so the counts are exact integers, and frequencies are divided by the total once
+     *
+     * @param series      the series
+     * @param frequencies whether to return the frequencies, rather than the counts
+     * @param sort        whether to order the values by descending count
+     * @param dropMissing whether to exclude missing values
+     * @param limit       the maximum number of values to keep
+     * @return a dataframe of each value and its count or frequency
+     */
+    static DataFrame count(final Series<?> series, boolean frequencies, boolean sort, boolean dropMissing, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        final Grouping grouping = Grouping.of(new Series<?>[]{series}, false, 1);
+        final int[] counts = new int[grouping.numGroups];
+        for (final int group : grouping.groups) {
+            ++counts[group];
+        }
+        //the groups to keep. If sorted, the count is packed above the group, so that ties stay in order
+        final long[] order = new long[grouping.numGroups];
+        int numValues = 0;
+        long total = 0;
+        for (int g = 0; g < grouping.numGroups; ++g) {
+            if (dropMissing && isMissing(series, grouping.firstRows[g])) {
+                continue;
+            }
+            total += counts[g];
+            order[numValues++] = sort ? (((long) (Integer.MAX_VALUE - counts[g])) << 32) | g : g;
+        }
+        if (sort) {
+            Arrays.sort(order, 0, numValues);
+        }
+        numValues = Math.min(numValues, limit);
+        final int[] rows = new int[numValues];
+        final long[] c = new long[numValues];
+        for (int i = 0; i < numValues; ++i) {
+            final int g = (int) order[i];
+            rows[i] = grouping.firstRows[g];
+            c[i] = counts[g];
+        }
+        final Series<?> values = GroupedAggregations.take(series.getName(), series, rows);
+        if (!frequencies) {
+            return new DataFrameImpl.OfArray(String.format("Counts of %s", series.getName()), new Series<?>[]{values, new OfNonNaNLongArray("counts", c)});
+        }
+        final double[] f = new double[numValues];
+        for (int i = 0; i < numValues; ++i) {
+            f[i] = c[i] / (double) total;
+        }
+        return new DataFrameImpl.OfArray(String.format("Frequencies of %s", series.getName()), new Series<?>[]{values, new OfDoubleArray("frequencies", f)});
+    }
+
+    /**
+     * @param series the series
+     * @param row    the row
+     * @return whether the value at the row is null or NaN
+     */
+    private static boolean isMissing(final Series<?> series, int row) {
+        final Object value = series.get(row);
+        return value == null || (value instanceof Double && ((Double) value).isNaN());
+    }
+
+    /**
+     * @param series the series
+     * @param <T>    the type of the series
+     * @return the groups of the series, grouped without boxing each value
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Comparable<T>> GroupBy<T> groupBy(final Series<T> series) {
+        final Grouping grouping = Grouping.of(new Series<?>[]{series}, false, 1);
+        final T[] keys = (T[]) new Comparable<?>[grouping.numGroups];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = series.get(grouping.firstRows[i]);
+        }
+        return GroupBy.fromGroups(keys, grouping.offsets(), grouping.rows());
+    }
+
     /**
      * Given an array of indices, use the values in this series to sort them
      *
@@ -0,0 +1,130 @@
+package net.mahdilamb.dataframe;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A dictionary of strings which assigns each distinct string a code, in the order that they are added.
+ * <p>
+ * Fields of a delimited file are looked up by their encoded bytes, so that values that are already in the dictionary
+ * do not need to be decoded.
+ */
+final class StringDictionary {
+    private String[] categories;
+    private int size;
+    private final Map<String, Integer> codes = new HashMap<>();
+    /**
+     * Open-addressing table of the encoded bytes of the fields that have been added, holding the code plus one
+     */
+    private int[] table = new int[16];
+    private byte[][] keys = new byte[16][];
+    private int numKeys;
+
+    StringDictionary(int capacity) {
+        categories = new String[Math.max(1, capacity)];
+    }
+
+    /**
+     * @return the number of categories
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param code the code
+     * @return the category with the code
+     */
+    String get(int code) {
+        return categories[code];
+    }
+
+    /**
+     * @return a copy of the categories, indexed by their code
+     */
+    String[] toArray() {
+        return Arrays.copyOf(categories, size);
+    }
+
+    /**
+     * Get the code of a value, adding it to the dictionary if it is not present
+     *
+     * @param value the value
+     * @return the code of the value
+     */
+    int add(final CharSequence value) {
+        if (value instanceof DelimitedTokenizer.Field) {
+            return add((DelimitedTokenizer.Field) value);
+        }
+        return add(value.toString());
+    }
+
+    /**
+     * Get the code of a string, adding it to the dictionary if it is not present
+     *
+     * @param value the value
+     * @return the code of the value
+     */
+    int add(final String value) {
+        final Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == categories.length) {
+            categories = Arrays.copyOf(categories, SeriesBuilder.grow(size));
+        }
+        codes.put(value, size);
+        categories[size] = value;
+        return size++;
+    }
+
+    private int add(final DelimitedTokenizer.Field field) {
+        final byte[] buffer = field.buffer;
+        final int start = field.start, end = field.end;
+        final int mask = table.length - 1;
+        int slot = hash(buffer, start, end) & mask;
+        while (table[slot] != 0) {
+            final byte[] key = keys[slot];
+            if (Arrays.equals(key, 0, key.length, buffer, start, end)) {
+                return table[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int code = add(field.toString());
+        table[slot] = code + 1;
+        keys[slot] = Arrays.copyOfRange(buffer, start, end);
+        if (++numKeys * 2 > table.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    private void rehash() {
+        final int[] oldTable = table;
+        final byte[][] oldKeys = keys;
+        table = new int[oldTable.length << 1];
+        keys = new byte[table.length][];
+        final int mask = table.length - 1;
+        for (int i = 0; i < oldTable.length; ++i) {
+            if (oldTable[i] == 0) {
+                continue;
+            }
+            final byte[] key = oldKeys[i];
+            int slot = hash(key, 0, key.length) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = oldTable[i];
+            keys[slot] = key;
+        }
+    }
+
+    private static int hash(final byte[] bytes, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -4,8 +4,11 @@ import net.mahdilamb.dataframe.functions.BiDoublePredicate;
 import net.mahdilamb.dataframe.functions.BiIntConsumer;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.ToDoubleFunction;
 
@@ -25,7 +28,7 @@ public class GroupBy<T> implements Iterable<GroupBy.Group<T>> {
     public static final class Group<T> implements Iterable<Integer> {
         int id;
         final T key;
-        final IntArrayList indices = new IntArrayList();
+        final IntArrayList indices;
 
         @Override
         public String toString() {
@@ -38,7 +41,12 @@ public class GroupBy<T> implements Iterable<GroupBy.Group<T>> {
         }
 
         Group(T key) {
+            this(key, new IntArrayList());
+        }
+
+        Group(T key, IntArrayList indices) {
             this.key = key;
+            this.indices = indices;
         }
 
         /**
@@ -95,6 +103,7 @@ public class GroupBy<T> implements Iterable<GroupBy.Group<T>> {
 
 
     private final Map<T, Group<T>> groupTable;
+    private final List<Group<T>> groups = new ArrayList<>();
     int size = 0;
 
     /**
@@ -149,6 +158,55 @@ public class GroupBy<T> implements Iterable<GroupBy.Group<T>> {
         }
     }
 
+    /**
+     * Create a group by from dictionary encoded data. The groups are numbered in the order that their key first
+     * appears in the data
+     *
+     * @param keys  the distinct keys, indexed by their code
+     * @param codes the code of each element
+     * @param size  the number of elements
+     * @param <T>   the type of the keys
+     * @return the group by
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GroupBy<T> fromCodes(T[] keys, int[] codes, int size) {
+        final GroupBy<T> groupBy = new GroupBy<>(keys.length);
+        final Group<T>[] groups = (Group<T>[]) new Group<?>[keys.length];
+        for (int i = 0; i < size; ++i) {
+            Group<T> group = groups[codes[i]];
+            if (group == null) {
+                group = groups[codes[i]] = new Group<>(keys[codes[i]]);
+                group.id = groupBy.groupTable.size();
+                groupBy.groupTable.put(group.key, group);
+                groupBy.groups.add(group);
+            }
+            group.indices.add(i);
+        }
+        groupBy.size = size;
+        return groupBy;
+    }
+
+    /**
+     * Create a group by from groups whose indices are laid out contiguously
+     *
+     * @param keys    the key of each group
+     * @param offsets the offset of the first index of each group, followed by the number of indices
+     * @param indices the indices of all the groups, ordered by group
+     * @param <T>     the type of the keys
+     * @return the group by
+     */
+    public static <T> GroupBy<T> fromGroups(T[] keys, int[] offsets, int[] indices) {
+        final GroupBy<T> groupBy = new GroupBy<>(keys.length);
+        for (int i = 0; i < keys.length; ++i) {
+            final Group<T> group = new Group<>(keys[i], new IntArrayList(Arrays.copyOfRange(indices, offsets[i], offsets[i + 1])));
+            group.id = i;
+            groupBy.groupTable.put(group.key, group);
+            groupBy.groups.add(group);
+        }
+        groupBy.size = offsets[keys.length];
+        return groupBy;
+    }
+
     /**
      * Create a groupby with an initial capacity of 4
      */
@@ -180,12 +238,7 @@ public class GroupBy<T> implements Iterable<GroupBy.Group<T>> {
      * @return the group at the given index
      */
     public Group<T> getGroup(int index) {
-        for (final Map.Entry<T, Group<T>> g : groupTable.entrySet()) {
-            if (g.getValue().getID() == index) {
-                return g.getValue();
-            }
-        }
-        return null;
+        return index >= 0 && index < groups.size() ? groups.get(index) : null;
     }
 
     /**
@@ -215,6 +268,7 @@ public class GroupBy<T> implements Iterable<GroupBy.Group<T>> {
         h.id = groupTable.size();
         h.indices.add(i);
         groupTable.put(key, h);
+        groups.add(h);
     }
 
     @Override
@@ -0,0 +1,566 @@
+package net.mahdilamb.dataframe.utils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility class for parsing numbers directly from a range of a character sequence or a byte array without creating
+ * intermediate strings.
+ * <p>
+ * Doubles are parsed by accumulating up to 19 significant digits into a long and then converting the significand and
+ * decimal exponent to the nearest double. Small values are converted exactly using Clinger's fast path, others using
+ * the Eisel-Lemire algorithm. The few inputs that neither can decide (e.g. those with more than 19 significant
+ * digits, subnormals and exact halfway cases) are passed to {@link Double#parseDouble(String)}, so the result is
+ * always correctly rounded.
+ */
+public final class NumberParser {
+    private NumberParser() {
+
+    }
+
+    /**
+     * The maximum number of significant digits that can be accumulated in an (unsigned) long
+     */
+    private static final int MAX_DIGITS = 19;
+    /**
+     * Powers of ten that are exactly representable as a double
+     */
+    private static final double[] EXACT_POWERS_OF_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /**
+     * The smallest decimal exponent for which a 19 digit significand may be non-zero
+     */
+    private static final int MIN_EXPONENT = -342;
+    /**
+     * The largest decimal exponent for which a significand may be finite
+     */
+    private static final int MAX_EXPONENT = 308;
+    /**
+     * The high and low 64 bits of the 128-bit mantissas of the powers of ten from {@link #MIN_EXPONENT} to
+     * {@link #MAX_EXPONENT}, normalized so that the most significant bit is set and rounded down
+     */
+    private static final long[] POWERS_OF_10_HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    private static final long[] POWERS_OF_10_LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+    static {
+        final BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; ++q) {
+            BigInteger mantissa;
+            if (q >= 0) {
+                mantissa = BigInteger.TEN.pow(q);
+                final int shift = mantissa.bitLength() - 128;
+                mantissa = shift > 0 ? mantissa.shiftRight(shift) : mantissa.shiftLeft(-shift);
+            } else {
+                final BigInteger divisor = BigInteger.TEN.pow(-q);
+                mantissa = BigInteger.ONE.shiftLeft(127 + divisor.bitLength()).divide(divisor);
+            }
+            POWERS_OF_10_HIGH[q - MIN_EXPONENT] = mantissa.shiftRight(64).longValue();
+            POWERS_OF_10_LOW[q - MIN_EXPONENT] = mantissa.and(mask).longValue();
+        }
+    }
+
+    /**
+     * Marker returned by the parsers when the input is not a number. This is a NaN with a payload, so is distinct
+     * from a parsed NaN
+     */
+    private static final long INVALID = 0x7ff80000000000ffL;
+    /**
+     * Marker returned by the conversion when it cannot decide the correctly rounded double
+     */
+    private static final long UNDECIDED = 0x7ff80000000000feL;
+
+    /**
+     * Parse a long from a range of a character sequence. The range may have a leading sign and a trailing
+     * {@code L} or {@code l}.
+     *
+     * @param s     the character sequence
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the parsed long
+     * @throws NumberFormatException if the range does not contain a long, or the long is out of range
+     */
+    public static long parseLong(final CharSequence s, int start, int end) {
+        final int from = start, to = end;
+        if (start < end) {
+            final char c = s.charAt(end - 1);
+            if (c == 'L' || c == 'l') {
+                --end;
+            }
+        }
+        if (start >= end) {
+            throw numberFormatException(s, from, to);
+        }
+        boolean negative = false;
+        final char first = s.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                throw numberFormatException(s, from, to);
+            }
+        }
+        //accumulate negatively so that Long.MIN_VALUE can be represented
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplyMin = limit / 10;
+        long result = 0;
+        for (int i = start; i < end; ++i) {
+            final int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin) {
+                throw numberFormatException(s, from, to);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(s, from, to);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse a long from a character sequence
+     *
+     * @param s the character sequence
+     * @return the parsed long
+     * @throws NumberFormatException if the sequence does not contain a long
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static long parseLong(final CharSequence s) {
+        return parseLong(s, 0, s.length());
+    }
+
+    /**
+     * Parse a long from a range of ASCII encoded bytes
+     *
+     * @param bytes the bytes
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the parsed long
+     * @throws NumberFormatException if the range does not contain a long, or the long is out of range
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static long parseLong(final byte[] bytes, int start, int end) {
+        final int from = start, to = end;
+        if (start < end) {
+            final byte c = bytes[end - 1];
+            if (c == 'L' || c == 'l') {
+                --end;
+            }
+        }
+        if (start >= end) {
+            throw numberFormatException(bytes, from, to);
+        }
+        boolean negative = false;
+        final byte first = bytes[start];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                throw numberFormatException(bytes, from, to);
+            }
+        }
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplyMin = limit / 10;
+        long result = 0;
+        for (int i = start; i < end; ++i) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin) {
+                throw numberFormatException(bytes, from, to);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(bytes, from, to);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse a double from a range of a character sequence. Accepts the same strings as
+     * {@link StringUtils#FLOATING_POINT_PATTERN}.
+     *
+     * @param s     the character sequence
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the parsed double
+     * @throws NumberFormatException if the range does not contain a double
+     */
+    public static double parseDouble(final CharSequence s, int start, int end) {
+        final double value = parse(s, start, end);
+        if (Double.doubleToRawLongBits(value) == INVALID) {
+            throw numberFormatException(s, start, end);
+        }
+        return value;
+    }
+
+    /**
+     * Parse a double from a range of a character sequence, without throwing an exception if the range is not a
+     * number
+     *
+     * @param s            the character sequence
+     * @param start        the start of the range (inclusive)
+     * @param end          the end of the range (exclusive)
+     * @param defaultValue the value to return if the range does not contain a double
+     * @return the parsed double, or the default value
+     * @see #parseDouble(CharSequence, int, int)
+     */
+    public static double parseDouble(final CharSequence s, int start, int end, double defaultValue) {
+        final double value = parse(s, start, end);
+        return Double.doubleToRawLongBits(value) == INVALID ? defaultValue : value;
+    }
+
+    /**
+     * Parse a double from a character sequence
+     *
+     * @param s the character sequence
+     * @return the parsed double
+     * @throws NumberFormatException if the sequence does not contain a double
+     * @see #parseDouble(CharSequence, int, int)
+     */
+    public static double parseDouble(final CharSequence s) {
+        return parseDouble(s, 0, s.length());
+    }
+
+    /**
+     * Parse a double from a range of ASCII encoded bytes
+     *
+     * @param bytes the bytes
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the parsed double
+     * @throws NumberFormatException if the range does not contain a double
+     * @see #parseDouble(CharSequence, int, int)
+     */
+    public static double parseDouble(final byte[] bytes, int start, int end) {
+        final double value = parse(bytes, start, end);
+        if (Double.doubleToRawLongBits(value) == INVALID) {
+            throw numberFormatException(bytes, start, end);
+        }
+        return value;
+    }
+
+    /**
+     * Parse a double from a range of ASCII encoded bytes, without throwing an exception if the range is not a
+     * number
+     *
+     * @param bytes        the bytes
+     * @param start        the start of the range (inclusive)
+     * @param end          the end of the range (exclusive)
+     * @param defaultValue the value to return if the range does not contain a double
+     * @return the parsed double, or the default value
+     * @see #parseDouble(CharSequence, int, int)
+     */
+    public static double parseDouble(final byte[] bytes, int start, int end, double defaultValue) {
+        final double value = parse(bytes, start, end);
+        return Double.doubleToRawLongBits(value) == INVALID ? defaultValue : value;
+    }
+
+    private static double parse(final CharSequence s, int start, int end) {
+        int i = start;
+        if (i >= end) {
+            return Double.longBitsToDouble(INVALID);
+        }
+        char c = s.charAt(i);
+        final boolean negative = c == '-';
+        if (negative || c == '+') {
+            if (++i == end) {
+                return Double.longBitsToDouble(INVALID);
+            }
+            c = s.charAt(i);
+        }
+        if (c == 'N') {
+            return equals(s, i, end, "NaN") ? Double.NaN : Double.longBitsToDouble(INVALID);
+        }
+        if (c == 'I') {
+            return equals(s, i, end, "Infinity") ? (negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY) : Double.longBitsToDouble(INVALID);
+        }
+        long significand = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        final int intStart = i;
+        while (i < end && isDigit(c = s.charAt(i))) {
+            if (numDigits < MAX_DIGITS) {
+                significand = significand * 10 + (c - '0');
+                if (significand != 0) {
+                    ++numDigits;
+                }
+            } else {
+                truncated |= c != '0';
+                ++exponent;
+            }
+            ++i;
+        }
+        boolean hasDigits = i > intStart;
+        if (i < end && ((c = s.charAt(i)) == 'x' || c == 'X')) {
+            //hexadecimal
+            return parseSlow(s.subSequence(start, end).toString());
+        }
+        if (i < end && c == '.') {
+            final int fracStart = ++i;
+            while (i < end && isDigit(c = s.charAt(i))) {
+                if (numDigits < MAX_DIGITS) {
+                    significand = significand * 10 + (c - '0');
+                    if (significand != 0) {
+                        ++numDigits;
+                    }
+                    --exponent;
+                } else {
+                    truncated |= c != '0';
+                }
+                ++i;
+            }
+            hasDigits |= i > fracStart;
+        }
+        if (!hasDigits) {
+            return Double.longBitsToDouble(INVALID);
+        }
+        if (i < end && ((c = s.charAt(i)) == 'e' || c == 'E')) {
+            if (++i < end && ((c = s.charAt(i)) == '-' || c == '+')) {
+                ++i;
+            }
+            final boolean negativeExponent = c == '-';
+            int exp = 0;
+            final int expStart = i;
+            while (i < end && isDigit(c = s.charAt(i))) {
+                if (exp < 100000) {
+                    exp = exp * 10 + (c - '0');
+                }
+                ++i;
+            }
+            if (i == expStart) {
+                return Double.longBitsToDouble(INVALID);
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (i < end && ((c = s.charAt(i)) == 'd' || c == 'D' || c == 'f' || c == 'F')) {
+            ++i;
+        }
+        if (i != end) {
+            return Double.longBitsToDouble(INVALID);
+        }
+        final double value = truncated ? Double.longBitsToDouble(UNDECIDED) : toDouble(negative, significand, exponent);
+        return Double.doubleToRawLongBits(value) == UNDECIDED ? parseSlow(s.subSequence(start, end).toString()) : value;
+    }
+
+    private static double parse(final byte[] s, int start, int end) {
+        int i = start;
+        if (i >= end) {
+            return Double.longBitsToDouble(INVALID);
+        }
+        byte c = s[i];
+        final boolean negative = c == '-';
+        if (negative || c == '+') {
+            if (++i == end) {
+                return Double.longBitsToDouble(INVALID);
+            }
+            c = s[i];
+        }
+        if (c == 'N') {
+            return equals(s, i, end, "NaN") ? Double.NaN : Double.longBitsToDouble(INVALID);
+        }
+        if (c == 'I') {
+            return equals(s, i, end, "Infinity") ? (negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY) : Double.longBitsToDouble(INVALID);
+        }
+        long significand = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        final int intStart = i;
+        while (i < end && isDigit(c = s[i])) {
+            if (numDigits < MAX_DIGITS) {
+                significand = significand * 10 + (c - '0');
+                if (significand != 0) {
+                    ++numDigits;
+                }
+            } else {
+                truncated |= c != '0';
+                ++exponent;
+            }
+            ++i;
+        }
+        boolean hasDigits = i > intStart;
+        if (i < end && ((c = s[i]) == 'x' || c == 'X')) {
+            return parseSlow(new String(s, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+        if (i < end && c == '.') {
+            final int fracStart = ++i;
+            while (i < end && isDigit(c = s[i])) {
+                if (numDigits < MAX_DIGITS) {
+                    significand = significand * 10 + (c - '0');
+                    if (significand != 0) {
+                        ++numDigits;
+                    }
+                    --exponent;
+                } else {
+                    truncated |= c != '0';
+                }
+                ++i;
+            }
+            hasDigits |= i > fracStart;
+        }
+        if (!hasDigits) {
+            return Double.longBitsToDouble(INVALID);
+        }
+        if (i < end && ((c = s[i]) == 'e' || c == 'E')) {
+            if (++i < end && ((c = s[i]) == '-' || c == '+')) {
+                ++i;
+            }
+            final boolean negativeExponent = c == '-';
+            int exp = 0;
+            final int expStart = i;
+            while (i < end && isDigit(c = s[i])) {
+                if (exp < 100000) {
+                    exp = exp * 10 + (c - '0');
+                }
+                ++i;
+            }
+            if (i == expStart) {
+                return Double.longBitsToDouble(INVALID);
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (i < end && ((c = s[i]) == 'd' || c == 'D' || c == 'f' || c == 'F')) {
+            ++i;
+        }
+        if (i != end) {
+            return Double.longBitsToDouble(INVALID);
+        }
+        final double value = truncated ? Double.longBitsToDouble(UNDECIDED) : toDouble(negative, significand, exponent);
+        return Double.doubleToRawLongBits(value) == UNDECIDED ? parseSlow(new String(s, start, end - start, StandardCharsets.ISO_8859_1)) : value;
+    }
+
+    /**
+     * Convert a decimal to the nearest double
+     *
+     * @param negative    whether the decimal is negative
+     * @param significand the significand, as an unsigned long
+     * @param exponent    the decimal exponent
+     * @return the double or {@link #UNDECIDED}
+     */
+    private static double toDouble(boolean negative, long significand, int exponent) {
+        if (significand == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (significand > 0 && significand <= (1L << 53) && exponent >= -22 && exponent <= 22) {
+            final double value = exponent < 0 ? (significand / EXACT_POWERS_OF_10[-exponent]) : (significand * EXACT_POWERS_OF_10[exponent]);
+            return negative ? -value : value;
+        }
+        return eiselLemire(negative, significand, exponent);
+    }
+
+    /**
+     * Convert a decimal to the nearest double using the Eisel-Lemire algorithm
+     *
+     * @param negative    whether the decimal is negative
+     * @param significand the non-zero significand, as an unsigned long
+     * @param exponent    the decimal exponent
+     * @return the double or {@link #UNDECIDED}
+     * @see <a href="https://arxiv.org/abs/2101.11408">Number Parsing at a Gigabyte per Second</a>
+     */
+    private static double eiselLemire(boolean negative, long significand, int exponent) {
+        if (exponent < MIN_EXPONENT) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        final int leadingZeros = Long.numberOfLeadingZeros(significand);
+        final long w = significand << leadingZeros;
+        long exp2 = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros;
+        final int index = exponent - MIN_EXPONENT;
+        long hi = unsignedMultiplyHigh(w, POWERS_OF_10_HIGH[index]);
+        long lo = w * POWERS_OF_10_HIGH[index];
+        if ((hi & 0x1FF) == 0x1FF && Long.compareUnsigned(lo + w, w) < 0) {
+            //the truncated product may be too small, so include the low bits of the power of ten
+            final long yHi = unsignedMultiplyHigh(w, POWERS_OF_10_LOW[index]);
+            final long yLo = w * POWERS_OF_10_LOW[index];
+            long mergedHi = hi;
+            final long mergedLo = lo + yHi;
+            if (Long.compareUnsigned(mergedLo, lo) < 0) {
+                ++mergedHi;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + w, w) < 0) {
+                return Double.longBitsToDouble(UNDECIDED);
+            }
+            hi = mergedHi;
+            lo = mergedLo;
+        }
+        final long msb = hi >>> 63;
+        long mantissa = hi >>> (msb + 9);
+        exp2 -= 1 ^ msb;
+        if (lo == 0 && (hi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            //may be halfway between two doubles
+            return Double.longBitsToDouble(UNDECIDED);
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if ((mantissa >>> 53) != 0) {
+            mantissa >>>= 1;
+            ++exp2;
+        }
+        if (exp2 <= 0 || exp2 >= 0x7FF) {
+            //subnormal or infinite
+            return Double.longBitsToDouble(UNDECIDED);
+        }
+        final long bits = exp2 << 52 | mantissa & 0x000FFFFFFFFFFFFFL | (negative ? 0x8000000000000000L : 0);
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    private static double parseSlow(final String str) {
+        //Double.parseDouble ignores surrounding whitespace, which the pattern does not
+        if (str.charAt(0) <= ' ' || str.charAt(str.length() - 1) <= ' ') {
+            return Double.longBitsToDouble(INVALID);
+        }
+        try {
+            return Double.parseDouble(str);
+        } catch (NumberFormatException e) {
+            return Double.longBitsToDouble(INVALID);
+        }
+    }
+
+    private static boolean equals(final CharSequence s, int start, int end, final String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if (s.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(final byte[] s, int start, int end, final String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if (s[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigit(final byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static NumberFormatException numberFormatException(final CharSequence s, int start, int end) {
+        return new NumberFormatException(String.format("For input string: \"%s\"", s.subSequence(start, end)));
+    }
+
+    private static NumberFormatException numberFormatException(final byte[] bytes, int start, int end) {
+        return new NumberFormatException(String.format("For input string: \"%s\"", new String(bytes, start, end - start, StandardCharsets.ISO_8859_1)));
+    }
+}
@@ -1,19 +1,688 @@
+import net.mahdilamb.dataframe.Aggregation;
+import net.mahdilamb.dataframe.Axis;
+import net.mahdilamb.dataframe.BooleanSeries;
 import net.mahdilamb.dataframe.DataFrame;
+import net.mahdilamb.dataframe.DataFrameImporter;
+import net.mahdilamb.dataframe.DataType;
+import net.mahdilamb.dataframe.DoubleSeries;
+import net.mahdilamb.dataframe.GroupedDataFrame;
+import net.mahdilamb.dataframe.LongSeries;
+import net.mahdilamb.dataframe.Series;
+import net.mahdilamb.dataframe.StringSeries;
+import net.mahdilamb.dataframe.utils.GroupBy;
+import net.mahdilamb.dataframe.utils.NumberParser;
+import net.mahdilamb.dataframe.utils.StringParseException;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Tests {
     public static DataFrame loadFromResources(final String name) {
         return DataFrame.from(new File(Objects.requireNonNull(Thread.currentThread().getContextClassLoader().getResource(name)).getFile()));
     }
 
+    static File createTempCSV(final String... lines) throws IOException {
+        final File file = File.createTempFile("dataframe", ".csv");
+        file.deleteOnExit();
+        try (final Writer writer = new FileWriter(file)) {
+            for (final String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
     @Test
     public void CSVTest() {
         System.out.println(loadFromResources("iris.csv").query("species=='setosa'").query("petal_length > 1").tail());
 
     }
 
+    @Test
+    public void promoteAfterInferenceTest() throws IOException {
+        final String[] lines = new String[3001];
+        lines[0] = "id,value,label";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = String.format("%d,%d,%b", i, i, i % 2 == 0);
+        }
+        lines[2000] = "2000,2000.5,true";
+        lines[2500] = "n/a,2500,maybe";
+        final DataFrame df = DataFrame.from(createTempCSV(lines));
+        assertEquals(3000, df.size(Axis.INDEX));
+        assertEquals(DataType.STRING, df.getType("id"));
+        assertEquals(DataType.DOUBLE, df.getType("value"));
+        assertEquals(DataType.STRING, df.getType("label"));
+        assertEquals(2000.5, df.getDoubleSeries("value").getDouble(1999));
+        assertEquals("n/a", df.getStringSeries("id").get(2499));
+        assertEquals("false", df.getStringSeries("label").get(0));
+    }
+
+    @Test
+    public void promotedTextTest() throws IOException {
+        final String[] lines = new String[100002];
+        lines[0] = "id,value,flag";
+        for (int i = 1; i < lines.length - 1; ++i) {
+            lines[i] = String.format("%05d,%s,%s", i, i % 3 == 0 ? "1.50" : "2", i % 5 == 0 ? "" : "true");
+        }
+        lines[lines.length - 1] = "x,abc,maybe";
+        final File file = createTempCSV(lines);
+        for (final DataFrame df : new DataFrame[]{DataFrame.from(file), DataFrame.importer(file).setParallelism(4).build()}) {
+            assertEquals(DataType.STRING, df.getType("id"));
+            assertEquals(DataType.STRING, df.getType("value"));
+            assertEquals(DataType.STRING, df.getType("flag"));
+            assertEquals("00001", df.getStringSeries("id").get(0));
+            assertEquals("2", df.getStringSeries("value").get(0));
+            assertEquals("1.50", df.getStringSeries("value").get(2));
+            assertEquals("true", df.getStringSeries("flag").get(0));
+            assertEquals("", df.getStringSeries("flag").get(4));
+            assertEquals("x", df.getStringSeries("id").get(100000));
+        }
+    }
+
+    @Test
+    public void quotedFieldsTest() throws IOException {
+        final DataFrame df = DataFrame.from(createTempCSV(
+                "name,\"size, in px\",note",
+                "\"a \"\"quoted\"\" name\",12,\"multi",
+                "line\"",
+                "plain,13,"
+        ));
+        assertEquals(2, df.size(Axis.INDEX));
+        assertEquals("size, in px", df.get(1).getName());
+        assertEquals("a \"quoted\" name", df.getStringSeries("name").get(0));
+        assertEquals("multi\nline", df.getStringSeries("note").get(0));
+        assertEquals(13L, df.getLongSeries(1).getLong(1));
+    }
+
+    @Test
+    public void parallelReadTest() throws IOException {
+        final String[] lines = new String[100001];
+        lines[0] = "id,value,note";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = i + "," + (i == 90000 ? "none" : String.valueOf(i * .5)) + ",\"line " + i + "\n\n" + (i % 7 == 0 ? "\"\"," : "") + "end\"";
+        }
+        final File file = createTempCSV(lines);
+        final DataFrame sequential = DataFrame.from(file);
+        final DataFrame parallel = DataFrame.importer(file).setParallelism(4).build();
+        assertEquals(100000, parallel.size(Axis.INDEX));
+        assertEquals(DataType.STRING, parallel.getType("value"));
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(sequential.getType(i), parallel.getType(i));
+            for (int j = 0; j < 100000; ++j) {
+                assertEquals(sequential.get(i).get(j), parallel.get(i).get(j));
+            }
+        }
+        assertEquals("line 7\n\n\",end", parallel.getStringSeries("note").get(6));
+    }
+
+    @Test
+    public void dataTypeMatchesTest() {
+        assertTrue(DataType.LONG.matches("-12L"));
+        assertFalse(DataType.LONG.matches("1.5"));
+        assertTrue(DataType.DOUBLE.matches("+.5e-3F"));
+        assertTrue(DataType.DOUBLE.matches("-Infinity"));
+        assertFalse(DataType.DOUBLE.matches("0x1p3"));
+        assertTrue(DataType.BOOLEAN.matches("fALSe"));
+        assertFalse(DataType.STRING.matches("two\nlines"));
+        assertEquals(8, DataType.toDouble("0x1p3"));
+        assertEquals(-12, DataType.toLong("-12L"));
+        assertTrue(Double.isNaN(DataType.toDouble("1e")));
+    }
+
+    @Test
+    public void numberParserTest() {
+        final String[] values = {"0.1", "1e23", "-2.2250738585072011e-308", "4.9e-324", "1.7976931348623159e308", "9007199254740993", "123456789012345678901234567890", "0x1.8p1", "-0", "NaN"};
+        for (final String value : values) {
+            final byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(Double.parseDouble(value), NumberParser.parseDouble(value));
+            assertEquals(Double.parseDouble(value), NumberParser.parseDouble(bytes, 0, bytes.length));
+        }
+        assertThrows(NumberFormatException.class, () -> NumberParser.parseDouble(" 1"));
+        assertTrue(Double.isNaN(NumberParser.parseDouble("1e", 0, 2, Double.NaN)));
+        assertEquals(Long.MIN_VALUE, NumberParser.parseLong("-9223372036854775808".getBytes(StandardCharsets.US_ASCII), 0, 20));
+    }
+
+    @Test
+    public void schemaTest() throws IOException {
+        final DataFrame df = DataFrame.importer(createTempCSV("a,b", "1,x", "2,3.5"))
+                .setSchema(new String[]{"a", "b"}, DataType.LONG, DataType.DOUBLE)
+                .build();
+        assertEquals(2, df.size(Axis.INDEX));
+        assertEquals(DataType.DOUBLE, df.getType("b"));
+        assertTrue(Double.isNaN(df.getDoubleSeries("b").getDouble(0)));
+        assertEquals(2L, df.getLongSeries("a").getLong(1));
+    }
+
+    @Test
+    public void sampledInferenceTest() throws IOException {
+        final String[] lines = new String[5001];
+        lines[0] = "id,value";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = i + "," + (i < 2000 ? String.valueOf(i) : (i + .5));
+        }
+        final DataFrame preview = DataFrame.importer(createTempCSV(lines)).setInferenceRows(100).preview();
+        assertEquals(DataType.LONG, preview.getType(0));
+        assertEquals(DataType.DOUBLE, preview.getType(1));
+    }
+
+    @Test
+    public void batchReaderTest() throws IOException {
+        final String[] lines = new String[2501];
+        lines[0] = "id,value,label";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = i + "," + (i * .5) + ",\"row " + i + "\"";
+        }
+        final File file = createTempCSV(lines);
+        for (final boolean reuse : new boolean[]{false, true}) {
+            int rows = 0;
+            try (final DataFrameImporter.Batches batches = DataFrame.importer(file).batches(1000, reuse)) {
+                while (batches.hasNext()) {
+                    final DataFrame batch = batches.next();
+                    assertEquals(DataType.DOUBLE, batch.getType("value"));
+                    for (int i = 0; i < batch.size(Axis.INDEX); ++i) {
+                        assertEquals(rows + 1, batch.getLongSeries("id").getLong(i));
+                        assertEquals("row " + (rows + 1), batch.getStringSeries("label").get(i));
+                        ++rows;
+                    }
+                }
+            }
+            assertEquals(2500, rows);
+        }
+    }
+
+    @Test
+    public void selectColumnsTest() throws IOException {
+        final File file = createTempCSV("a,b,c,d", "1,x,2.5,true", "2,y,3.5,false");
+        final DataFrame byName = DataFrame.importer(file).select("d", "a").build();
+        assertEquals(2, byName.numSeries());
+        assertEquals("d", byName.get(0).getName());
+        assertEquals(DataType.BOOLEAN, byName.getType("d"));
+        assertEquals(2L, byName.getLongSeries("a").getLong(1));
+
+        final DataFrame byIndex = DataFrame.importer(file)
+                .setSchema(new String[]{"a", "b", "c", "d"}, DataType.LONG, DataType.STRING, DataType.DOUBLE, DataType.STRING)
+                .select(2)
+                .build();
+        assertEquals(1, byIndex.numSeries());
+        assertEquals(3.5, byIndex.getDoubleSeries("c").getDouble(1));
+    }
+
+    @Test
+    public void importFilterTest() throws IOException {
+        final String[] lines = new String[3001];
+        lines[0] = "id,value,label";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = i + "," + (i % 3 == 1 && i % 100 == 1 ? "" : String.valueOf(i * .5)) + "," + (i % 3 == 0 ? "fizz" : "x");
+        }
+        final File file = createTempCSV(lines);
+        final DataFrame expected = DataFrame.from(file).query("label == 'fizz'").query("value >= 1000");
+        final DataFrame filtered = DataFrame.importer(file)
+                .filter("label == 'fizz'")
+                .filter("value", (Double value) -> value >= 1000)
+                .select("id")
+                .build();
+        assertEquals(1, filtered.numSeries());
+        assertEquals(expected.size(Axis.INDEX), filtered.size(Axis.INDEX));
+        for (int i = 0; i < filtered.size(Axis.INDEX); ++i) {
+            assertEquals(expected.getLongSeries("id").getLong(i), filtered.getLongSeries("id").getLong(i));
+        }
+        try (final DataFrameImporter.Batches batches = DataFrame.importer(file).filter("id < 11").batches(4, false)) {
+            int rows = 0;
+            while (batches.hasNext()) {
+                rows += batches.next().size(Axis.INDEX);
+            }
+            assertEquals(10, rows);
+        }
+    }
+
+    @Test
+    public void importQueryFilterTest() throws IOException {
+        final File mixed = createTempCSV("a,b,c,d", "1.5,x,1,NaN", ",y,,2", "3.5,z,3,4.5", "NaN,x,4,1");
+        assertEquals(1, DataFrame.importer(mixed).filter("a > 1 and b == 'x'").build().size(Axis.INDEX));
+        for (final String query : new String[]{"a > 1 and b == 'x'", "a in [1.5, 2]", "a > 2", "not (a > 2)", "a != 3.5",
+                "b matches '[xy]' or d >= 2", "c not in [1, 4]", "d between 1 and 2", "c * 2 > d", "not (c > 1 and b != 'z')"}) {
+            final DataFrame expected = DataFrame.from(mixed).query(query);
+            final DataFrame filtered = DataFrame.importer(mixed).filter(query).build();
+            assertEquals(expected.size(Axis.INDEX), filtered.size(Axis.INDEX), query);
+            for (int i = 0; i < filtered.size(Axis.INDEX); ++i) {
+                assertEquals(expected.getStringSeries("b").get(i), filtered.getStringSeries("b").get(i), query);
+            }
+        }
+    }
 
+    @Test
+    public void nullableLongTest() throws IOException {
+        final DataFrame df = DataFrame.importer(createTempCSV("a,b", "3,1.5", ",", "1,", "2,2.5")).setType(0, DataType.LONG).build();
+        assertEquals(DataType.LONG, df.getType("a"));
+        assertTrue(df.getLongSeries("a").isNaN(1));
+        assertEquals(null, df.getLongSeries("a").get(1));
+        assertEquals(3L, df.getLongSeries("a").getLong(0));
+        final Series<?> sorted = df.get("a").sort(true);
+        assertEquals(1L, sorted.get(0));
+        assertEquals(3L, sorted.get(2));
+        assertEquals(null, sorted.get(3));
+        final LongSeries converted = df.get("b").asLong();
+        assertTrue(converted.isNaN(2));
+        assertEquals(2L, converted.getLong(3));
+    }
+
+    @Test
+    public void packedBooleanTest() {
+        final LongSeries values = Series.of("values", new long[130]);
+        final BooleanSeries even = Series.of("index", i -> i, 130).mapToBool(v -> v % 2 == 0);
+        final BooleanSeries low = Series.of("index", i -> i, 130).mapToBool(v -> v < 70);
+        assertEquals(65, even.countTrue());
+        assertEquals(35, even.and(low).countTrue());
+        assertEquals(100, even.or(low).countTrue());
+        assertEquals(65, even.xor(low).countTrue());
+        assertEquals(65, even.not().countTrue());
+        assertTrue(even.or(even.not()).all());
+        assertFalse(even.and(even.not()).any());
+        final int[] indices = even.and(low.not()).indices();
+        assertEquals(30, indices.length);
+        assertEquals(70, indices[0]);
+        assertEquals(128, indices[29]);
+        assertEquals(65, values.filter(even).size());
+    }
+
+    @Test
+    public void categoricalStringTest() throws IOException {
+        final String[] labels = {"Tumor", "Stroma", "Immune cells", "\"Other, \"\"unclassified\"\"\""};
+        final String[] lines = new String[1001];
+        lines[0] = "id,class";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = i + "," + labels[(i * 7) % labels.length];
+        }
+        final DataFrame df = DataFrame.from(createTempCSV(lines));
+        final StringSeries classes = df.getStringSeries("class");
+        assertEquals("Tumor", classes.get(labels.length - 1));
+        assertEquals("Other, \"unclassified\"", classes.get(0));
+        assertEquals(250, classes.eq("Stroma").countTrue());
+        assertEquals(250, df.query("class == 'Tumor'").size(Axis.INDEX));
+        assertEquals(4, classes.groups().numGroups());
+        assertEquals(250, classes.groups().getGroup("Immune cells").size());
+        assertEquals(4, classes.valueCounts().size(Axis.INDEX));
+        final Series<String> sorted = classes.sort(true);
+        assertEquals("Immune cells", sorted.get(0));
+        assertEquals("Tumor", sorted.get(999));
+    }
+
+    @Test
+    public void aggregationTest() throws IOException {
+        final DoubleSeries values = Series.of("values", 1, 2, Double.NaN, 4, 1e100, -1e100);
+        assertEquals(5, values.count());
+        assertEquals(7, values.sum(true));
+        assertEquals(Double.valueOf(4), values.head(4).asDouble().max());
+        assertEquals(Double.valueOf(1), values.head(4).asDouble().min());
+        assertEquals(7 / 3., values.head(4).asDouble().mean(), 1e-12);
+        assertEquals(Math.sqrt(7 / 3.), values.head(4).asDouble().std(), 1e-12);
+        assertTrue(Double.isNaN(values.subset(2, 3).asDouble().max()));
+
+        final DataFrame df = DataFrame.importer(createTempCSV("a", "3", "", "-1", "6")).setType(0, DataType.LONG).build();
+        final LongSeries longs = df.getLongSeries("a");
+        assertEquals(3, longs.count());
+        assertEquals(8, longs.sum());
+        assertEquals(Long.valueOf(-1), longs.min());
+        assertEquals(Long.valueOf(6), longs.max());
+        assertEquals(12.333333333333334, longs.variance(), 1e-12);
+        assertEquals(4.5, df.query("a > 2").getLongSeries("a").mean(), 1e-12);
+    }
+
+    @Test
+    public void primitiveOperatorsTest() throws IOException {
+        final DataFrame df = DataFrame.importer(createTempCSV("a,b", "3,0.5", ",1.5", "-1,", "6,4")).setType(0, DataType.LONG).build();
+        assertEquals(2, df.filterDouble("b", v -> v > 1).size(Axis.INDEX));
+        assertEquals(2, df.filterLong("a", v -> v > 0).size(Axis.INDEX));
+        assertEquals(1, df.query("b == 4").size(Axis.INDEX));
+        assertEquals(2, df.query("a > 2").size(Axis.INDEX));
+        final DoubleSeries doubled = df.getDoubleSeries("b").map(v -> v * 2);
+        assertEquals(8, doubled.getDouble(3));
+        assertTrue(doubled.isNaN(2));
+        final LongSeries negated = df.getLongSeries("a").map(v -> -v);
+        assertTrue(negated.isNaN(1));
+        assertEquals(-6, negated.getLong(3));
+        assertEquals(3, df.getLongSeries("a").mapLongToBool(v -> v != 0).countTrue());
+        assertEquals(1, df.filterDouble("b", v -> v > 1).getDoubleSeries("b").mapDoubleToBool(v -> v < 2).countTrue());
+    }
+
+    @Test
+    public void arithmeticTest() throws IOException {
+        final DataFrame df = DataFrame.importer(createTempCSV("a,b", "3,0.5", ",1.5", "-1,", "6,4")).setType(0, DataType.LONG).build();
+        final DoubleSeries b = df.getDoubleSeries("b");
+        final DoubleSeries sum = b.add(b);
+        assertEquals(3, sum.getDouble(1));
+        assertTrue(sum.isNaN(2));
+        assertEquals(16, b.pow(2).getDouble(3));
+        assertEquals(2, b.gt(1).countTrue());
+        //missing values are never selected, as in queries
+        assertEquals(0, b.ne(b).countTrue());
+        assertEquals(0, b.eq(Double.NaN).countTrue());
+        assertEquals(b.ne(1.5).countTrue(), df.query("b != 1.5").size(Axis.INDEX));
+        assertEquals(2, b.ne(1.5).countTrue());
+        assertEquals(2, df.getLongSeries("a").ne(3).countTrue());
+        final LongSeries a = df.getLongSeries("a");
+        final LongSeries product = a.multiply(a.subtract(1));
+        assertEquals(30, product.getLong(3));
+        assertTrue(product.isNaN(1));
+        assertEquals(1.5, a.divide(2).getDouble(0));
+        assertTrue(a.divide(2).isNaN(1));
+        assertEquals(2, a.ge(a.head(1).asLong()).countTrue());
+        final DataFrame filtered = df.filter(b.lt(5));
+        assertEquals(12, filtered.getDoubleSeries("b").add(filtered.getDoubleSeries("b")).sum());
+        assertThrows(IllegalArgumentException.class, () -> b.add(filtered.getDoubleSeries("b")));
+        //operands that span several chunks, read in place, through a view and broadcast
+        final double[] values = new double[3000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i % 7;
+        }
+        final DoubleSeries c = Series.of("c", values);
+        final DoubleSeries odd = c.subset(i -> (i & 1) == 1).asDouble(), even = c.subset(i -> (i & 1) == 0).asDouble();
+        final DoubleSeries difference = odd.subtract(even), scaled = c.multiply(2);
+        int greater = 0;
+        for (int i = 0; i < 1500; ++i) {
+            assertEquals(values[2 * i + 1] - values[2 * i], difference.getDouble(i));
+            assertEquals(2 * values[i], scaled.getDouble(i));
+            greater += values[2 * i + 1] > values[2 * i] ? 1 : 0;
+        }
+        assertEquals(greater, odd.gt(even).countTrue());
+    }
+
+    @Test
+    public void lazyExpressionTest() throws IOException {
+        final double[] values = new double[3000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i % 7;
+        }
+        values[5] = Double.NaN;
+        final DoubleSeries area = Series.of("area", values);
+        final double mean = area.mean(), std = area.std();
+        final DoubleSeries eager = area.subtract(mean).divide(std);
+        final DoubleSeries lazy = area.lazy().subtract(mean).divide(std);
+        final double[] fused = lazy.materialize().toArray(new double[0]);
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(eager.getDouble(i), fused[i]);
+            assertEquals(eager.getDouble(i), lazy.getDouble(i));
+        }
+        assertEquals(eager.gt(1).countTrue(), lazy.gt(1).countTrue());
+        assertEquals(eager.ne(1).countTrue(), lazy.ne(1).countTrue());
+        assertEquals(0, lazy.ne(lazy).countTrue());
+        assertEquals(eager.add(eager).sum(), lazy.add(lazy).sum());
+        final DataFrame df = DataFrame.importer(createTempCSV("a,b", "3,0.5", ",1.5", "-1,", "6,4")).setType(0, DataType.LONG).build();
+        final DataFrame filtered = df.filter(df.getLongSeries("a").lazy().multiply(df.getDoubleSeries("b")).gt(1));
+        assertEquals(2, filtered.size(Axis.INDEX));
+        assertEquals(Double.valueOf(24), filtered.getLongSeries("a").lazy().multiply(filtered.getDoubleSeries("b")).max());
+    }
+
+    @Test
+    public void queryLanguageTest() throws IOException {
+        final DataFrame df = DataFrame.importer(createTempCSV("a,b,label,flag", "3,0.5,x,true", ",1.5,y,false", "-1,,x,false", "6,4,z,true")).setType(0, DataType.LONG).build();
+        assertEquals(1, df.query("a > 2 and b < 1").size(Axis.INDEX));
+        assertEquals(3, df.query("a > 5 or label == 'x'").size(Axis.INDEX));
+        assertEquals(2, df.query("not (label == 'x')").size(Axis.INDEX));
+        assertEquals(2, df.query("a * b >= 1.5").size(Axis.INDEX));
+        assertEquals(2, df.query("label in ['y', 'z']").size(Axis.INDEX));
+        assertEquals(1, df.query("a not in [3, 6]").size(Axis.INDEX));
+        assertEquals(2, df.query("b between 1 and 4").size(Axis.INDEX));
+        assertEquals(2, df.query("flag").size(Axis.INDEX));
+        assertEquals(1, df.query("flag & -a < -4").size(Axis.INDEX));
+        assertEquals(1, df.query("`b` ** 2 == 16").size(Axis.INDEX));
+        assertEquals(df.query("label == 'x'").query("a > 0").size(Axis.INDEX), df.query("label == 'x' && a > 0").size(Axis.INDEX));
+        assertThrows(StringParseException.class, () -> df.query("c > 1"));
+        assertThrows(StringParseException.class, () -> df.query("(a > 1"));
+        //negations do not select missing values either
+        final DataFrame nan = DataFrame.from(createTempCSV("a", "1", "2.5", "NaN", "3"));
+        assertEquals(2, nan.query("a != 1").size(Axis.INDEX));
+        assertEquals(2, nan.query("not (a == 1)").size(Axis.INDEX));
+        assertEquals(1, nan.query("a not in [1, 3]").size(Axis.INDEX));
+        assertEquals(1, nan.query("not (a between 2 and 3)").size(Axis.INDEX));
+        assertEquals(2, nan.query("not (a > 2 and a < 3)").size(Axis.INDEX));
+        assertEquals(1, nan.query("not (a < 2 or a > 2.5)").size(Axis.INDEX));
+        assertEquals(3, nan.query("not not (a >= 1)").size(Axis.INDEX));
+    }
+
+    @Test
+    public void columnComparisonTest() throws IOException {
+        final String[] lines = new String[201];
+        lines[0] = "a,b";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = (i % 11 == 0 ? "" : String.valueOf(i % 17)) + ',' + (i % 13 == 0 ? "" : String.valueOf(i * 0.25));
+        }
+        final DataFrame df = DataFrame.importer(createTempCSV(lines)).setType(0, DataType.LONG).build();
+        assertEquals(df.filterLong("a", v -> v < 5).size(Axis.INDEX), df.query("a < 5").size(Axis.INDEX));
+        assertEquals(df.filterLong("a", v -> v != 5).size(Axis.INDEX), df.query("a != 5").size(Axis.INDEX));
+        assertEquals(df.filterLong("a", v -> v >= 4.5).size(Axis.INDEX), df.query("a >= 4.5").size(Axis.INDEX));
+        assertEquals(df.filterDouble("b", v -> v > 20).size(Axis.INDEX), df.query("20 < b").size(Axis.INDEX));
+        final DataFrame view = df.query("b > 10");
+        assertEquals(view.filterLong("a", v -> v == 3).size(Axis.INDEX), view.query("a == 3").size(Axis.INDEX));
+        assertEquals(view.filterDouble("b", v -> v != 30).size(Axis.INDEX), view.query("b != 30").size(Axis.INDEX));
+    }
+
+    @Test
+    public void queryPlanTest() throws IOException {
+        final String[] lines = new String[301];
+        lines[0] = "a,b,label";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = String.valueOf(i % 23) + ',' + (i % 7 == 0 ? "" : String.valueOf(i * 0.5)) + ',' + (i % 3 == 0 ? "apple" : i % 3 == 1 ? "banana" : "cherry");
+        }
+        final DataFrame df = DataFrame.importer(createTempCSV(lines)).setType(0, DataType.LONG).build();
+        final int expected = df.filter("label", (String s) -> s.startsWith("b")).filterDouble("b", v -> v > 20).filterLong("a", v -> v == 4).size(Axis.INDEX);
+        assertEquals(expected, df.query("label matches 'b.*' and b > 20 and a == 4").size(Axis.INDEX));
+        assertEquals(expected, df.query("a == 4 and label matches 'b.*' and b > 20").size(Axis.INDEX));
+        assertEquals(0, df.query("a > 100 and label matches 'b.*'").size(Axis.INDEX));
+        final String plan = df.explain("label matches 'b.*' and b > 20 and a == 4");
+        assertTrue(plan.startsWith("1. a == 4", plan.indexOf('\n') + 1));
+        assertTrue(plan.contains("3. label matches 'b.*'"));
+        assertTrue(plan.contains(String.format("Selected %d of 300 rows in ", expected)));
+        final DataFrame small = DataFrame.from("small", Series.of("n", 1L, 2L, 3L));
+        assertTrue(small.explain("n < 3 and n > 0").contains("n < 3 [cost 1.00, estimated 66.7%]"));
+        final String between = small.explain("n between 0 and 2");
+        assertTrue(between.contains("1. n <= 2 "));
+        assertTrue(between.contains("2. n >= 0 "));
+    }
+
+    @Test
+    public void groupByTest() throws IOException {
+        final String[] lines = new String[1001];
+        lines[0] = "a,b,label,flag";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = (i % 10 == 0 ? "" : String.valueOf(i % 37)) + ',' + (i % 9 == 0 ? "" : String.valueOf((i % 5) * 0.5)) + ",l" + (i % 7) + ',' + (i % 2 == 0);
+        }
+        final DataFrame df = DataFrame.importer(createTempCSV(lines)).setType(0, DataType.LONG).build();
+        for (final String name : df.seriesNames()) {
+            final Series<Comparable<Object>> series = df.get(name);
+            final GroupBy<?> groups = series.getType() == DataType.LONG ? series.asLong().groups() : series.getType() == DataType.DOUBLE ? series.asDouble().groups() : series.getType() == DataType.STRING ? series.asString().groups() : series.asBoolean().groups();
+            int total = 0;
+            for (int g = 0; g < groups.numGroups(); ++g) {
+                final GroupBy.Group<?> group = groups.getGroup(g);
+                assertEquals(g, group.getID());
+                for (int j = 0; j < group.size(); ++j) {
+                    assertEquals(group.get(), series.get(group.get(j)));
+                    assertTrue(j == 0 || group.get(j) > group.get(j - 1));
+                }
+                total += group.size();
+            }
+            assertEquals(df.size(Axis.INDEX), total);
+        }
+        assertEquals(38, df.get("a").asLong().groups().numGroups());
+        assertEquals(6, df.get("b").asDouble().groups().numGroups());
+        assertEquals(Long.valueOf(1), df.get("a").asLong().groups().getGroup(0).get());
+        int rows = 0;
+        for (final DataFrame group : df.query("a < 5").groupBy("label")) {
+            assertEquals(1, group.get("label").asString().groups().numGroups());
+            rows += group.size(Axis.INDEX);
+        }
+        assertEquals(df.query("a < 5").size(Axis.INDEX), rows);
+    }
+
+    @Test
+    public void groupedAggregationTest() throws IOException {
+        final DataFrame df = DataFrame.importer(createTempCSV("key,a,b,label", "x,1,0.5,p", "y,2,,q", "x,,1.5,r", "z,4,2,", "x,3,4,p", "y,6,1,")).setType(1, DataType.LONG).build();
+        final DataFrame agg = df.groupBy("key").agg(new String[]{"a", "b"}, Aggregation.COUNT, Aggregation.SUM, Aggregation.MEAN, Aggregation.MIN, Aggregation.MAX, Aggregation.VAR, Aggregation.FIRST, Aggregation.LAST, Aggregation.NUNIQUE);
+        assertEquals(3, agg.size(Axis.INDEX));
+        assertEquals(19, agg.numSeries());
+        assertEquals("x", agg.get("key").get(0));
+        assertEquals(2L, agg.get("a_count").get(0));
+        assertEquals(4L, agg.get("a_sum").get(0));
+        assertEquals(2.0, agg.get("a_mean").get(0));
+        assertEquals(3L, agg.get("a_max").get(0));
+        assertEquals(2.0, agg.get("a_var").get(0));
+        assertEquals(3L, agg.get("a_last").get(0));
+        assertEquals(6.0, agg.get("b_sum").get(0));
+        assertEquals(0.5, agg.get("b_min").get(0));
+        assertEquals(3L, agg.get("b_nunique").get(0));
+        assertEquals(1.0, agg.get("b_first").get(1));
+        assertTrue(Double.isNaN(agg.getDoubleSeries("b_var").get(2)));
+        final DataFrame strings = df.groupBy("key").agg("label", Aggregation.COUNT, Aggregation.MIN, Aggregation.FIRST, Aggregation.NUNIQUE);
+        assertEquals(3L, strings.get("label_count").get(0));
+        assertEquals("p", strings.get("label_min").get(0));
+        assertEquals(2L, strings.get("label_nunique").get(0));
+        assertEquals("", strings.get("label_first").get(2));
+        assertEquals(3, df.groupBy("key").agg(Aggregation.MEAN).numSeries());
+        assertThrows(IllegalArgumentException.class, () -> df.groupBy("key").agg("label", Aggregation.SUM));
+    }
+
+    @Test
+    public void multiColumnGroupByTest() throws IOException {
+        final String[] lines = new String[501];
+        lines[0] = "image,class,parent,area";
+        for (int i = 1; i < lines.length; ++i) {
+            lines[i] = "img" + (i % 3) + ",c" + (i % 4) + ',' + (i % 5 == 0 ? "" : String.valueOf(i % 2)) + ',' + i;
+        }
+        final DataFrame df = DataFrame.importer(createTempCSV(lines)).setType(2, DataType.LONG).build();
+        final GroupedDataFrame groups = df.groupBy("image", "class", "parent");
+        assertEquals(24, groups.numGroups());
+        int rows = 0;
+        for (final DataFrame group : groups) {
+            assertEquals(1, group.get("image").asString().groups().numGroups());
+            assertEquals(1, group.get("class").asString().groups().numGroups());
+            assertEquals(1, group.get("parent").asLong().groups().numGroups());
+            rows += group.size(Axis.INDEX);
+        }
+        assertEquals(500, rows);
+        final DataFrame agg = groups.agg(Aggregation.COUNT, Aggregation.SUM);
+        assertEquals(24, agg.size(Axis.INDEX));
+        assertEquals(5, agg.numSeries());
+        assertEquals("img1", agg.get("image").get(0));
+        assertEquals("c1", agg.get("class").get(0));
+        assertEquals(1L, agg.get("parent").get(0));
+        assertEquals(500, agg.getLongSeries("area_count").sum());
+        assertEquals(Long.valueOf((long) df.query("image == 'img1' and class == 'c1' and parent == 1").getLongSeries("area").sum()), agg.get("area_sum").get(0));
+        assertEquals(groups.numGroups(), df.groupBy("parent", "class", "image").numGroups());
+    }
+
+    @Test
+    public void parallelGroupByTest() {
+        final int size = 300_000;
+        final String[] images = new String[size];
+        final long[] classes = new long[size];
+        final double[] areas = new double[size];
+        final Random random = new Random(0);
+        for (int i = 0; i < size; ++i) {
+            images[i] = "image" + random.nextInt(50);
+            classes[i] = random.nextInt(7);
+            areas[i] = random.nextInt(20) == 0 ? Double.NaN : random.nextDouble() * 100;
+        }
+        final DataFrame df = DataFrame.from("detections", new Series[]{Series.of("image", images), Series.of("class", classes), Series.of("area", areas)});
+        final Aggregation[] aggregations = {Aggregation.COUNT, Aggregation.SUM, Aggregation.MEAN, Aggregation.STD, Aggregation.MIN, Aggregation.FIRST, Aggregation.LAST, Aggregation.NUNIQUE};
+        final DataFrame sequential = df.groupBy("image", "class").agg(aggregations);
+        final DataFrame parallel = df.groupBy("image", "class").setParallelism(4).agg(aggregations);
+        assertEquals(350, parallel.size(Axis.INDEX));
+        assertEquals(sequential.numSeries(), parallel.numSeries());
+        for (int j = 0; j < sequential.numSeries(); ++j) {
+            for (int i = 0; i < sequential.size(Axis.INDEX); ++i) {
+                assertEquals(sequential.get(j).get(i), parallel.get(j).get(i));
+            }
+        }
+        final GroupedDataFrame byArea = df.groupBy("area").setParallelism(3);
+        assertEquals(df.groupBy("area").numGroups(), byArea.numGroups());
+        int previous = -1, g = 0;
+        for (final DataFrame group : byArea) {
+            if (g++ == 1000) {
+                break;
+            }
+            assertTrue(group.get(0).getID(0) > previous);
+            previous = group.get(0).getID(0);
+        }
+    }
+
+    @Test
+    public void sortedGroupByTest() {
+        final int size = 10_000;
+        final String[] runs = new String[size];
+        final String[] repeated = new String[size];
+        final long[] classes = new long[size];
+        final Random random = new Random(0);
+        for (int i = 0; i < size; ++i) {
+            runs[i] = "image" + (i / 100);
+            repeated[i] = "image" + (i / 100 % 10);
+            classes[i] = random.nextInt(50);
+        }
+        final DataFrame df = DataFrame.from("detections", new Series[]{Series.of("image", runs), Series.of("repeated", repeated), Series.of("class", classes)});
+        //runs are detected without being told
+        int g = 0;
+        for (final DataFrame group : df.groupBy("image")) {
+            assertEquals(100, group.size(Axis.INDEX));
+            assertEquals(g++ * 100, group.get(0).getID(0));
+        }
+        assertEquals(100, g);
+        //keys that appear in several runs are still one group, in the order they first appear
+        final GroupedDataFrame told = df.groupBy("repeated").setSorted();
+        assertEquals(10, told.numGroups());
+        g = 0;
+        for (final DataFrame group : told) {
+            assertEquals(1000, group.size(Axis.INDEX));
+            assertEquals(g++ * 100, group.get(0).getID(0));
+        }
+        //a sorted view groups by runs and gives the same counts as hashing
+        final DataFrame counts = df.groupBy("class").agg("class", Aggregation.COUNT);
+        final DataFrame sortedCounts = df.sortBy("class").groupBy("class").agg("class", Aggregation.COUNT);
+        assertEquals(counts.size(Axis.INDEX), sortedCounts.size(Axis.INDEX));
+        final Map<Object, Object> expected = new HashMap<>();
+        for (int i = 0; i < counts.size(Axis.INDEX); ++i) {
+            expected.put(counts.get(0).get(i), counts.get(1).get(i));
+        }
+        for (int i = 0; i < sortedCounts.size(Axis.INDEX); ++i) {
+            assertEquals(expected.get(sortedCounts.get(0).get(i)), sortedCounts.get(1).get(i));
+            if (i > 0) {
+                assertTrue(sortedCounts.getLongSeries(0).get(i) > sortedCounts.getLongSeries(0).get(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void valueCountsTest() {
+        final DoubleSeries values = Series.of("values", 3, 1, Double.NaN, 3, 2, 3, Double.NaN, 1, 1, 1);
+        final DataFrame counts = values.valueCounts();
+        assertEquals(4, counts.size(Axis.INDEX));
+        assertEquals(Double.valueOf(3), counts.get(0).get(0));
+        assertTrue(Double.isNaN(counts.getDoubleSeries(0).get(2)));
+        assertEquals(Long.valueOf(2), counts.get(1).get(2));
+        final DataFrame top = values.valueCounts(2);
+        assertEquals(2, top.size(Axis.INDEX));
+        assertEquals(Double.valueOf(1), top.get(0).get(0));
+        assertEquals(Long.valueOf(4), top.get(1).get(0));
+        assertEquals(Double.valueOf(3), top.get(0).get(1));
+        final DataFrame frequencies = values.frequencies(true, true, Integer.MAX_VALUE);
+        assertEquals(3, frequencies.size(Axis.INDEX));
+        assertEquals(Double.valueOf(0.5), frequencies.get(1).get(0));
+        assertEquals(Double.valueOf(0.125), frequencies.get(1).get(2));
+        final StringSeries strings = Series.of("strings", "b", null, "a", "b", null, "b");
+        assertEquals(Long.valueOf(2), strings.valueCounts().get(1).get(1));
+        assertEquals(2, strings.valueCounts(false, true, 10).size(Axis.INDEX));
+        assertThrows(IllegalArgumentException.class, () -> strings.valueCounts(true, true, -1));
+    }
 }